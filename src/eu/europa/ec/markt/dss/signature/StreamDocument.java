@@ -19,61 +19,162 @@ import eu.europa.esig.dss.MimeType;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
+import org.digidoc4j.impl.StreamableDocument;
+import org.digidoc4j.utils.FileTransfer;
+import org.digidoc4j.utils.SpoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * @see eu.europa.esig.dss.DSSDocument implementation to handle big files. It writes data to temporary
  * files.
+ * <p/>
+ * The temporary file is created by the {@link SpoolManager} and is deleted when the document is closed and all the
+ * other references to the file are released.
  */
-public class StreamDocument implements DSSDocument {
+public class StreamDocument implements StreamableDocument, Closeable {
   private static final Logger logger = LoggerFactory.getLogger(StreamDocument.class);
 
   private static final int MAX_SIZE_IN_MEMORY = 1024 * 5;
   String documentName;
   MimeType mimeType;
   File temporaryFile;
+  private SpoolManager.SpoolFile spoolFile;
+  private boolean closed;
+  private final Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
 
   //TODO if file is small enough you can read it into byte[] and cache it
 
   /**
-   * Add javadoc here
+   * Creates the document without calculating digests while the stream is written to the temporary file.
+   * Digests are calculated from the temporary file when requested.
    *
    * @param stream       stream
    * @param documentName document Name
    * @param mimeType     mime type
    */
   public StreamDocument(InputStream stream, String documentName, MimeType mimeType) {
+    this(stream, documentName, mimeType, new DigestAlgorithm[0]);
+  }
+
+  /**
+   * Creates the document and calculates the digests of the given algorithms while the stream is written to
+   * the temporary file. Digests of other algorithms are calculated from the temporary file when requested.
+   *
+   * @param stream           stream
+   * @param documentName     document Name
+   * @param mimeType         mime type
+   * @param digestAlgorithms algorithms of the digests to calculate while reading the stream
+   */
+  public StreamDocument(InputStream stream, String documentName, MimeType mimeType,
+                        DigestAlgorithm... digestAlgorithms) {
     logger.debug("Document name: " + documentName + ", mime type: " + mimeType);
-    createTemporaryFileOfStream(stream);
+    createTemporaryFileOfStream(stream, digestAlgorithms);
+    this.documentName = documentName;
+    this.mimeType = mimeType;
+  }
+
+  /**
+   * Creates the document of a spool file that has already been written. The document takes over the reference
+   * of the caller to the spool file.
+   *
+   * @param spoolFile    spool file with the document contents
+   * @param documentName document Name
+   * @param mimeType     mime type
+   */
+  public StreamDocument(SpoolManager.SpoolFile spoolFile, String documentName, MimeType mimeType) {
+    logger.debug("Document name: " + documentName + ", mime type: " + mimeType + ", file: " + spoolFile.getFile());
+    this.spoolFile = spoolFile;
+    this.temporaryFile = spoolFile.getFile();
     this.documentName = documentName;
     this.mimeType = mimeType;
   }
 
-  private void createTemporaryFileOfStream(InputStream stream) {
+  private void createTemporaryFileOfStream(InputStream stream, DigestAlgorithm... digestAlgorithms) {
     logger.debug("");
     byte[] bytes = new byte[MAX_SIZE_IN_MEMORY];
+    Map<DigestAlgorithm, MessageDigest> messageDigests = new EnumMap<>(DigestAlgorithm.class);
+    for (DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+      messageDigests.put(digestAlgorithm, DSSUtils.getMessageDigest(digestAlgorithm));
+    }
 
     FileOutputStream out = null;
 
     try {
-      temporaryFile = File.createTempFile("digidoc4j", ".tmp");
+      spoolFile = SpoolManager.getInstance().createFile();
+      temporaryFile = spoolFile.getFile();
       out = new FileOutputStream(temporaryFile);
       int result;
       while ((result = stream.read(bytes)) > 0) {
+        spoolFile.allocate(result);
         out.write(bytes, 0, result);
+        for (MessageDigest messageDigest : messageDigests.values()) {
+          messageDigest.update(bytes, 0, result);
+        }
       }
       out.flush();
+      for (Map.Entry<DigestAlgorithm, MessageDigest> messageDigest : messageDigests.entrySet()) {
+        digests.put(messageDigest.getKey(), Base64.encodeBase64String(messageDigest.getValue().digest()));
+      }
     } catch (IOException e) {
       logger.error(e.getMessage());
+      IOUtils.closeQuietly(out);
+      releaseSpoolFile();
       throw new DSSException(e);
+    } catch (RuntimeException e) {
+      IOUtils.closeQuietly(out);
+      releaseSpoolFile();
+      throw e;
     } finally {
       IOUtils.closeQuietly(out);
     }
   }
 
+  private void releaseSpoolFile() {
+    if (spoolFile != null) {
+      spoolFile.release();
+    }
+  }
+
+  /**
+   * Adds a reference to the temporary file. The file is kept until the document is closed and every added
+   * reference is released.
+   */
+  public void retain() {
+    logger.debug("");
+    spoolFile.retain();
+  }
+
+  /**
+   * Releases a reference added by {@link #retain()}.
+   */
+  public void release() {
+    logger.debug("");
+    spoolFile.release();
+  }
+
+  /**
+   * Releases the reference of this document to the temporary file. Closing the document more than once has
+   * no effect.
+   */
+  @Override
+  public void close() {
+    logger.debug("");
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    releaseSpoolFile();
+  }
+
 
   @Override
   public InputStream openStream() throws DSSException {
@@ -137,7 +238,7 @@ public class StreamDocument implements DSSDocument {
     try {
       FileOutputStream fileOutputStream = new FileOutputStream(filePath);
       try {
-        IOUtils.copy(getTemporaryFileAsStream(), fileOutputStream);
+        FileTransfer.copy(temporaryFile, fileOutputStream);
       } finally {
         fileOutputStream.close();
       }
@@ -147,17 +248,53 @@ public class StreamDocument implements DSSDocument {
     }
   }
 
+  @Override
+  public long getSize() throws IOException {
+    return Files.size(temporaryFile.toPath());
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    logger.debug("");
+    FileTransfer.copy(temporaryFile, out);
+  }
+
+  /**
+   * @param digestAlgorithm digest algorithm
+   * @return true if the digest is already calculated and can be returned without reading the temporary file
+   */
+  public boolean hasDigest(DigestAlgorithm digestAlgorithm) {
+    synchronized (digests) {
+      return digests.containsKey(digestAlgorithm);
+    }
+  }
+
   @Override
   public String getDigest(DigestAlgorithm digestAlgorithm) {
     logger.debug("Digest algorithm: " + digestAlgorithm);
+    synchronized (digests) {
+      String digest = digests.get(digestAlgorithm);
+      if (digest != null) {
+        logger.debug("Returning digest calculated while reading the stream");
+        return digest;
+      }
+    }
     byte[] digestBytes;
+    InputStream stream = null;
     try {
-      digestBytes = DSSUtils.digest(digestAlgorithm, getTemporaryFileAsStream());
+      stream = getTemporaryFileAsStream();
+      digestBytes = DSSUtils.digest(digestAlgorithm, stream);
     } catch (FileNotFoundException e) {
       logger.error(e.getMessage());
       throw new DSSException(e);
+    } finally {
+      IOUtils.closeQuietly(stream);
+    }
+    String digest = Base64.encodeBase64String(digestBytes);
+    synchronized (digests) {
+      digests.put(digestAlgorithm, digest);
     }
-    return Base64.encodeBase64String(digestBytes);
+    return digest;
   }
 
   @Override
@@ -1,14 +1,74 @@
 package eu.europa.ec.markt.dss.validation102853.ocsp;
 
+import java.util.Date;
+
 import org.bouncycastle.asn1.DEROctetString;
 import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
 import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.SingleResp;
 import org.digidoc4j.Configuration;
+import org.digidoc4j.impl.bdoc.SKOnlineTSPSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSRevocationUtils;
+import eu.europa.esig.dss.x509.CertificateToken;
+import eu.europa.esig.dss.x509.OCSPToken;
 
 
 public class BDocTSOcspSource extends SKOnlineOCSPSource{
+  private static final Logger logger = LoggerFactory.getLogger(BDocTSOcspSource.class);
+  private final SKOnlineTSPSource tspSource;
+
   public BDocTSOcspSource(Configuration configuration) {
+    this(configuration, null);
+  }
+
+  /**
+   * @param configuration configuration to use for this source
+   * @param tspSource     time-stamp source of the signatures, cached OCSP responses are used only when it is given
+   */
+  public BDocTSOcspSource(Configuration configuration, SKOnlineTSPSource tspSource) {
     super(configuration);
+    this.tspSource = tspSource;
+  }
+
+  /**
+   * Reuses a cached OCSP response produced after the latest time-stamp when the OCSP response cache is enabled.
+   *
+   * @see OcspResponseCache
+   */
+  @Override
+  public OCSPToken getOCSPToken(CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+    OcspResponseCache cache = OcspResponseCache.getInstance();
+    String ocspUri = getAccessLocation();
+    if (!cache.isEnabled() || ocspUri == null) {
+      return super.getOCSPToken(certificateToken, issuerCertificateToken);
+    }
+    CertificateID certificateId = DSSRevocationUtils.getOCSPCertificateID(certificateToken.getCertificate(),
+        issuerCertificateToken.getCertificate());
+    Date timestampTime = tspSource != null ? tspSource.getLatestGenerationTime() : null;
+    if (timestampTime != null) {
+      OcspResponseCache.CachedResponse cachedResponse = cache.get(ocspUri, certificateId, timestampTime);
+      if (cachedResponse != null) {
+        logger.debug("Using cached OCSP response produced at " + cachedResponse.getResponse().getProducedAt());
+        OCSPToken ocspToken = new OCSPToken(cachedResponse.getResponse(), cachedResponse.getSingleResponse());
+        ocspToken.setSourceURI(ocspUri);
+        certificateToken.setRevocationToken(ocspToken);
+        return ocspToken;
+      }
+    }
+    OCSPToken ocspToken = super.getOCSPToken(certificateToken, issuerCertificateToken);
+    if (ocspToken != null) {
+      for (SingleResp singleResponse : ocspToken.getBasicOCSPResp().getResponses()) {
+        if (DSSRevocationUtils.matches(certificateId, singleResponse)) {
+          cache.put(ocspUri, certificateId, ocspToken.getBasicOCSPResp(), singleResponse);
+          break;
+        }
+      }
+    }
+    return ocspToken;
   }
 
   @Override
@@ -0,0 +1,168 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package eu.europa.ec.markt.dss.validation102853.ocsp;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.KSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+
+/**
+ * Private key and certificate of the OCSP access certificate used for signing OCSP requests.
+ * <p/>
+ * Keys are loaded once for the whole JVM and loaded again when the PKCS#12 file or the password changes. Keys of
+ * at most {@value #MAXIMUM_LOADED_KEYS} files are kept, the least recently used key is forgotten first.
+ * A content signer is not thread safe, so a new one is created for each request from the cached key.
+ */
+public final class OcspRequestorKey {
+  private static final Logger logger = LoggerFactory.getLogger(OcspRequestorKey.class);
+  private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+  static final int MAXIMUM_LOADED_KEYS = 10;
+  private static final Map<String, OcspRequestorKey> loadedKeys =
+      new LinkedHashMap<String, OcspRequestorKey>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, OcspRequestorKey> eldest) {
+      return size() > MAXIMUM_LOADED_KEYS;
+    }
+  };
+
+  private final long fileLength;
+  private final long fileLastModified;
+  private final byte[] passwordDigest;
+  private final PrivateKey privateKey;
+  private final X509CertificateHolder[] certificateChain;
+  private final GeneralName requestorName;
+
+  private OcspRequestorKey(long fileLength, long fileLastModified, byte[] passwordDigest, PrivateKey privateKey,
+                           X509Certificate certificate) throws CertificateEncodingException {
+    this.fileLength = fileLength;
+    this.fileLastModified = fileLastModified;
+    this.passwordDigest = passwordDigest;
+    this.privateKey = privateKey;
+    this.certificateChain = new X509CertificateHolder[]{new JcaX509CertificateHolder(certificate)};
+    this.requestorName = new GeneralName(certificateChain[0].getSubject());
+  }
+
+  /**
+   * Returns the key of the OCSP access certificate, the PKCS#12 file is read only when it has not been loaded
+   * before or has changed since.
+   *
+   * @param fileName PKCS#12 file of the OCSP access certificate
+   * @param password password of the PKCS#12 file
+   * @return requestor key
+   */
+  public static OcspRequestorKey load(String fileName, char[] password) {
+    File file = new File(fileName);
+    String path = file.getAbsolutePath();
+    long fileLength = file.length();
+    long fileLastModified = file.lastModified();
+    byte[] passwordDigest = digestPassword(password);
+    synchronized (loadedKeys) {
+      OcspRequestorKey key = loadedKeys.get(path);
+      if (key != null && key.isLoadedFrom(fileLength, fileLastModified, passwordDigest)) {
+        return key;
+      }
+      loadedKeys.remove(path);
+      logger.debug("Loading OCSP access certificate from " + path);
+      Pkcs12SignatureToken signatureToken = new Pkcs12SignatureToken(password, file);
+      try {
+        DSSPrivateKeyEntry keyEntry = signatureToken.getKeys().get(0);
+        key = new OcspRequestorKey(fileLength, fileLastModified, passwordDigest,
+            ((KSPrivateKeyEntry) keyEntry).getPrivateKey(), keyEntry.getCertificate().getCertificate());
+      } catch (CertificateEncodingException e) {
+        throw new DSSException(e);
+      } finally {
+        signatureToken.close();
+      }
+      loadedKeys.put(path, key);
+      return key;
+    }
+  }
+
+  /**
+   * Forgets the loaded keys.
+   */
+  public static void clear() {
+    synchronized (loadedKeys) {
+      loadedKeys.clear();
+    }
+  }
+
+  /**
+   * Digests the UTF-8 encoding of the password without creating a string of it. The encoded password is wiped
+   * after digesting.
+   */
+  private static byte[] digestPassword(char[] password) {
+    ByteBuffer encodedPassword;
+    try {
+      encodedPassword = StandardCharsets.UTF_8.newEncoder().encode(CharBuffer.wrap(password));
+    } catch (CharacterCodingException e) {
+      throw new DSSException(e);
+    }
+    byte[] passwordBytes = new byte[encodedPassword.remaining()];
+    try {
+      encodedPassword.get(passwordBytes);
+      return DSSUtils.digest(DigestAlgorithm.SHA256, passwordBytes);
+    } finally {
+      Arrays.fill(passwordBytes, (byte) 0);
+      if (encodedPassword.hasArray()) {
+        Arrays.fill(encodedPassword.array(), (byte) 0);
+      }
+    }
+  }
+
+  private boolean isLoadedFrom(long fileLength, long fileLastModified, byte[] passwordDigest) {
+    return this.fileLength == fileLength && this.fileLastModified == fileLastModified &&
+        Arrays.equals(this.passwordDigest, passwordDigest);
+  }
+
+  /**
+   * @return new content signer for signing one OCSP request
+   */
+  public ContentSigner createContentSigner() {
+    try {
+      return new JcaContentSignerBuilder(SIGNATURE_ALGORITHM).build(privateKey);
+    } catch (OperatorCreationException e) {
+      throw new DSSException(e);
+    }
+  }
+
+  public X509CertificateHolder[] getCertificateChain() {
+    return certificateChain.clone();
+  }
+
+  public GeneralName getRequestorName() {
+    return requestorName;
+  }
+}
@@ -0,0 +1,184 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package eu.europa.ec.markt.dss.validation102853.ocsp;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.digidoc4j.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of OCSP responses for the whole JVM, for time-stamp based signatures created with the same certificate.
+ * <p/>
+ * Responses are keyed by the OCSP responder and the certificate id and are reused until they reach the maximum age.
+ * A response is only reused for signatures whose time-stamp is not later than the production time of the response,
+ * as the OCSP response of a BDoc signature must not be older than its time-stamp. Time-mark signatures never use
+ * the cache, their OCSP nonce is the digest of the signature value. The cache is disabled until a maximum age is set.
+ *
+ * @see Configuration#setOcspResponseCacheMaxAgeInSeconds(long)
+ */
+public final class OcspResponseCache {
+  private static final Logger logger = LoggerFactory.getLogger(OcspResponseCache.class);
+  private static final OcspResponseCache instance = new OcspResponseCache();
+  private static final int MAXIMUM_SIZE = 1000;
+
+  private final LinkedHashMap<Key, CachedResponse> entries = new LinkedHashMap<Key, CachedResponse>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, CachedResponse> eldest) {
+      return size() > MAXIMUM_SIZE;
+    }
+  };
+  private long maxAgeInMillis = Configuration.OCSP_RESPONSE_CACHE_DISABLED;
+  private long hits;
+  private long misses;
+
+  private OcspResponseCache() {
+  }
+
+  public static OcspResponseCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Applies the maximum age of the configuration. Nothing is changed when the configuration does not enable
+   * the cache.
+   *
+   * @param configuration configuration settings
+   */
+  public void configure(Configuration configuration) {
+    long maxAgeInSeconds = configuration.getOcspResponseCacheMaxAgeInSeconds();
+    if (maxAgeInSeconds != Configuration.OCSP_RESPONSE_CACHE_DISABLED) {
+      setMaxAgeInSeconds(maxAgeInSeconds);
+    }
+  }
+
+  /**
+   * @param maxAgeInSeconds time in seconds a response is reused or {@link Configuration#OCSP_RESPONSE_CACHE_DISABLED}
+   */
+  public synchronized void setMaxAgeInSeconds(long maxAgeInSeconds) {
+    logger.debug("OCSP response cache max age: " + maxAgeInSeconds + " s");
+    maxAgeInMillis = maxAgeInSeconds * 1000;
+    if (maxAgeInMillis <= 0) {
+      entries.clear();
+    }
+  }
+
+  public synchronized long getMaxAgeInSeconds() {
+    return maxAgeInMillis / 1000;
+  }
+
+  public synchronized boolean isEnabled() {
+    return maxAgeInMillis > 0;
+  }
+
+  /**
+   * @param responderUrl       OCSP responder location
+   * @param certificateId      id of the certificate
+   * @param notProducedBefore  earliest accepted production time of the response
+   * @return cached response or null if there is no fresh enough response
+   */
+  public synchronized CachedResponse get(String responderUrl, CertificateID certificateId, Date notProducedBefore) {
+    Key key = new Key(responderUrl, certificateId);
+    CachedResponse entry = entries.get(key);
+    if (entry != null && System.currentTimeMillis() - entry.cachedAt > maxAgeInMillis) {
+      entries.remove(key);
+      entry = null;
+    }
+    if (entry == null || entry.getResponse().getProducedAt().before(notProducedBefore)) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry;
+  }
+
+  /**
+   * @param responderUrl   OCSP responder location
+   * @param certificateId  id of the certificate
+   * @param response       OCSP response
+   * @param singleResponse response of the certificate
+   */
+  public synchronized void put(String responderUrl, CertificateID certificateId, BasicOCSPResp response,
+                               SingleResp singleResponse) {
+    if (maxAgeInMillis <= 0) {
+      return;
+    }
+    entries.put(new Key(responderUrl, certificateId), new CachedResponse(response, singleResponse, System.currentTimeMillis()));
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Cached OCSP response.
+   */
+  public static final class CachedResponse {
+    private final BasicOCSPResp response;
+    private final SingleResp singleResponse;
+    private final long cachedAt;
+
+    CachedResponse(BasicOCSPResp response, SingleResp singleResponse, long cachedAt) {
+      this.response = response;
+      this.singleResponse = singleResponse;
+      this.cachedAt = cachedAt;
+    }
+
+    public BasicOCSPResp getResponse() {
+      return response;
+    }
+
+    public SingleResp getSingleResponse() {
+      return singleResponse;
+    }
+  }
+
+  private static final class Key {
+    private final String responderUrl;
+    private final CertificateID certificateId;
+
+    Key(String responderUrl, CertificateID certificateId) {
+      this.responderUrl = responderUrl;
+      this.certificateId = certificateId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return responderUrl.equals(key.responderUrl) && certificateId.equals(key.certificateId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * responderUrl.hashCode() + certificateId.hashCode();
+    }
+  }
+}
@@ -11,16 +11,28 @@
 package eu.europa.ec.markt.dss.validation102853.ocsp;
 
 import java.io.IOException;
-import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.bouncycastle.asn1.DEROctetString;
 import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.Extensions;
-import org.bouncycastle.asn1.x509.GeneralName;
-import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.CertificateID;
@@ -28,21 +40,17 @@ import org.bouncycastle.cert.ocsp.OCSPException;
 import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.cert.ocsp.SingleResp;
-import org.bouncycastle.operator.ContentSigner;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.digidoc4j.Configuration;
 import org.digidoc4j.exceptions.ConfigurationException;
 import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.impl.bdoc.SKOcspDataLoader;
+import org.digidoc4j.utils.EndpointHealth;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.europa.esig.dss.DSSException;
 import eu.europa.esig.dss.DSSRevocationUtils;
 import eu.europa.esig.dss.client.http.DataLoader;
-import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
-import eu.europa.esig.dss.token.KSPrivateKeyEntry;
-import eu.europa.esig.dss.token.Pkcs12SignatureToken;
 import eu.europa.esig.dss.x509.CertificateToken;
 import eu.europa.esig.dss.x509.OCSPToken;
 import eu.europa.esig.dss.x509.ocsp.OCSPSource;
@@ -52,6 +60,14 @@ import eu.europa.esig.dss.x509.ocsp.OCSPSource;
 */
 public abstract class SKOnlineOCSPSource implements OCSPSource {
   private static final Logger logger = LoggerFactory.getLogger(SKOnlineOCSPSource.class);
+  private static final ExecutorService hedgingExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ocsp-request");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
   
   /**
    * The data loader used to retrieve the OCSP response.
@@ -66,7 +82,9 @@ public abstract class SKOnlineOCSPSource implements OCSPSource {
    * @param configuration configuration to use for this source
    */
   public SKOnlineOCSPSource(Configuration configuration) {
-    this();
+    SKOcspDataLoader ocspDataLoader = new SKOcspDataLoader();
+    ocspDataLoader.setTimeoutConnection(configuration.getConnectionTimeout());
+    dataLoader = ocspDataLoader;
     this.configuration = configuration;
   }
 
@@ -102,22 +120,16 @@ public abstract class SKOnlineOCSPSource implements OCSPSource {
 
       if (configuration.hasToBeOCSPRequestSigned()) {
         logger.info("Using signed OCSP request");
-        JcaContentSignerBuilder signerBuilder = new JcaContentSignerBuilder("SHA1withRSA");
 
         if (!configuration.isOCSPSigningConfigurationAvailable()) {
           throw new ConfigurationException("Configuration needed for OCSP request signing is not complete.");
         }
 
-        DSSPrivateKeyEntry keyEntry = getOCSPAccessCertificatePrivateKey();
-        PrivateKey privateKey = ((KSPrivateKeyEntry)keyEntry).getPrivateKey();
-        X509Certificate ocspSignerCert = keyEntry.getCertificate().getCertificate();
-
-        ContentSigner contentSigner = signerBuilder.build(privateKey);
-        X509CertificateHolder[] chain = {new X509CertificateHolder(ocspSignerCert.getEncoded())};
-        GeneralName generalName = new GeneralName(new JcaX509CertificateHolder(ocspSignerCert).getSubject());
-        ocspReqBuilder.setRequestorName(generalName);
+        OcspRequestorKey requestorKey = OcspRequestorKey.load(configuration.getOCSPAccessCertificateFileName(),
+            configuration.getOCSPAccessCertificatePassword());
+        ocspReqBuilder.setRequestorName(requestorKey.getRequestorName());
 
-        return ocspReqBuilder.build(contentSigner, chain).getEncoded();
+        return ocspReqBuilder.build(requestorKey.createContentSigner(), requestorKey.getCertificateChain()).getEncoded();
       }
       return ocspReqBuilder.build().getEncoded();
     } catch (Exception e) {
@@ -131,20 +143,176 @@ public abstract class SKOnlineOCSPSource implements OCSPSource {
     if (dataLoader == null) {
       throw new RuntimeException("Data loader is null");
     }
+    final String dssIdAsString = certificateToken.getDSSIdAsString();
+    if (logger.isTraceEnabled()) {
+      logger.trace("--> OnlineOCSPSource queried for " + dssIdAsString);
+    }
+    final X509Certificate certificate = certificateToken.getCertificate();
+    final X509Certificate issuerCertificate = issuerCertificateToken.getCertificate();
+
+    List<String> ocspUris = getAccessLocations(issuerCertificate);
+    logger.debug("Getting OCSP token from URIs: " + ocspUris);
+    if (ocspUris.isEmpty()) {
+      return null;
+    }
+    OCSPToken ocspToken;
+    long hedgeDelay = getHedgeDelay(ocspUris);
+    if (hedgeDelay < 0) {
+      ocspToken = requestOCSPToken(ocspUris, certificate, issuerCertificate);
+    } else {
+      ocspToken = requestHedgedOCSPToken(ocspUris, hedgeDelay, certificate, issuerCertificate);
+    }
+    if (ocspToken != null) {
+      certificateToken.setRevocationToken(ocspToken);
+    }
+    return ocspToken;
+  }
+
+  /**
+   * Returns the OCSP responders for the issuer. When OCSP requests are routed by the issuer, the responders
+   * configured for the issuer come first and the OCSP source last. Responders failing at the moment are tried last.
+   *
+   * @param issuerCertificate certificate of the issuer
+   * @return responder locations in the order they are tried
+   */
+  List<String> getAccessLocations(X509Certificate issuerCertificate) {
+    List<String> locations = new ArrayList<>();
+    if (configuration != null && configuration.isRouteOcspByIssuer()) {
+      locations.addAll(configuration.getOcspResponderUrls(getCommonName(issuerCertificate)));
+    }
+    String defaultLocation = getAccessLocation();
+    if (defaultLocation != null && !locations.contains(defaultLocation)) {
+      locations.add(defaultLocation);
+    }
+    return preferAvailable(locations);
+  }
+
+  /**
+   * Moves the responders whose circuit breaker is open to the end, so another responder is asked first.
+   */
+  private static List<String> preferAvailable(List<String> locations) {
+    List<String> available = new ArrayList<>();
+    List<String> unavailable = new ArrayList<>();
+    for (String location : locations) {
+      if (EndpointHealth.getInstance().isAvailable(location)) {
+        available.add(location);
+      } else {
+        unavailable.add(location);
+      }
+    }
+    available.addAll(unavailable);
+    return available;
+  }
+
+  private static String getCommonName(X509Certificate certificate) {
     try {
-      final String dssIdAsString = certificateToken.getDSSIdAsString();
-      if (logger.isTraceEnabled()) {
-        logger.trace("--> OnlineOCSPSource queried for " + dssIdAsString);
+      RDN[] commonNames = new JcaX509CertificateHolder(certificate).getSubject().getRDNs(BCStyle.CN);
+      return commonNames.length == 0 ? null : IETFUtils.valueToString(commonNames[0].getFirst().getValue());
+    } catch (CertificateEncodingException e) {
+      throw new DSSException(e);
+    }
+  }
+
+  /**
+   * @return time in milliseconds to wait for the first responder before asking the next one or -1 if the request
+   * is not hedged
+   */
+  private long getHedgeDelay(List<String> ocspUris) {
+    if (ocspUris.size() < 2 || configuration == null ||
+        configuration.getOcspHedgingPercentile() == Configuration.OCSP_HEDGING_DISABLED) {
+      return -1;
+    }
+    return EndpointHealth.getInstance().getPercentile(ocspUris.get(0), configuration.getOcspHedgingPercentile());
+  }
+
+  /**
+   * Asks the responders one at a time until one of them gives a response.
+   */
+  private OCSPToken requestOCSPToken(List<String> ocspUris, X509Certificate certificate,
+                                     X509Certificate issuerCertificate) {
+    RuntimeException error = null;
+    for (String ocspUri : ocspUris) {
+      try {
+        OCSPToken ocspToken = requestOCSPToken(ocspUri, certificate, issuerCertificate);
+        if (ocspToken != null) {
+          return ocspToken;
+        }
+      } catch (RuntimeException e) {
+        logger.warn("OCSP request to " + ocspUri + " failed: " + e.getMessage());
+        error = e;
       }
-      final X509Certificate certificate = certificateToken.getCertificate();
-      final X509Certificate issuerCertificate = issuerCertificateToken.getCertificate();
+    }
+    if (error != null) {
+      throw error;
+    }
+    return null;
+  }
 
-      final String ocspUri = getAccessLocation();
-      logger.debug("Getting OCSP token from URI: " + ocspUri);
-      if (ocspUri == null) {
+  /**
+   * Sends the request to the first responder and, when it has not answered within the hedge delay, also to
+   * the second one. The first valid response is returned. When neither of them gives a response, the rest of
+   * the responders are asked one at a time.
+   */
+  private OCSPToken requestHedgedOCSPToken(List<String> ocspUris, long hedgeDelay, X509Certificate certificate,
+                                           X509Certificate issuerCertificate) {
+    CompletionService<OCSPToken> completionService = new ExecutorCompletionService<>(hedgingExecutor);
+    List<Future<OCSPToken>> requests = new ArrayList<>();
+    try {
+      requests.add(completionService.submit(new OCSPRequestTask(ocspUris.get(0), certificate, issuerCertificate)));
+      Future<OCSPToken> firstResponse = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+      RuntimeException error = null;
+      if (firstResponse != null) {
+        try {
+          OCSPToken ocspToken = getResponse(firstResponse);
+          if (ocspToken != null) {
+            return ocspToken;
+          }
+        } catch (RuntimeException e) {
+          error = e;
+        }
+      }
+      logger.info("No OCSP response from " + ocspUris.get(0) + " in " + hedgeDelay + " ms, asking " + ocspUris.get(1));
+      requests.add(completionService.submit(new OCSPRequestTask(ocspUris.get(1), certificate, issuerCertificate)));
+      for (int pending = firstResponse == null ? 2 : 1; pending > 0; pending--) {
+        try {
+          OCSPToken ocspToken = getResponse(completionService.take());
+          if (ocspToken != null) {
+            return ocspToken;
+          }
+        } catch (RuntimeException e) {
+          error = e;
+        }
+      }
+      OCSPToken ocspToken = requestOCSPToken(ocspUris.subList(2, ocspUris.size()), certificate, issuerCertificate);
+      if (ocspToken == null && error != null) {
+        throw error;
+      }
+      return ocspToken;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DSSException(e);
+    } finally {
+      for (Future<OCSPToken> request : requests) {
+        request.cancel(true);
+      }
+    }
+  }
 
-        return null;
+  private static OCSPToken getResponse(Future<OCSPToken> response) throws InterruptedException {
+    try {
+      return response.get();
+    } catch (ExecutionException e) {
+      logger.warn("OCSP request failed: " + e.getCause().getMessage());
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new DSSException(e.getCause());
+    }
+  }
+
+  private OCSPToken requestOCSPToken(String ocspUri, X509Certificate certificate, X509Certificate issuerCertificate) {
+    logger.debug("Getting OCSP token from URI: " + ocspUri);
+    try {
       Extension nonceExtension = createNonce();
       final byte[] content = buildOCSPRequest(certificate, issuerCertificate, nonceExtension);
 
@@ -178,7 +346,6 @@ public abstract class SKOnlineOCSPSource implements OCSPSource {
 
         final OCSPToken ocspToken = new OCSPToken(basicOCSPResp, bestSingleResp);
         ocspToken.setSourceURI(ocspUri);
-        certificateToken.setRevocationToken(ocspToken);
         return ocspToken;
       }
     } catch (OCSPException e) {
@@ -189,6 +356,23 @@ public abstract class SKOnlineOCSPSource implements OCSPSource {
     return null;
   }
 
+  private class OCSPRequestTask implements Callable<OCSPToken> {
+    private final String ocspUri;
+    private final X509Certificate certificate;
+    private final X509Certificate issuerCertificate;
+
+    OCSPRequestTask(String ocspUri, X509Certificate certificate, X509Certificate issuerCertificate) {
+      this.ocspUri = ocspUri;
+      this.certificate = certificate;
+      this.issuerCertificate = issuerCertificate;
+    }
+
+    @Override
+    public OCSPToken call() {
+      return requestOCSPToken(ocspUri, certificate, issuerCertificate);
+    }
+  }
+
   protected void checkNonce(BasicOCSPResp basicOCSPResp, Extension expectedNonceExtension) {
     final Extension extension = basicOCSPResp.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
     final DEROctetString expectedNonce = (DEROctetString) expectedNonceExtension.getExtnValue();
@@ -201,11 +385,6 @@ public abstract class SKOnlineOCSPSource implements OCSPSource {
 
   abstract Extension createNonce();
 
-  private DSSPrivateKeyEntry getOCSPAccessCertificatePrivateKey() {
-    Pkcs12SignatureToken signatureTokenConnection = new Pkcs12SignatureToken(configuration.getOCSPAccessCertificatePassword(), configuration.getOCSPAccessCertificateFileName());
-    return signatureTokenConnection.getKeys().get(0);
-  }
-
   void setDataLoader(DataLoader dataLoader) {
     this.dataLoader = dataLoader;
   }
@@ -0,0 +1,211 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.exceptions.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens many containers concurrently with one configuration.
+ * <p/>
+ * The containers are opened with a copy of the configuration. The TSL of the copy is loaded once before the
+ * first container is opened and is shared by all the opened containers, but not with the given configuration.
+ * Results are returned in the order the containers finish opening. At most the given number of containers are
+ * being opened or waiting to be taken from the iterator at any time.
+ *
+ * @see ContainerOpener#openAll(Iterable, Configuration, int)
+ */
+public class BulkContainerOpener {
+
+  private final static Logger logger = LoggerFactory.getLogger(BulkContainerOpener.class);
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final int maxContainersInFlight;
+
+  /**
+   * @param configuration         configuration settings shared by all the containers
+   * @param executor              executor for opening the containers
+   * @param maxContainersInFlight maximum number of containers opened but not yet taken from the iterator
+   */
+  public BulkContainerOpener(Configuration configuration, Executor executor, int maxContainersInFlight) {
+    if (maxContainersInFlight < 1) {
+      throw new IllegalArgumentException("Maximum number of containers in flight must be positive");
+    }
+    this.configuration = configuration;
+    this.executor = executor;
+    this.maxContainersInFlight = maxContainersInFlight;
+  }
+
+  /**
+   * Starts opening the containers. Containers are opened as the returned iterator is consumed.
+   *
+   * @param paths container file names with paths
+   * @return results in completion order
+   */
+  public Results openAll(Iterable<String> paths) {
+    logger.info("Opening containers with up to " + maxContainersInFlight + " containers in flight");
+    Configuration bulkConfiguration = configuration.copy();
+    bulkConfiguration.shareTslWithCopies();
+    if (bulkConfiguration.isValidateContainerOnOpen()) {
+      bulkConfiguration.getTSL();
+    }
+    return new ResultIterator(paths.iterator(), bulkConfiguration);
+  }
+
+  /**
+   * Results of opening the containers. Closing stops opening the containers that have not been taken yet.
+   */
+  public interface Results extends Iterator<Result>, Closeable {
+
+    @Override
+    void close();
+  }
+
+  private class ResultIterator implements Results {
+    private final Iterator<String> paths;
+    private final Configuration bulkConfiguration;
+    private final CompletionService<Result> completionService;
+    private final Set<Future<Result>> containersInFlight = new HashSet<>();
+    private boolean closed;
+
+    ResultIterator(Iterator<String> paths, Configuration bulkConfiguration) {
+      this.paths = paths;
+      this.bulkConfiguration = bulkConfiguration;
+      this.completionService = new ExecutorCompletionService<>(executor);
+      submitContainers();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !containersInFlight.isEmpty();
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      logger.debug("Closing with " + containersInFlight.size() + " containers in flight");
+      closed = true;
+      for (Future<Result> container : containersInFlight) {
+        container.cancel(true);
+      }
+      containersInFlight.clear();
+    }
+
+    @Override
+    public Result next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        Future<Result> container = completionService.take();
+        containersInFlight.remove(container);
+        Result result = container.get();
+        submitContainers();
+        return result;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.error("Interrupted while waiting for containers to open");
+        throw new TechnicalException("Interrupted while waiting for containers to open", e);
+      } catch (ExecutionException e) {
+        logger.error("Error opening container: " + e.getCause().getMessage());
+        throw new TechnicalException("Error opening container", e.getCause());
+      }
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    private void submitContainers() {
+      while (!closed && containersInFlight.size() < maxContainersInFlight && paths.hasNext()) {
+        containersInFlight.add(completionService.submit(new OpenContainerTask(paths.next(), bulkConfiguration)));
+      }
+    }
+  }
+
+  private static class OpenContainerTask implements Callable<Result> {
+    private final String path;
+    private final Configuration configuration;
+
+    OpenContainerTask(String path, Configuration configuration) {
+      this.path = path;
+      this.configuration = configuration;
+    }
+
+    @Override
+    public Result call() {
+      try {
+        return new Result(path, ContainerOpener.open(path, configuration), null);
+      } catch (DigiDoc4JException e) {
+        logger.error("Error opening container " + path + ": " + e.getMessage());
+        return new Result(path, null, e);
+      } catch (RuntimeException e) {
+        logger.error("Error opening container " + path + ": " + e.getMessage());
+        return new Result(path, null, new DigiDoc4JException(e));
+      }
+    }
+  }
+
+  /**
+   * Opened container or the error of opening the container.
+   */
+  public static class Result {
+    private final String path;
+    private final Container container;
+    private final DigiDoc4JException exception;
+
+    Result(String path, Container container, DigiDoc4JException exception) {
+      this.path = path;
+      this.container = container;
+      this.exception = exception;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return opened container or null if opening failed
+     */
+    public Container getContainer() {
+      return container;
+    }
+
+    /**
+     * @return error of opening the container or null if the container was opened
+     */
+    public DigiDoc4JException getException() {
+      return exception;
+    }
+
+    public boolean isOpened() {
+      return exception == null;
+    }
+  }
+}
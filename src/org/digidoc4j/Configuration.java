@@ -17,6 +17,10 @@ import org.digidoc4j.exceptions.ConfigurationException;
 import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.exceptions.TslKeyStoreNotFoundException;
 import org.digidoc4j.impl.bdoc.TslLoader;
+import org.digidoc4j.utils.EndpointHealth;
+import org.digidoc4j.utils.FileDigestCache;
+import org.digidoc4j.utils.HttpTransport;
+import org.digidoc4j.utils.SpoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.Yaml;
@@ -31,6 +35,7 @@ import java.util.*;
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.StringUtils.isNotEmpty;
 
+import eu.europa.ec.markt.dss.validation102853.ocsp.OcspResponseCache;
 import eu.europa.esig.dss.client.http.Protocol;
 
 /**
@@ -79,7 +84,7 @@ import eu.europa.esig.dss.client.http.Protocol;
  * <ul>
  * <li>CANONICALIZATION_FACTORY_IMPL: Canonicalization factory implementation.<br>
  * Default value: {@value #DEFAULT_FACTORY_IMPLEMENTATION}</li>
- * <li>CONNECTION_TIMEOUT: TSL HTTP Connection timeout (milliseconds).<br>
+ * <li>CONNECTION_TIMEOUT: HTTP connect timeout of the TSL, OCSP and timestamp requests (milliseconds).<br>
  * Default value: 1000  </li>
  * <li>DIGIDOC_FACTORY_IMPL: Factory implementation.<br>
  * Default value: {@value #DEFAULT_FACTORY_IMPLEMENTATION}</li>
@@ -115,7 +120,64 @@ import eu.europa.esig.dss.client.http.Protocol;
  * <li>VALIDATION_POLICY: Validation policy source file</li>
  * <li>TSL_KEYSTORE_LOCATION: keystore location for tsl signing certificates</li>
  * <li>TSL_KEYSTORE_PASSWORD: keystore password for the keystore in TSL_KEYSTORE_LOCATION</li>
+ * <li>VALIDATE_CONTAINER_ON_OPEN: Should BDoc containers be validated when they are opened? Allowed values: true, false.
+ * When set to false, signatures and data files are only parsed and validation is done when the container is
+ * validated.<br>
+ * Default value: true</li>
+ * <li>MEMORY_MAPPED_CONTAINERS: Should BDoc containers opened from a file be read through a memory mapping?
+ * Allowed values: true, false. Mapped container files cannot be overwritten on some platforms while the container
+ * is in use.<br>
+ * Default value: false</li>
+ * <li>LAZY_DATA_FILES: Should the data files of BDoc containers opened from a file be read from the file only when
+ * they are used? Allowed values: true, false. When set to true, the data files cannot be read after the container
+ * file has been moved, changed or overwritten, also by saving a container to the same file. Data files of
+ * containers opened from a stream are always read when they are used.<br>
+ * Default value: false</li>
+ * <li>CONTAINER_SPILL_TO_DISK_THRESHOLD: Maximum size in bytes of a BDoc container opened from a stream that is kept
+ * in memory. Larger containers are written to a temporary file. Set to -1 to choose between memory and a temporary
+ * file by the big files support setting.<br>
+ * Default value: -1</li>
+ * <li>SPOOL_DIRECTORY: Directory for the temporary files of streamed data files and containers, for example
+ * a tmpfs mount. The spool settings are shared by the whole JVM.<br>
+ * Default value: the system temporary directory</li>
+ * <li>SPOOL_QUOTA: Maximum size in bytes of all the temporary files in the spool directory. Set to -1 for no limit.<br>
+ * Default value: -1</li>
+ * <li>FILE_DIGEST_CACHE_SIZE: Maximum number of data files, added to containers from the file system, whose digests
+ * are cached for the whole JVM. Set to 0 to disable the cache.<br>
+ * Default value: 0</li>
+ * <li>HTTP_CONNECTIONS_MAX_TOTAL: Maximum number of open HTTP connections to the TSL, OCSP and timestamp services.
+ * The connections are shared by the whole JVM and kept open between requests.<br>
+ * Default value: {@value #DEFAULT_HTTP_CONNECTIONS_MAX_TOTAL}</li>
+ * <li>HTTP_CONNECTIONS_MAX_PER_ROUTE: Maximum number of open HTTP connections to one host.<br>
+ * Default value: {@value #DEFAULT_HTTP_CONNECTIONS_MAX_PER_ROUTE}</li>
+ * <li>OCSP_RESPONSE_CACHE_MAX_AGE: Time in seconds an OCSP response of a time-stamp based signature is reused for
+ * other signatures of the same certificate. Responses are shared by the whole JVM and are never reused for
+ * time-mark signatures. Set to 0 to disable the cache.<br>
+ * Default value: 0</li>
+ * <li>ROUTE_OCSP_BY_ISSUER: Send the OCSP requests of BDoc signatures to the responders configured for the issuer
+ * of the certificate under DIGIDOC_CAS (CA_CN and URL). OCSP_SOURCE is used for other issuers.
+ * Allowed values: true, false.<br>
+ * Default value: false</li>
+ * <li>OCSP_HEDGING_PERCENTILE: When an OCSP response has not arrived within this percentile of the recent response
+ * times of the responder, the same request is sent to an alternate responder of the issuer and the first valid
+ * response is used. Set to 0 to disable hedging.<br>
+ * Default value: 0</li>
+ * <li>ADAPTIVE_TIMEOUTS: Shorten the read timeout of OCSP and timestamp requests to twice the 99th percentile of
+ * the recent response times of the service, but not below one second nor above the read timeout of the data
+ * loader.
+ * Allowed values: true, false.<br>
+ * Default value: false</li>
+ * <li>CIRCUIT_BREAKER_FAILURE_THRESHOLD: Number of failed OCSP or timestamp requests in a row after which requests
+ * to the same service fail immediately for CIRCUIT_BREAKER_OPEN_TIME. The health of the services is shared by
+ * the whole JVM. Set to 0 to disable the circuit breaker.<br>
+ * Default value: 0</li>
+ * <li>CIRCUIT_BREAKER_OPEN_TIME: Time in seconds requests to a failing service fail immediately before a trial
+ * request is sent.<br>
+ * Default value: {@value #DEFAULT_CIRCUIT_BREAKER_OPEN_TIME}</li>
  * </ul>
+ * The settings from SPOOL_DIRECTORY to HTTP_CONNECTIONS_MAX_PER_ROUTE, OCSP_RESPONSE_CACHE_MAX_AGE and the adaptive
+ * timeout and circuit breaker settings are shared by the whole JVM. Containers do not apply them, they are applied
+ * with {@link #configureSharedResources()}, usually once when the application starts.
  */
 public class Configuration implements Serializable {
   private static final Logger logger = LoggerFactory.getLogger(Configuration.class);
@@ -139,6 +201,15 @@ public class Configuration implements Serializable {
 
   public static final long CACHE_ALL_DATA_FILES = -1;
   public static final long CACHE_NO_DATA_FILES = 0;
+  public static final long SPILL_TO_DISK_DISABLED = -1;
+  public static final long UNLIMITED_SPOOL_QUOTA = -1;
+  public static final int FILE_DIGEST_CACHE_DISABLED = 0;
+  public static final int DEFAULT_HTTP_CONNECTIONS_MAX_TOTAL = 20;
+  public static final int DEFAULT_HTTP_CONNECTIONS_MAX_PER_ROUTE = 10;
+  public static final long OCSP_RESPONSE_CACHE_DISABLED = 0;
+  public static final int OCSP_HEDGING_DISABLED = 0;
+  public static final int CIRCUIT_BREAKER_DISABLED = 0;
+  public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_TIME = 30;
 
   public static final String TEST_OCSP_URL = "http://demo.sk.ee/ocsp";
   public static final String PROD_OCSP_URL = "http://ocsp.sk.ee/";
@@ -152,7 +223,9 @@ public class Configuration implements Serializable {
   private Hashtable<String, String> jDigiDocConfiguration = new Hashtable<>();
   private ArrayList<String> inputSourceParseErrors = new ArrayList<>();
   private TSLCertificateSource tslCertificateSource;
+  private transient boolean sharingTslWithCopies;
   Map<String, String> configuration = new HashMap<>();
+  private Map<String, String> configurationKeys = new HashMap<>();
 
   /**
    * Application mode
@@ -169,6 +242,10 @@ public class Configuration implements Serializable {
     configuration.put("connectionTimeout", String.valueOf(ONE_SECOND));
     configuration.put("tslKeyStorePassword", "digidoc4j-password");
     configuration.put("revocationAndTimestampDeltaInMinutes", String.valueOf(ONE_DAY_IN_MINUTES));
+    configuration.put("validateContainerOnOpen", "true");
+    configuration.put("memoryMappedContainers", "false");
+    configuration.put("lazyDataFiles", "false");
+    configuration.put("containerSpillToDiskThreshold", String.valueOf(SPILL_TO_DISK_DISABLED));
 
     if (mode == Mode.TEST) {
       configuration.put("tspSource", "http://demo.sk.ee/tsa");
@@ -455,6 +532,21 @@ public class Configuration implements Serializable {
     setConfigurationValue("TSL_KEYSTORE_LOCATION", "tslKeyStoreLocation");
     setConfigurationValue("TSL_KEYSTORE_PASSWORD", "tslKeyStorePassword");
     setConfigurationValue("REVOCATION_AND_TIMESTAMP_DELTA_IN_MINUTES", "revocationAndTimestampDeltaInMinutes");
+    setConfigurationValue("VALIDATE_CONTAINER_ON_OPEN", "validateContainerOnOpen");
+    setConfigurationValue("MEMORY_MAPPED_CONTAINERS", "memoryMappedContainers");
+    setConfigurationValue("LAZY_DATA_FILES", "lazyDataFiles");
+    setConfigurationValue("CONTAINER_SPILL_TO_DISK_THRESHOLD", "containerSpillToDiskThreshold");
+    setConfigurationValue("SPOOL_DIRECTORY", "spoolDirectory");
+    setConfigurationValue("SPOOL_QUOTA", "spoolQuota");
+    setConfigurationValue("FILE_DIGEST_CACHE_SIZE", "fileDigestCacheSize");
+    setConfigurationValue("HTTP_CONNECTIONS_MAX_TOTAL", "httpConnectionsMaxTotal");
+    setConfigurationValue("HTTP_CONNECTIONS_MAX_PER_ROUTE", "httpConnectionsMaxPerRoute");
+    setConfigurationValue("OCSP_RESPONSE_CACHE_MAX_AGE", "ocspResponseCacheMaxAge");
+    setConfigurationValue("ROUTE_OCSP_BY_ISSUER", "routeOcspByIssuer");
+    setConfigurationValue("OCSP_HEDGING_PERCENTILE", "ocspHedgingPercentile");
+    setConfigurationValue("ADAPTIVE_TIMEOUTS", "adaptiveTimeouts");
+    setConfigurationValue("CIRCUIT_BREAKER_FAILURE_THRESHOLD", "circuitBreakerFailureThreshold");
+    setConfigurationValue("CIRCUIT_BREAKER_OPEN_TIME", "circuitBreakerOpenTime");
 
     setJDigiDocConfigurationValue(SIGN_OCSP_REQUESTS, Boolean.toString(hasToBeOCSPRequestSigned()));
     setJDigiDocConfigurationValue(OCSP_PKCS_12_CONTAINER, getOCSPAccessCertificateFileName());
@@ -463,6 +555,7 @@ public class Configuration implements Serializable {
   }
 
   private void setConfigurationValue(String fileKey, String configurationKey) {
+    configurationKeys.put(fileKey, configurationKey);
     if (configurationFromFile == null) return;
     Object fileValue = configurationFromFile.get(fileKey);
     if (fileValue != null) {
@@ -701,7 +794,7 @@ public class Configuration implements Serializable {
    *                          location specified .
    */
 
-  public void setTSL(TSLCertificateSource certificateSource) {
+  public synchronized void setTSL(TSLCertificateSource certificateSource) {
     this.tslCertificateSource = certificateSource;
   }
 
@@ -711,7 +804,7 @@ public class Configuration implements Serializable {
    *
    * @return TSL source
    */
-  public TSLCertificateSource getTSL() {
+  public synchronized TSLCertificateSource getTSL() {
     if (tslCertificateSource != null) {
       logger.debug("Using TSL cached copy");
       return tslCertificateSource;
@@ -760,7 +853,7 @@ public class Configuration implements Serializable {
    *
    * @param tslLocation TSL Location to be used
    */
-  public void setTslLocation(String tslLocation) {
+  public synchronized void setTslLocation(String tslLocation) {
     logger.debug("Set TSL location: " + tslLocation);
     setConfigurationParameter("tslLocation", tslLocation);
     tslCertificateSource = null;
@@ -906,6 +999,393 @@ public class Configuration implements Serializable {
     setConfigurationParameter("revocationAndTimestampDeltaInMinutes", String.valueOf(timeInMinutes));
   }
 
+  /**
+   * Set whether BDoc containers should be validated when they are opened.
+   * <p/>
+   * When validation on open is disabled, opening a container only parses the signatures and data files.
+   * The container is validated when {@link Container#validate()} is called.
+   *
+   * @param validateContainerOnOpen false to postpone validation until the container is validated
+   */
+  public void setValidateContainerOnOpen(boolean validateContainerOnOpen) {
+    logger.debug("Validate container on open: " + validateContainerOnOpen);
+    setConfigurationParameter("validateContainerOnOpen", String.valueOf(validateContainerOnOpen));
+  }
+
+  /**
+   * Are BDoc containers validated when they are opened? Default value is true.
+   *
+   * @return true if containers are validated on open
+   */
+  public boolean isValidateContainerOnOpen() {
+    String validateContainerOnOpen = getConfigurationParameter("validateContainerOnOpen");
+    return !StringUtils.equalsIgnoreCase("false", validateContainerOnOpen);
+  }
+
+  /**
+   * Set whether BDoc containers opened from a file are read through a read only memory mapping.
+   * <p/>
+   * Mapping avoids copying the container to the heap when the same large containers are opened repeatedly.
+   * On some platforms a mapped file cannot be overwritten or deleted while the container is in use.
+   *
+   * @param memoryMappedContainers true to read container files through a memory mapping
+   */
+  public void setMemoryMappedContainersEnabled(boolean memoryMappedContainers) {
+    logger.debug("Memory mapped containers: " + memoryMappedContainers);
+    setConfigurationParameter("memoryMappedContainers", String.valueOf(memoryMappedContainers));
+  }
+
+  /**
+   * Are BDoc container files read through a memory mapping? Default value is false.
+   *
+   * @return true if container files are memory mapped
+   */
+  public boolean isMemoryMappedContainersEnabled() {
+    String memoryMappedContainers = getConfigurationParameter("memoryMappedContainers");
+    return StringUtils.equalsIgnoreCase("true", memoryMappedContainers);
+  }
+
+  /**
+   * Set whether the data files of BDoc containers opened from a file are read from the file only when they are used.
+   * <p/>
+   * By default the data files are read into memory when the container is opened. Lazy data files are not copied,
+   * but they cannot be read after the container file has been moved, changed or overwritten, also by saving a
+   * container to the same file.
+   *
+   * @param lazyDataFiles true to read data files from the container file when they are used
+   */
+  public void setLazyDataFilesEnabled(boolean lazyDataFiles) {
+    logger.debug("Lazy data files: " + lazyDataFiles);
+    setConfigurationParameter("lazyDataFiles", String.valueOf(lazyDataFiles));
+  }
+
+  /**
+   * Are the data files of BDoc containers opened from a file read only when they are used? Default value is false.
+   *
+   * @return true if data files are read from the container file when they are used
+   */
+  public boolean isLazyDataFilesEnabled() {
+    String lazyDataFiles = getConfigurationParameter("lazyDataFiles");
+    return StringUtils.equalsIgnoreCase("true", lazyDataFiles);
+  }
+
+  /**
+   * Set the maximum size of a BDoc container opened from a stream that is kept in memory.
+   * Containers larger than the threshold are written to a temporary file while they are read.
+   * <p/>
+   * Set to {@link #SPILL_TO_DISK_DISABLED} to keep containers either in memory or in a temporary file depending
+   * on the big files support setting.
+   *
+   * @param thresholdInBytes maximum container size in bytes kept in memory
+   */
+  public void setContainerSpillToDiskThresholdInBytes(long thresholdInBytes) {
+    logger.debug("Set container spill to disk threshold to " + thresholdInBytes + " bytes");
+    setConfigurationParameter("containerSpillToDiskThreshold", String.valueOf(thresholdInBytes));
+  }
+
+  /**
+   * Get the maximum size of a BDoc container opened from a stream that is kept in memory.
+   *
+   * @return size in bytes or {@link #SPILL_TO_DISK_DISABLED} if no threshold is used
+   */
+  public long getContainerSpillToDiskThresholdInBytes() {
+    String threshold = getConfigurationParameter("containerSpillToDiskThreshold");
+    if (threshold == null) return SPILL_TO_DISK_DISABLED;
+    return Long.parseLong(threshold);
+  }
+
+  /**
+   * Set the directory for the temporary files of streamed data files and containers.
+   * The spool settings are shared by the whole JVM.
+   *
+   * @param spoolDirectory directory path
+   * @see org.digidoc4j.utils.SpoolManager
+   */
+  public void setSpoolDirectory(String spoolDirectory) {
+    logger.debug("Set spool directory to " + spoolDirectory);
+    setConfigurationParameter("spoolDirectory", spoolDirectory);
+  }
+
+  /**
+   * Get the directory for the temporary files of streamed data files and containers.
+   *
+   * @return directory path or null if the system temporary directory is used
+   */
+  public String getSpoolDirectory() {
+    return getConfigurationParameter("spoolDirectory");
+  }
+
+  /**
+   * Set the maximum size of all the temporary files in the spool directory.
+   *
+   * @param quotaInBytes quota in bytes or {@link #UNLIMITED_SPOOL_QUOTA}
+   */
+  public void setSpoolQuotaInBytes(long quotaInBytes) {
+    logger.debug("Set spool quota to " + quotaInBytes + " bytes");
+    setConfigurationParameter("spoolQuota", String.valueOf(quotaInBytes));
+  }
+
+  /**
+   * Get the maximum size of all the temporary files in the spool directory.
+   *
+   * @return quota in bytes or {@link #UNLIMITED_SPOOL_QUOTA} if the size is not limited
+   */
+  public long getSpoolQuotaInBytes() {
+    String quota = getConfigurationParameter("spoolQuota");
+    if (quota == null) return UNLIMITED_SPOOL_QUOTA;
+    return Long.parseLong(quota);
+  }
+
+  /**
+   * Set the maximum number of data files whose digests are cached for the whole JVM. Data files added to many
+   * containers from the same file are then digested only once.
+   *
+   * @param cacheSize number of files or {@link #FILE_DIGEST_CACHE_DISABLED}
+   * @see org.digidoc4j.utils.FileDigestCache
+   */
+  public void setFileDigestCacheSize(int cacheSize) {
+    logger.debug("Set file digest cache size to " + cacheSize);
+    setConfigurationParameter("fileDigestCacheSize", String.valueOf(cacheSize));
+  }
+
+  /**
+   * Get the maximum number of data files whose digests are cached.
+   *
+   * @return number of files or {@link #FILE_DIGEST_CACHE_DISABLED}
+   */
+  public int getFileDigestCacheSize() {
+    String cacheSize = getConfigurationParameter("fileDigestCacheSize");
+    if (cacheSize == null) return FILE_DIGEST_CACHE_DISABLED;
+    return Integer.parseInt(cacheSize);
+  }
+
+  /**
+   * Set the maximum number of open HTTP connections to the TSL, OCSP and timestamp services.
+   *
+   * @param connectionsMaxTotal number of connections
+   * @see org.digidoc4j.utils.HttpTransport
+   */
+  public void setHttpConnectionsMaxTotal(int connectionsMaxTotal) {
+    logger.debug("Set HTTP connections max total to " + connectionsMaxTotal);
+    setConfigurationParameter("httpConnectionsMaxTotal", String.valueOf(connectionsMaxTotal));
+  }
+
+  /**
+   * Get the maximum number of open HTTP connections to the TSL, OCSP and timestamp services.
+   *
+   * @return number of connections
+   */
+  public int getHttpConnectionsMaxTotal() {
+    String connectionsMaxTotal = getConfigurationParameter("httpConnectionsMaxTotal");
+    if (connectionsMaxTotal == null) return DEFAULT_HTTP_CONNECTIONS_MAX_TOTAL;
+    return Integer.parseInt(connectionsMaxTotal);
+  }
+
+  /**
+   * Set the maximum number of open HTTP connections to one host.
+   *
+   * @param connectionsMaxPerRoute number of connections
+   * @see org.digidoc4j.utils.HttpTransport
+   */
+  public void setHttpConnectionsMaxPerRoute(int connectionsMaxPerRoute) {
+    logger.debug("Set HTTP connections max per route to " + connectionsMaxPerRoute);
+    setConfigurationParameter("httpConnectionsMaxPerRoute", String.valueOf(connectionsMaxPerRoute));
+  }
+
+  /**
+   * Get the maximum number of open HTTP connections to one host.
+   *
+   * @return number of connections
+   */
+  public int getHttpConnectionsMaxPerRoute() {
+    String connectionsMaxPerRoute = getConfigurationParameter("httpConnectionsMaxPerRoute");
+    if (connectionsMaxPerRoute == null) return DEFAULT_HTTP_CONNECTIONS_MAX_PER_ROUTE;
+    return Integer.parseInt(connectionsMaxPerRoute);
+  }
+
+  /**
+   * Set the time OCSP responses of time-stamp based signatures are reused for other signatures of the same
+   * certificate. A response is not reused for a signature time-stamped after the response was produced.
+   *
+   * @param maxAgeInSeconds time in seconds or {@link #OCSP_RESPONSE_CACHE_DISABLED}
+   * @see eu.europa.ec.markt.dss.validation102853.ocsp.OcspResponseCache
+   */
+  public void setOcspResponseCacheMaxAgeInSeconds(long maxAgeInSeconds) {
+    logger.debug("Set OCSP response cache max age to " + maxAgeInSeconds + " s");
+    setConfigurationParameter("ocspResponseCacheMaxAge", String.valueOf(maxAgeInSeconds));
+  }
+
+  /**
+   * Get the time OCSP responses of time-stamp based signatures are reused.
+   *
+   * @return time in seconds or {@link #OCSP_RESPONSE_CACHE_DISABLED}
+   */
+  public long getOcspResponseCacheMaxAgeInSeconds() {
+    String maxAge = getConfigurationParameter("ocspResponseCacheMaxAge");
+    if (maxAge == null) return OCSP_RESPONSE_CACHE_DISABLED;
+    return Long.parseLong(maxAge);
+  }
+
+  /**
+   * Set whether OCSP requests of BDoc signatures are sent to the responders configured for the issuer of
+   * the certificate under DIGIDOC_CAS instead of the OCSP source.
+   *
+   * @param routeOcspByIssuer true to choose the responder by the issuer
+   */
+  public void setRouteOcspByIssuer(boolean routeOcspByIssuer) {
+    logger.debug("Route OCSP by issuer: " + routeOcspByIssuer);
+    setConfigurationParameter("routeOcspByIssuer", String.valueOf(routeOcspByIssuer));
+  }
+
+  /**
+   * Are OCSP requests sent to the responders of the certificate issuer? Default value is false.
+   *
+   * @return true if the responder is chosen by the issuer
+   */
+  public boolean isRouteOcspByIssuer() {
+    return StringUtils.equalsIgnoreCase("true", getConfigurationParameter("routeOcspByIssuer"));
+  }
+
+  /**
+   * Get the OCSP responder URLs configured under DIGIDOC_CAS for the certificate authority.
+   *
+   * @param caCommonName common name of the certificate authority
+   * @return responder URLs in configuration order without duplicates, empty if none are configured
+   */
+  public List<String> getOcspResponderUrls(String caCommonName) {
+    Set<String> urls = new LinkedHashSet<>();
+    int numberOfCAs = parseCount(jDigiDocConfiguration.get("DIGIDOC_CAS"));
+    for (int i = 1; i <= numberOfCAs; i++) {
+      String caPrefix = "DIGIDOC_CA_" + i;
+      int numberOfOCSPs = parseCount(jDigiDocConfiguration.get(caPrefix + "_OCSPS"));
+      for (int j = 1; j <= numberOfOCSPs; j++) {
+        String prefix = caPrefix + "_OCSP" + j;
+        String url = jDigiDocConfiguration.get(prefix + "_URL");
+        if (url != null && StringUtils.equals(caCommonName, jDigiDocConfiguration.get(prefix + "_CA_CN"))) {
+          urls.add(url);
+        }
+      }
+    }
+    logger.debug("OCSP responders of " + caCommonName + ": " + urls);
+    return new ArrayList<>(urls);
+  }
+
+  private int parseCount(String count) {
+    return count == null ? 0 : Integer.parseInt(count);
+  }
+
+  /**
+   * Set the percentile of the recent response times of an OCSP responder after which the request is also sent to
+   * an alternate responder. Alternate responders are used only when OCSP requests are routed by the issuer.
+   *
+   * @param percentile percentile between 1 and 99 or {@link #OCSP_HEDGING_DISABLED}
+   * @see #setRouteOcspByIssuer(boolean)
+   */
+  public void setOcspHedgingPercentile(int percentile) {
+    logger.debug("Set OCSP hedging percentile to " + percentile);
+    setConfigurationParameter("ocspHedgingPercentile", String.valueOf(percentile));
+  }
+
+  /**
+   * Get the percentile of the recent response times of an OCSP responder after which the request is hedged.
+   *
+   * @return percentile or {@link #OCSP_HEDGING_DISABLED}
+   */
+  public int getOcspHedgingPercentile() {
+    String percentile = getConfigurationParameter("ocspHedgingPercentile");
+    if (percentile == null) return OCSP_HEDGING_DISABLED;
+    return Integer.parseInt(percentile);
+  }
+
+  /**
+   * Set whether the read timeout of OCSP and timestamp requests adapts to the recent response times of the service.
+   *
+   * @param adaptiveTimeouts true to shorten the timeout of fast services
+   * @see org.digidoc4j.utils.EndpointHealth
+   */
+  public void setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+    logger.debug("Adaptive timeouts: " + adaptiveTimeouts);
+    setConfigurationParameter("adaptiveTimeouts", String.valueOf(adaptiveTimeouts));
+  }
+
+  /**
+   * Does the read timeout of OCSP and timestamp requests adapt to the response times? Default value is false.
+   *
+   * @return true if timeouts are adaptive
+   */
+  public boolean isAdaptiveTimeouts() {
+    return StringUtils.equalsIgnoreCase("true", getConfigurationParameter("adaptiveTimeouts"));
+  }
+
+  /**
+   * Set the number of failed OCSP or timestamp requests in a row after which requests to the same service fail
+   * immediately.
+   *
+   * @param failureThreshold number of failures or {@link #CIRCUIT_BREAKER_DISABLED}
+   * @see org.digidoc4j.utils.EndpointHealth
+   */
+  public void setCircuitBreakerFailureThreshold(int failureThreshold) {
+    logger.debug("Set circuit breaker failure threshold to " + failureThreshold);
+    setConfigurationParameter("circuitBreakerFailureThreshold", String.valueOf(failureThreshold));
+  }
+
+  /**
+   * Get the number of failed requests in a row after which requests to the same service fail immediately.
+   *
+   * @return number of failures or {@link #CIRCUIT_BREAKER_DISABLED}
+   */
+  public int getCircuitBreakerFailureThreshold() {
+    String failureThreshold = getConfigurationParameter("circuitBreakerFailureThreshold");
+    if (failureThreshold == null) return CIRCUIT_BREAKER_DISABLED;
+    return Integer.parseInt(failureThreshold);
+  }
+
+  /**
+   * Set the time requests to a failing service fail immediately before a trial request is sent.
+   *
+   * @param openTimeInSeconds time in seconds
+   */
+  public void setCircuitBreakerOpenTimeInSeconds(long openTimeInSeconds) {
+    logger.debug("Set circuit breaker open time to " + openTimeInSeconds + " s");
+    setConfigurationParameter("circuitBreakerOpenTime", String.valueOf(openTimeInSeconds));
+  }
+
+  /**
+   * Get the time requests to a failing service fail immediately.
+   *
+   * @return time in seconds, default {@value #DEFAULT_CIRCUIT_BREAKER_OPEN_TIME}
+   */
+  public long getCircuitBreakerOpenTimeInSeconds() {
+    String openTime = getConfigurationParameter("circuitBreakerOpenTime");
+    if (openTime == null) return DEFAULT_CIRCUIT_BREAKER_OPEN_TIME;
+    return Long.parseLong(openTime);
+  }
+
+  /**
+   * Is the setting given in the configuration file or with its setter?
+   *
+   * @param fileKey name of the setting in the configuration file, for example SPOOL_QUOTA
+   * @return true if the setting is given
+   */
+  public boolean hasSetting(String fileKey) {
+    String configurationKey = configurationKeys.get(fileKey);
+    return configurationKey != null && configuration.get(configurationKey) != null;
+  }
+
+  /**
+   * Applies the settings shared by the whole JVM: the spool, the file digest cache, the HTTP connection limits,
+   * the OCSP response cache, adaptive timeouts and the circuit breaker. Shared settings that are not given in this
+   * configuration keep their current value.
+   */
+  public void configureSharedResources() {
+    logger.debug("Configuring shared resources");
+    SpoolManager.getInstance().configure(this);
+    FileDigestCache.getInstance().configure(this);
+    HttpTransport.getInstance().configure(this);
+    OcspResponseCache.getInstance().configure(this);
+    EndpointHealth.getInstance().configure(this);
+  }
+
   private void setConfigurationParameter(String key, String value) {
     logger.debug("Key: " + key + ", value: " + value);
     configuration.put(key, value);
@@ -933,10 +1413,14 @@ public class Configuration implements Serializable {
    *
    * @return new configuration object
    */
-  public Configuration copy() {
+  public synchronized Configuration copy() {
     ObjectOutputStream oos = null;
     ObjectInputStream ois = null;
     Configuration copyConfiguration = null;
+    TSLCertificateSource loadedTsl = tslCertificateSource;
+    if (sharingTslWithCopies) {
+      tslCertificateSource = null;
+    }
     // deep copy
     ByteArrayOutputStream bos = new ByteArrayOutputStream();
     try {
@@ -947,9 +1431,13 @@ public class Configuration implements Serializable {
           new ByteArrayInputStream(bos.toByteArray());
       ois = new ObjectInputStream(bin);
       copyConfiguration = (Configuration) ois.readObject();
+      if (sharingTslWithCopies) {
+        copyConfiguration.tslCertificateSource = loadedTsl;
+      }
     } catch (Exception e) {
       throw new DigiDoc4JException(e);
     } finally {
+      tslCertificateSource = loadedTsl;
       IOUtils.closeQuietly(oos);
       IOUtils.closeQuietly(ois);
       IOUtils.closeQuietly(bos);
@@ -957,6 +1445,15 @@ public class Configuration implements Serializable {
     return copyConfiguration;
   }
 
+  /**
+   * Makes the copies of this configuration share its loaded TSL instead of copying it. The copies themselves copy
+   * the TSL again. Used only by {@link BulkContainerOpener}, whose containers share one trust list.
+   */
+  synchronized void shareTslWithCopies() {
+    logger.debug("Sharing TSL with copies of the configuration");
+    sharingTslWithCopies = true;
+  }
+
   private void initOcspAccessCertPasswordForJDigidoc() {
     char[] ocspAccessCertificatePassword = getOCSPAccessCertificatePassword();
     if(ocspAccessCertificatePassword != null && ocspAccessCertificatePassword.length > 0) {
@@ -29,7 +29,7 @@ import eu.europa.esig.dss.MimeType;
  * To modify the data list of a signed container by adding or removing datafiles you must first
  * remove all the signatures.
  */
-public interface Container extends Serializable {
+public interface Container extends Serializable, AutoCloseable {
 
   /**
    * Adds a data file from the file system to the container.
@@ -129,6 +129,18 @@ public interface Container extends Serializable {
    */
   void extendSignatureProfile(SignatureProfile profile);
 
+  /**
+   * Extends the profile of one signature. Other signatures in the container are not extended.
+   * <p/>
+   * A signature can only be extended to a higher profile: B_BES to LT or LTA and LT or LT_TM to LTA.
+   *
+   * @param signature signature to be extended
+   * @param profile   signature profile
+   * @throws org.digidoc4j.exceptions.DigiDoc4JException when the signature can not be extended to the profile
+   * @see SignatureProfile
+   */
+  void extendSignature(Signature signature, SignatureProfile profile);
+
   /**
    * Saves the container to the specified location.
    *
@@ -150,6 +162,14 @@ public interface Container extends Serializable {
    */
   ValidationResult validate();
 
+  /**
+   * Releases the temporary files held by the container and by the data files the container created.
+   * Data files added to the container from outside keep their temporary files until they are closed as well.
+   * The container can not be used after it is closed.
+   */
+  @Override
+  void close();
+
   //Deprecated methods below
 
   /**
@@ -15,16 +15,30 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.io.IOUtils;
+import org.digidoc4j.ContainerSummary.DataFileSummary;
+import org.digidoc4j.ContainerSummary.SignatureSummary;
 import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.impl.bdoc.AsicContainerIndex;
+import org.digidoc4j.impl.bdoc.AsicContainerPeeker;
 import org.digidoc4j.impl.bdoc.AsicFacade;
 import org.digidoc4j.impl.bdoc.BDocContainer;
+import org.digidoc4j.impl.bdoc.SpillingDocumentReader;
 import org.digidoc4j.impl.ddoc.DDocOpener;
 import org.digidoc4j.utils.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.europa.ec.markt.dss.signature.StreamDocument;
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.MimeType;
+
 /**
  * Helper class for opening containers. The proper way of opening containers would be using {@link ContainerBuilder},
  * for example using {@link ContainerBuilder#fromExistingFile(String)} and {@link ContainerBuilder#fromStream(InputStream)}.
@@ -34,6 +48,7 @@ import org.slf4j.LoggerFactory;
 public class ContainerOpener {
 
   private final static Logger logger = LoggerFactory.getLogger(ContainerOpener.class);
+  static final long PEEK_IN_MEMORY_THRESHOLD = 1024 * 1024;
 
   /**
    * Open container from a file. Use {@link ContainerBuilder#fromExistingFile(String)} instead.
@@ -130,6 +145,153 @@ public class ContainerOpener {
     }
   }
 
+  /**
+   * Open containers from files concurrently. All the containers share a copy of the configuration and its TSL,
+   * which is loaded only once.
+   * <p/>
+   * The containers are opened on a thread pool of daemon threads of the given size as the returned iterator is
+   * consumed. The thread pool is shut down when all the results have been taken, when taking a result fails or
+   * when the results are closed. Close the results when not all of them are taken. Use
+   * {@link BulkContainerOpener} to open containers on an existing executor.
+   *
+   * @param paths         file names and paths.
+   * @param configuration configuration settings
+   * @param parallelism   number of containers opened at the same time
+   * @return opened containers or opening errors in the order the containers were opened
+   */
+  public static BulkContainerOpener.Results openAll(Iterable<String> paths, Configuration configuration,
+                                                    int parallelism) {
+    logger.debug("Opening containers with parallelism " + parallelism);
+    final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "container-opener");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    final BulkContainerOpener.Results results;
+    try {
+      results = new BulkContainerOpener(configuration, executor, parallelism * 2).openAll(paths);
+    } catch (RuntimeException e) {
+      executor.shutdownNow();
+      throw e;
+    }
+    return new BulkContainerOpener.Results() {
+      @Override
+      public boolean hasNext() {
+        boolean hasNext = results.hasNext();
+        if (!hasNext) {
+          executor.shutdown();
+        }
+        return hasNext;
+      }
+
+      @Override
+      public BulkContainerOpener.Result next() {
+        BulkContainerOpener.Result result;
+        try {
+          result = results.next();
+        } catch (RuntimeException e) {
+          close();
+          throw e;
+        }
+        if (!results.hasNext()) {
+          executor.shutdown();
+        }
+        return result;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void close() {
+        results.close();
+        executor.shutdownNow();
+      }
+    };
+  }
+
+  /**
+   * Read the container type, data files and signature details from a file without opening the container.
+   * <p/>
+   * BDoc containers are read with a streaming scan of the manifest and signature files. Signatures are not
+   * validated and the TSL is not loaded. DDoc containers are opened to read the details.
+   *
+   * @param path file name and path.
+   * @return container metadata
+   * @throws DigiDoc4JException when the file is not found or empty
+   */
+  public static ContainerSummary peek(String path) throws DigiDoc4JException {
+    logger.debug("Peeking container from path: " + path);
+    try {
+      if (Helper.isZipFile(new File(path))) {
+        return new AsicContainerPeeker(AsicContainerIndex.fromFile(path)).peek();
+      } else {
+        return summarize(new DDocOpener().open(path));
+      }
+    } catch (EOFException eof) {
+      String msg = "File is not valid.";
+      logger.error(msg);
+      throw new DigiDoc4JException(msg);
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      throw new DigiDoc4JException(e);
+    }
+  }
+
+  /**
+   * Read the container type, data files and signature details from a stream without opening the container.
+   * <p/>
+   * BDoc containers larger than {@value #PEEK_IN_MEMORY_THRESHOLD} bytes are read from a temporary file that is
+   * deleted when the container has been read.
+   *
+   * @param stream stream of a container.
+   * @return container metadata
+   * @see #peek(String)
+   */
+  public static ContainerSummary peek(InputStream stream) {
+    logger.debug("Peeking container from stream");
+    BufferedInputStream bufferedInputStream = new BufferedInputStream(stream);
+
+    try {
+      if (Helper.isZipFile(bufferedInputStream)) {
+        DSSDocument container = new SpillingDocumentReader(PEEK_IN_MEMORY_THRESHOLD).read(bufferedInputStream, null,
+            MimeType.ASICE);
+        try {
+          return new AsicContainerPeeker(AsicContainerIndex.fromDocument(container)).peek();
+        } finally {
+          if (container instanceof StreamDocument) {
+            ((StreamDocument) container).close();
+          }
+        }
+      } else {
+        return summarize(new DDocOpener().open(bufferedInputStream));
+      }
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      throw new DigiDoc4JException(e);
+    } finally {
+      IOUtils.closeQuietly(bufferedInputStream);
+    }
+  }
+
+  private static ContainerSummary summarize(Container container) {
+    List<DataFileSummary> dataFiles = new ArrayList<>();
+    for (DataFile dataFile : container.getDataFiles()) {
+      dataFiles.add(new DataFileSummary(dataFile.getName(), dataFile.getFileSize(), dataFile.getMediaType()));
+    }
+    List<SignatureSummary> signatures = new ArrayList<>();
+    for (Signature signature : container.getSignatures()) {
+      signatures.add(new SignatureSummary(signature.getId(), signature.getSigningCertificate().getSubjectName(),
+          signature.getClaimedSigningTime(), signature.getProfile()));
+    }
+    return new ContainerSummary(container.getType(), dataFiles, signatures);
+  }
+
   private static Container openBDocContainer(String path, Configuration configuration) {
     AsicFacade facade = new AsicFacade(path, configuration);
     return new BDocContainer(facade);
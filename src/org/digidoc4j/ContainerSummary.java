@@ -0,0 +1,123 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Metadata of a container read without opening and validating the container.
+ *
+ * @see ContainerOpener#peek(String)
+ */
+public class ContainerSummary implements Serializable {
+
+  private final String type;
+  private final List<DataFileSummary> dataFiles;
+  private final List<SignatureSummary> signatures;
+
+  public ContainerSummary(String type, List<DataFileSummary> dataFiles, List<SignatureSummary> signatures) {
+    this.type = type;
+    this.dataFiles = new ArrayList<>(dataFiles);
+    this.signatures = new ArrayList<>(signatures);
+  }
+
+  /**
+   * Returns the container type, BDOC or DDOC.
+   *
+   * @return container type
+   * @see Container#getType()
+   */
+  public String getType() {
+    return type;
+  }
+
+  public List<DataFileSummary> getDataFiles() {
+    return new ArrayList<>(dataFiles);
+  }
+
+  public List<SignatureSummary> getSignatures() {
+    return new ArrayList<>(signatures);
+  }
+
+  /**
+   * Metadata of a data file in the container.
+   */
+  public static class DataFileSummary implements Serializable {
+    private final String name;
+    private final long size;
+    private final String mediaType;
+
+    public DataFileSummary(String name, long size, String mediaType) {
+      this.name = name;
+      this.size = size;
+      this.mediaType = mediaType;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return file size in bytes
+     */
+    public long getSize() {
+      return size;
+    }
+
+    public String getMediaType() {
+      return mediaType;
+    }
+  }
+
+  /**
+   * Metadata of a signature in the container. The signature is not validated.
+   */
+  public static class SignatureSummary implements Serializable {
+    private final String id;
+    private final String signerSubjectName;
+    private final Date claimedSigningTime;
+    private final SignatureProfile profile;
+
+    public SignatureSummary(String id, String signerSubjectName, Date claimedSigningTime, SignatureProfile profile) {
+      this.id = id;
+      this.signerSubjectName = signerSubjectName;
+      this.claimedSigningTime = claimedSigningTime;
+      this.profile = profile;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * @return subject name of the signer certificate
+     * @see X509Cert#getSubjectName()
+     */
+    public String getSignerSubjectName() {
+      return signerSubjectName;
+    }
+
+    /**
+     * @return signer's computer time of signing
+     * @see Signature#getClaimedSigningTime()
+     */
+    public Date getClaimedSigningTime() {
+      return claimedSigningTime;
+    }
+
+    public SignatureProfile getProfile() {
+      return profile;
+    }
+  }
+}
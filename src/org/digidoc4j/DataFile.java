@@ -17,20 +17,26 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.exceptions.TechnicalException;
+import org.digidoc4j.impl.StreamableDocument;
+import org.digidoc4j.impl.StreamableFileDocument;
+import org.digidoc4j.utils.DigestCalculator;
+import org.digidoc4j.utils.FileDigestCache;
+import org.digidoc4j.utils.FileTransfer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.europa.ec.markt.dss.signature.StreamDocument;
 import eu.europa.esig.dss.DSSDocument;
 import eu.europa.esig.dss.DSSException;
-import eu.europa.esig.dss.DSSUtils;
-import eu.europa.esig.dss.Digest;
 import eu.europa.esig.dss.DigestAlgorithm;
 import eu.europa.esig.dss.FileDocument;
 import eu.europa.esig.dss.InMemoryDocument;
@@ -39,11 +45,11 @@ import eu.europa.esig.dss.MimeType;
 /**
  * Data file wrapper providing methods for handling signed files or files to be signed in Container.
  */
-public class DataFile implements Serializable {
+public class DataFile implements Serializable, AutoCloseable {
   private static final Logger logger = LoggerFactory.getLogger(DataFile.class);
 
   DSSDocument document = null;
-  private Digest digest = null;
+  private final Map<DigestAlgorithm, byte[]> digests = new EnumMap<>(DigestAlgorithm.class);
   private String id;
 
   /**
@@ -55,7 +61,7 @@ public class DataFile implements Serializable {
   public DataFile(String path, String mimeType) {
     logger.debug("Path: " + path + ", mime type: " + mimeType);
     try {
-      document = new FileDocument(path);
+      document = new StreamableFileDocument(path);
       document.setMimeType(getMimeType(mimeType));
     } catch (Exception e) {
       logger.error(e.getMessage());
@@ -78,7 +84,8 @@ public class DataFile implements Serializable {
   }
 
   /**
-   * Creates in streamed document container.
+   * Creates in streamed document container. The SHA-256 digest, the default digest algorithm of BDoc signatures,
+   * is calculated while the stream is read.
    *
    * @param stream   file content from stream
    * @param fileName file name with path
@@ -87,13 +94,25 @@ public class DataFile implements Serializable {
   public DataFile(InputStream stream, String fileName, String mimeType) {
     logger.debug("File name: " + fileName + ", mime type: " + mimeType);
     try {
-      document = new StreamDocument(stream, fileName, getMimeType(mimeType));
+      document = new StreamDocument(stream, fileName, getMimeType(mimeType), DigestAlgorithm.SHA256);
+    } catch (DigiDoc4JException e) {
+      throw e;
     } catch (Exception e) {
       logger.error(e.getMessage());
       throw new DigiDoc4JException(e);
     }
   }
 
+  /**
+   * Creates data file of an existing document.
+   *
+   * @param document document holding the data file content, name and MIME type
+   */
+  public DataFile(DSSDocument document) {
+    logger.debug("Document name: " + document.getName() + ", mime type: " + document.getMimeType());
+    this.document = document;
+  }
+
   private MimeType getMimeType(String mimeType) {
     logger.debug("");
     try {
@@ -134,13 +153,8 @@ public class DataFile implements Serializable {
    */
   public byte[] calculateDigest(URL method) {        // TODO exceptions to throw
     logger.debug("URL method: " + method);
-    if (digest == null) {
-      DigestAlgorithm digestAlgorithm = DigestAlgorithm.forXML(method.toString());
-      digest = new Digest(digestAlgorithm, calculateDigestInternal(digestAlgorithm));
-    } else {
-      logger.debug("Returning existing digest value");
-    }
-    return digest.getValue();
+    DigestAlgorithm digestAlgorithm = DigestAlgorithm.forXML(method.toString());
+    return calculateDigests(EnumSet.of(digestAlgorithm)).get(digestAlgorithm);
   }
 
   /**
@@ -152,9 +166,97 @@ public class DataFile implements Serializable {
     return calculateDigest(digestType.uri());
   }
 
-  byte[] calculateDigestInternal(DigestAlgorithm digestAlgorithm) {
-    logger.debug("Digest algorithm: " + digestAlgorithm);
-    return DSSUtils.digest(digestAlgorithm, document.getBytes());
+  /**
+   * Calculates digests of several algorithms for the data file. Digests already calculated are returned from
+   * the cache, the missing digests are calculated with one read of the data file.
+   *
+   * @param digestTypes digest algorithm types
+   * @return calculated digests by digest algorithm type
+   */
+  public Map<org.digidoc4j.DigestAlgorithm, byte[]> calculateDigests(org.digidoc4j.DigestAlgorithm... digestTypes) {
+    logger.debug("");
+    Set<DigestAlgorithm> digestAlgorithms = EnumSet.noneOf(DigestAlgorithm.class);
+    for (org.digidoc4j.DigestAlgorithm digestType : digestTypes) {
+      digestAlgorithms.add(digestType.getDssDigestAlgorithm());
+    }
+    Map<DigestAlgorithm, byte[]> calculatedDigests = calculateDigests(digestAlgorithms);
+    Map<org.digidoc4j.DigestAlgorithm, byte[]> result = new EnumMap<>(org.digidoc4j.DigestAlgorithm.class);
+    for (org.digidoc4j.DigestAlgorithm digestType : digestTypes) {
+      result.put(digestType, calculatedDigests.get(digestType.getDssDigestAlgorithm()));
+    }
+    return result;
+  }
+
+  private Map<DigestAlgorithm, byte[]> calculateDigests(Set<DigestAlgorithm> digestAlgorithms) {
+    synchronized (digests) {
+      Set<DigestAlgorithm> missingAlgorithms = EnumSet.noneOf(DigestAlgorithm.class);
+      for (DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+        if (!digests.containsKey(digestAlgorithm)) {
+          missingAlgorithms.add(digestAlgorithm);
+        }
+      }
+      if (missingAlgorithms.isEmpty()) {
+        logger.debug("Returning existing digest values");
+      } else {
+        digests.putAll(calculateDigestsInternal(missingAlgorithms));
+      }
+      Map<DigestAlgorithm, byte[]> result = new EnumMap<>(DigestAlgorithm.class);
+      for (DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+        result.put(digestAlgorithm, digests.get(digestAlgorithm));
+      }
+      return result;
+    }
+  }
+
+  Map<DigestAlgorithm, byte[]> calculateDigestsInternal(Set<DigestAlgorithm> digestAlgorithms) {
+    FileDigestCache fileDigestCache = FileDigestCache.getInstance();
+    if (!(document instanceof FileDocument) || !fileDigestCache.isEnabled()) {
+      return readDigests(digestAlgorithms);
+    }
+    FileDigestCache.Key key = fileDigestCache.keyOf(new File(document.getAbsolutePath()));
+    if (key == null) {
+      return readDigests(digestAlgorithms);
+    }
+    Map<DigestAlgorithm, byte[]> calculatedDigests = fileDigestCache.get(key, digestAlgorithms);
+    Set<DigestAlgorithm> missingAlgorithms = EnumSet.copyOf(digestAlgorithms);
+    missingAlgorithms.removeAll(calculatedDigests.keySet());
+    if (missingAlgorithms.isEmpty()) {
+      logger.debug("Returning digests from the file digest cache");
+      return calculatedDigests;
+    }
+    Map<DigestAlgorithm, byte[]> readDigests = readDigests(missingAlgorithms);
+    fileDigestCache.put(key, readDigests);
+    calculatedDigests.putAll(readDigests);
+    return calculatedDigests;
+  }
+
+  private Map<DigestAlgorithm, byte[]> readDigests(Set<DigestAlgorithm> digestAlgorithms) {
+    logger.debug("Digest algorithms: " + digestAlgorithms);
+    Map<DigestAlgorithm, byte[]> calculatedDigests = new EnumMap<>(DigestAlgorithm.class);
+    Set<DigestAlgorithm> algorithmsToRead = EnumSet.copyOf(digestAlgorithms);
+    if (document instanceof StreamDocument) {
+      for (DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+        if (((StreamDocument) document).hasDigest(digestAlgorithm)) {
+          calculatedDigests.put(digestAlgorithm, Base64.decodeBase64(document.getDigest(digestAlgorithm)));
+          algorithmsToRead.remove(digestAlgorithm);
+        }
+      }
+    }
+    if (algorithmsToRead.size() == 1) {
+      DigestAlgorithm digestAlgorithm = algorithmsToRead.iterator().next();
+      calculatedDigests.put(digestAlgorithm, Base64.decodeBase64(document.getDigest(digestAlgorithm)));
+    } else if (!algorithmsToRead.isEmpty()) {
+      InputStream stream = document.openStream();
+      try {
+        calculatedDigests.putAll(DigestCalculator.digest(stream, algorithmsToRead));
+      } catch (IOException e) {
+        logger.error("Failed to calculate digests: " + e.getMessage());
+        throw new TechnicalException("Failed to calculate digests", e);
+      } finally {
+        IOUtils.closeQuietly(stream);
+      }
+    }
+    return calculatedDigests;
   }
 
   /**
@@ -189,9 +291,9 @@ public class DataFile implements Serializable {
   public long getFileSize() {
     logger.debug("");
     long fileSize;
-    if (document instanceof StreamDocument || document instanceof FileDocument) {
+    if (document instanceof StreamableDocument) {
       try {
-        fileSize = Files.size(Paths.get(document.getAbsolutePath()));
+        fileSize = ((StreamableDocument) document).getSize();
         logger.debug("Document size: " + fileSize);
         return fileSize;
       } catch (IOException e) {
@@ -224,7 +326,16 @@ public class DataFile implements Serializable {
    */
   public void saveAs(OutputStream out) throws IOException {
     logger.debug("");
-    out.write(document.getBytes());
+    if (document instanceof StreamableDocument) {
+      ((StreamableDocument) document).writeTo(out);
+      return;
+    }
+    InputStream stream = document.openStream();
+    try {
+      FileTransfer.copy(stream, out);
+    } finally {
+      IOUtils.closeQuietly(stream);
+    }
   }
 
   /**
@@ -272,4 +383,37 @@ public class DataFile implements Serializable {
     logger.debug("");
     this.id = dataFileId;
   }
+
+  /**
+   * Adds a reference to the temporary file of a streamed data file. The temporary file is kept until the data file
+   * is closed and every added reference is released. Has no effect on data files without a temporary file.
+   */
+  public void retain() {
+    logger.debug("");
+    if (document instanceof StreamDocument) {
+      ((StreamDocument) document).retain();
+    }
+  }
+
+  /**
+   * Releases a reference added by {@link #retain()}.
+   */
+  public void release() {
+    logger.debug("");
+    if (document instanceof StreamDocument) {
+      ((StreamDocument) document).release();
+    }
+  }
+
+  /**
+   * Releases the temporary file of a streamed data file. The file is deleted when no container holding
+   * the data file uses it any more. Closing the data file more than once has no effect.
+   */
+  @Override
+  public void close() {
+    logger.debug("");
+    if (document instanceof StreamDocument) {
+      ((StreamDocument) document).close();
+    }
+  }
 }
@@ -11,6 +11,10 @@
 package org.digidoc4j;
 
 import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.digidoc4j.impl.SignatureFinalizer;
 import org.slf4j.Logger;
@@ -27,7 +31,8 @@ import org.slf4j.LoggerFactory;
  * <p>
  *   After a signature has been created externally, then it must be included back by calling
  *   {@link DataToSign#finalize(byte[])} with the signature value. This will return a {@link Signature} object
- *   with the signature value, OCSP response etc included.
+ *   with the signature value, OCSP response etc included. {@link DataToSign#finalizeAsync(byte[], Executor)}
+ *   does the same on an executor without blocking the calling thread.
  * </p>
  */
 public class DataToSign implements Serializable {
@@ -78,4 +83,28 @@ public class DataToSign implements Serializable {
     logger.debug("Finalizing signature");
     return signatureFinalizer.finalizeSignature(signatureValue);
   }
+
+  /**
+   * Finalize the signature on the given executor. The calling thread is not blocked while the OCSP response and
+   * the timestamp are requested.
+   * <p>
+   * The container must not be changed or signed again until the returned future is done. Errors of finalizing
+   * the signature are thrown by {@link Future#get()} as the cause of {@link java.util.concurrent.ExecutionException}.
+   * </p>
+   *
+   * @param signatureValue externally created signature value bytes.
+   * @param executor executor finalizing the signature.
+   * @return future of the finalized signature.
+   */
+  public Future<Signature> finalizeAsync(final byte[] signatureValue, Executor executor) {
+    logger.debug("Finalizing signature asynchronously");
+    FutureTask<Signature> finalization = new FutureTask<>(new Callable<Signature>() {
+      @Override
+      public Signature call() {
+        return signatureFinalizer.finalizeSignature(signatureValue);
+      }
+    });
+    executor.execute(finalization);
+    return finalization;
+  }
 }
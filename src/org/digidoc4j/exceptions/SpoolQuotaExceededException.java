@@ -0,0 +1,21 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.exceptions;
+
+/**
+ * Writing a temporary file would exceed the size limit of the spool directory.
+ */
+public class SpoolQuotaExceededException extends DigiDoc4JException {
+
+  public SpoolQuotaExceededException(String message) {
+    super(message);
+  }
+}
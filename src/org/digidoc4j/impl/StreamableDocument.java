@@ -0,0 +1,37 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import eu.europa.esig.dss.DSSDocument;
+
+/**
+ * Document whose size is known without reading it and whose contents can be written to a stream without reading
+ * them into memory.
+ */
+public interface StreamableDocument extends DSSDocument {
+
+  /**
+   * @return size of the contents in bytes
+   * @throws IOException when the size cannot be read
+   */
+  long getSize() throws IOException;
+
+  /**
+   * Writes the contents to the output stream. The output stream is not closed.
+   *
+   * @param out stream to write to
+   * @throws IOException when writing fails
+   */
+  void writeTo(OutputStream out) throws IOException;
+}
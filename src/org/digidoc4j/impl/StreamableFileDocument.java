@@ -0,0 +1,43 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.digidoc4j.utils.FileTransfer;
+
+import eu.europa.esig.dss.FileDocument;
+
+/**
+ * @see FileDocument whose contents are copied from the file without reading them into memory.
+ */
+public class StreamableFileDocument extends FileDocument implements StreamableDocument {
+
+  /**
+   * @param path file name with path
+   */
+  public StreamableFileDocument(String path) {
+    super(path);
+  }
+
+  @Override
+  public long getSize() throws IOException {
+    return Files.size(new File(getAbsolutePath()).toPath());
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    FileTransfer.copy(new File(getAbsolutePath()), out);
+  }
+}
@@ -0,0 +1,1157 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.exceptions.TechnicalException;
+import org.digidoc4j.utils.FileTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.ec.markt.dss.signature.StreamDocument;
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.FileDocument;
+
+/**
+ * Index of the entries of an ASiC container, built from the ZIP central directory.
+ * <p/>
+ * Only the end of the archive and the central directory are read when the index is created.
+ * Entry contents are read from the container when they are requested.
+ */
+public class AsicContainerIndex implements Serializable {
+
+  private final static Logger logger = LoggerFactory.getLogger(AsicContainerIndex.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+  private static final int MAX_ZIP_COMMENT_LENGTH = 0xFFFF;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH = 20;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH = 56;
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+  private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+  private static final long ZIP64_MAGIC_VALUE = 0xFFFFFFFFL;
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+  private static final int ZIP_VERSION = 20;
+  private static final int ZIP64_VERSION = 45;
+  private static final int UTF_8_NAME_FLAG = 0x0800;
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ContainerSource source;
+  private final Map<String, Entry> entries;
+  private final long entryCount;
+  private final long centralDirectoryOffset;
+  private final long centralDirectorySize;
+  private final byte[] comment;
+
+  private AsicContainerIndex(ContainerSource source, Map<String, Entry> entries, long entryCount,
+                             long centralDirectoryOffset, long centralDirectorySize, byte[] comment) {
+    this.source = source;
+    this.entries = entries;
+    this.entryCount = entryCount;
+    this.centralDirectoryOffset = centralDirectoryOffset;
+    this.centralDirectorySize = centralDirectorySize;
+    this.comment = comment;
+  }
+
+  /**
+   * Creates the index of a container file.
+   *
+   * @param path container file path
+   * @return index of the container entries
+   */
+  public static AsicContainerIndex fromFile(String path) {
+    logger.debug("Creating container index for file " + path);
+    return create(new FileSource(path));
+  }
+
+  /**
+   * Creates the index of a container held in memory.
+   *
+   * @param container container bytes
+   * @return index of the container entries
+   */
+  public static AsicContainerIndex fromBytes(byte[] container) {
+    logger.debug("Creating container index for in memory container");
+    return create(new ByteArraySource(container));
+  }
+
+  /**
+   * Creates the index of a container document. File backed documents are read from the file system,
+   * other documents are read into memory.
+   *
+   * @param container container document
+   * @return index of the container entries
+   */
+  public static AsicContainerIndex fromDocument(DSSDocument container) {
+    if (container instanceof MappedContainerDocument) {
+      logger.debug("Creating container index for mapped file " + container.getAbsolutePath());
+      return create(new MappedSource(((MappedContainerDocument) container).getMappedFile()));
+    }
+    if (container instanceof FileDocument || container instanceof StreamDocument) {
+      return fromFile(container.getAbsolutePath());
+    }
+    return fromBytes(container.getBytes());
+  }
+
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+  }
+
+  public Entry getEntry(String name) {
+    return entries.get(name);
+  }
+
+  public boolean containsEntry(String name) {
+    return entries.containsKey(name);
+  }
+
+  /**
+   * Opens a stream of the uncompressed entry contents.
+   *
+   * @param entry entry of this index
+   * @return entry contents
+   */
+  public InputStream openEntryStream(Entry entry) {
+    logger.debug("Opening entry " + entry.getName());
+    try {
+      long dataOffset = findEntryDataOffset(entry);
+      InputStream stream = source.openStream(dataOffset, entry.getCompressedSize());
+      if (entry.getMethod() == ZipEntry.STORED) {
+        return stream;
+      }
+      if (entry.getMethod() == ZipEntry.DEFLATED) {
+        return new EntryInflaterInputStream(stream);
+      }
+      IOUtils.closeQuietly(stream);
+      throw new TechnicalException("Unsupported compression method " + entry.getMethod() + " for entry " + entry.getName(), null);
+    } catch (IOException e) {
+      logger.error("Error reading container entry " + entry.getName() + ": " + e.getMessage());
+      throw new TechnicalException("Error reading container entry " + entry.getName() + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads the uncompressed entry contents into memory.
+   *
+   * @param entry entry of this index
+   * @return entry contents
+   */
+  public byte[] readEntry(Entry entry) {
+    InputStream stream = openEntryStream(entry);
+    try {
+      return IOUtils.toByteArray(stream);
+    } catch (IOException e) {
+      logger.error("Error reading container entry " + entry.getName() + ": " + e.getMessage());
+      throw new TechnicalException("Error reading container entry " + entry.getName() + ": " + e.getMessage(), e);
+    } finally {
+      IOUtils.closeQuietly(stream);
+    }
+  }
+
+  /**
+   * Calculates the digest of the uncompressed entry contents. Stored entries are digested directly from the
+   * container source.
+   *
+   * @param entry           entry of this index
+   * @param digestAlgorithm digest algorithm
+   * @return digest value
+   */
+  public byte[] digestEntry(Entry entry, DigestAlgorithm digestAlgorithm) {
+    logger.debug("Digesting entry " + entry.getName() + " with " + digestAlgorithm);
+    MessageDigest messageDigest = DSSUtils.getMessageDigest(digestAlgorithm);
+    if (entry.getMethod() == ZipEntry.STORED) {
+      try {
+        source.digest(messageDigest, findEntryDataOffset(entry), entry.getCompressedSize());
+        return messageDigest.digest();
+      } catch (IOException e) {
+        logger.error("Error reading container entry " + entry.getName() + ": " + e.getMessage());
+        throw new TechnicalException("Error reading container entry " + entry.getName() + ": " + e.getMessage(), e);
+      }
+    }
+    InputStream stream = openEntryStream(entry);
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = stream.read(buffer)) > 0) {
+        messageDigest.update(buffer, 0, count);
+      }
+      return messageDigest.digest();
+    } catch (IOException e) {
+      logger.error("Error reading container entry " + entry.getName() + ": " + e.getMessage());
+      throw new TechnicalException("Error reading container entry " + entry.getName() + ": " + e.getMessage(), e);
+    } finally {
+      IOUtils.closeQuietly(stream);
+    }
+  }
+
+  /**
+   * Writes the uncompressed entry contents to the output stream. Stored entries are copied directly from the
+   * container source, deflated entries are inflated through a fixed size buffer. The output stream is not closed.
+   *
+   * @param entry entry of this index
+   * @param out   stream to write to
+   */
+  public void copyEntry(Entry entry, OutputStream out) {
+    logger.debug("Copying entry " + entry.getName());
+    try {
+      if (entry.getMethod() == ZipEntry.STORED) {
+        source.copy(findEntryDataOffset(entry), entry.getCompressedSize(), out);
+        return;
+      }
+      InputStream stream = openEntryStream(entry);
+      try {
+        FileTransfer.copy(stream, out);
+      } finally {
+        IOUtils.closeQuietly(stream);
+      }
+    } catch (IOException e) {
+      logger.error("Error copying container entry " + entry.getName() + ": " + e.getMessage());
+      throw new TechnicalException("Error copying container entry " + entry.getName() + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Compresses the contents of an entry to be appended to the container.
+   *
+   * @param name    entry name
+   * @param content uncompressed entry contents
+   * @return compressed entry
+   */
+  public static NewEntry deflateEntry(String name, byte[] content) {
+    logger.debug("Deflating new entry " + name);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater);
+      out.write(content);
+      out.finish();
+    } catch (IOException e) {
+      logger.error("Error compressing entry " + name + ": " + e.getMessage());
+      throw new TechnicalException("Error compressing entry " + name + ": " + e.getMessage(), e);
+    } finally {
+      deflater.end();
+    }
+    return new NewEntry(name, crc.getValue(), content.length, compressed.toByteArray());
+  }
+
+  /**
+   * Returns the length of the container written by {@link #writeWithAppendedEntry(NewEntry, OutputStream)}.
+   *
+   * @param newEntry entry to append
+   * @return container length in bytes
+   */
+  public long getLengthWithAppendedEntry(NewEntry newEntry) {
+    return getLengthWithChanges(Collections.<Entry>emptyList(), Collections.singletonList(newEntry));
+  }
+
+  /**
+   * Writes the container with a new entry appended after the existing entries. The existing entries and their
+   * central directory headers are copied byte for byte, only the new entry is written and the end of the central
+   * directory is rewritten. The output stream is not closed.
+   *
+   * @param newEntry entry to append
+   * @param out      stream to write to
+   */
+  public void writeWithAppendedEntry(NewEntry newEntry, OutputStream out) {
+    writeWithChanges(Collections.<Entry>emptyList(), Collections.singletonList(newEntry), out);
+  }
+
+  /**
+   * Returns the length of the container written by {@link #writeWithoutEntry(Entry, OutputStream)}.
+   *
+   * @param entry entry of this index to remove
+   * @return container length in bytes
+   */
+  public long getLengthWithoutEntry(Entry entry) {
+    return getLengthWithChanges(Collections.singletonList(entry), Collections.<NewEntry>emptyList());
+  }
+
+  /**
+   * Writes the container without the given entry. The other entries are copied byte for byte in one pass, their
+   * central directory headers are copied with the local header offsets moved over the removed entry.
+   * The output stream is not closed.
+   *
+   * @param entry entry of this index to remove
+   * @param out   stream to write to
+   */
+  public void writeWithoutEntry(Entry entry, OutputStream out) {
+    writeWithChanges(Collections.singletonList(entry), Collections.<NewEntry>emptyList(), out);
+  }
+
+  /**
+   * Returns the length of the container written by {@link #writeWithChanges(List, List, OutputStream)}.
+   *
+   * @param removedEntries entries of this index to remove
+   * @param newEntries     entries to append
+   * @return container length in bytes
+   */
+  public long getLengthWithChanges(List<Entry> removedEntries, List<NewEntry> newEntries) {
+    try {
+      return new ContainerChange(removedEntries, newEntries).getLength();
+    } catch (IOException e) {
+      logger.error("Error reading container: " + e.getMessage());
+      throw new TechnicalException("Error reading container: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Writes the container without the removed entries and with the new entries appended after the remaining entries.
+   * The remaining entries are copied byte for byte in one pass, their central directory headers are copied with the
+   * local header offsets moved over the removed entries. An entry is replaced by removing it and appending a new
+   * entry with the same name. The output stream is not closed.
+   *
+   * @param removedEntries entries of this index to remove
+   * @param newEntries     entries to append
+   * @param out            stream to write to
+   */
+  public void writeWithChanges(List<Entry> removedEntries, List<NewEntry> newEntries, OutputStream out) {
+    logger.debug("Writing container without " + removedEntries.size() + " entries and with " + newEntries.size() +
+        " new entries");
+    try {
+      new ContainerChange(removedEntries, newEntries).writeTo(out);
+      out.flush();
+    } catch (IOException e) {
+      logger.error("Error writing changed container: " + e.getMessage());
+      throw new TechnicalException("Error writing changed container: " + e.getMessage(), e);
+    }
+  }
+
+  private byte[] readCentralDirectoryBytes() throws IOException {
+    byte[] centralDirectory = new byte[(int) centralDirectorySize];
+    source.read(centralDirectoryOffset, centralDirectory, 0, centralDirectory.length);
+    return centralDirectory;
+  }
+
+  private long getEndOfCentralDirectoryLength(long count, long size, long offset) {
+    long length = END_OF_CENTRAL_DIRECTORY_LENGTH + comment.length;
+    if (isZip64(count, size, offset)) {
+      length += ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH + ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH;
+    }
+    return length;
+  }
+
+  private void writeEndOfCentralDirectory(long count, long size, long offset, OutputStream out) throws IOException {
+    if (isZip64(count, size, offset)) {
+      out.write(createZip64EndOfCentralDirectory(count, size, offset));
+      out.write(createZip64EndOfCentralDirectoryLocator(offset + size));
+      out.write(createEndOfCentralDirectory(ZIP64_MAGIC_COUNT, ZIP64_MAGIC_VALUE, ZIP64_MAGIC_VALUE));
+    } else {
+      out.write(createEndOfCentralDirectory(count, size, offset));
+    }
+  }
+
+  private static boolean isZip64(long count, long size, long offset) {
+    return count >= ZIP64_MAGIC_COUNT || size >= ZIP64_MAGIC_VALUE || isZip64Offset(offset);
+  }
+
+  private static boolean isZip64Offset(long offset) {
+    return offset >= ZIP64_MAGIC_VALUE;
+  }
+
+  private byte[] createEndOfCentralDirectory(long count, long size, long offset) {
+    byte[] record = new byte[END_OF_CENTRAL_DIRECTORY_LENGTH + comment.length];
+    putInt(record, 0, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+    putShort(record, 8, (int) count);
+    putShort(record, 10, (int) count);
+    putInt(record, 12, (int) size);
+    putInt(record, 16, (int) offset);
+    putShort(record, 20, comment.length);
+    System.arraycopy(comment, 0, record, END_OF_CENTRAL_DIRECTORY_LENGTH, comment.length);
+    return record;
+  }
+
+  private static byte[] createZip64EndOfCentralDirectory(long count, long size, long offset) {
+    byte[] record = new byte[ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH];
+    putInt(record, 0, ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+    putLong(record, 4, ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH - 12);
+    putShort(record, 12, ZIP64_VERSION);
+    putShort(record, 14, ZIP64_VERSION);
+    putLong(record, 24, count);
+    putLong(record, 32, count);
+    putLong(record, 40, size);
+    putLong(record, 48, offset);
+    return record;
+  }
+
+  private static byte[] createZip64EndOfCentralDirectoryLocator(long zip64EndOffset) {
+    byte[] record = new byte[ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH];
+    putInt(record, 0, ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+    putLong(record, 8, zip64EndOffset);
+    putInt(record, 16, 1);
+    return record;
+  }
+
+  private long findEntryDataOffset(Entry entry) throws IOException {
+    byte[] header = new byte[LOCAL_FILE_HEADER_LENGTH];
+    source.read(entry.getLocalHeaderOffset(), header, 0, header.length);
+    if (getInt(header, 0) != LOCAL_FILE_HEADER_SIGNATURE) {
+      throw new IOException("Invalid local file header for entry " + entry.getName());
+    }
+    int nameLength = getShort(header, 26);
+    int extraLength = getShort(header, 28);
+    return entry.getLocalHeaderOffset() + LOCAL_FILE_HEADER_LENGTH + nameLength + extraLength;
+  }
+
+  private static AsicContainerIndex create(ContainerSource source) {
+    try {
+      AsicContainerIndex containerIndex = readCentralDirectory(source);
+      logger.debug("Container index has " + containerIndex.entries.size() + " entries");
+      return containerIndex;
+    } catch (IOException e) {
+      logger.error("Error reading container: " + e.getMessage());
+      throw new TechnicalException("Error reading container: " + e.getMessage(), e);
+    }
+  }
+
+  private static AsicContainerIndex readCentralDirectory(ContainerSource source) throws IOException {
+    long length = source.length();
+    int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_ZIP_COMMENT_LENGTH);
+    byte[] tail = new byte[tailLength];
+    source.read(length - tailLength, tail, 0, tailLength);
+    int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+    if (endOfCentralDirectory < 0) {
+      throw new IOException("Not a zip file, end of central directory is missing");
+    }
+
+    long entryCount = getShort(tail, endOfCentralDirectory + 10);
+    long centralDirectorySize = getUnsignedInt(tail, endOfCentralDirectory + 12);
+    long centralDirectoryOffset = getUnsignedInt(tail, endOfCentralDirectory + 16);
+    int commentLength = Math.min(getShort(tail, endOfCentralDirectory + 20), tail.length - endOfCentralDirectory - END_OF_CENTRAL_DIRECTORY_LENGTH);
+    byte[] comment = new byte[commentLength];
+    System.arraycopy(tail, endOfCentralDirectory + END_OF_CENTRAL_DIRECTORY_LENGTH, comment, 0, commentLength);
+
+    if (entryCount == ZIP64_MAGIC_COUNT || centralDirectorySize == ZIP64_MAGIC_VALUE || centralDirectoryOffset == ZIP64_MAGIC_VALUE) {
+      long locatorOffset = length - tailLength + endOfCentralDirectory - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH;
+      byte[] locator = new byte[ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH];
+      source.read(locatorOffset, locator, 0, locator.length);
+      if (getInt(locator, 0) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+        byte[] zip64End = new byte[ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH];
+        source.read(getLong(locator, 8), zip64End, 0, zip64End.length);
+        if (getInt(zip64End, 0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          throw new IOException("Invalid zip64 end of central directory");
+        }
+        entryCount = getLong(zip64End, 32);
+        centralDirectorySize = getLong(zip64End, 40);
+        centralDirectoryOffset = getLong(zip64End, 48);
+      }
+    }
+
+    if (centralDirectorySize > Integer.MAX_VALUE || centralDirectoryOffset + centralDirectorySize > length) {
+      throw new IOException("Invalid central directory size " + centralDirectorySize);
+    }
+    byte[] centralDirectory = new byte[(int) centralDirectorySize];
+    source.read(centralDirectoryOffset, centralDirectory, 0, centralDirectory.length);
+    Map<String, Entry> entries = parseCentralDirectory(centralDirectory, entryCount);
+    return new AsicContainerIndex(source, entries, entryCount, centralDirectoryOffset, centralDirectorySize, comment);
+  }
+
+  private static int findEndOfCentralDirectory(byte[] tail) {
+    for (int i = tail.length - END_OF_CENTRAL_DIRECTORY_LENGTH; i >= 0; i--) {
+      if (getInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static Map<String, Entry> parseCentralDirectory(byte[] centralDirectory, long entryCount) throws IOException {
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    for (CentralDirectoryRecord record : parseCentralDirectoryRecords(centralDirectory, entryCount)) {
+      entries.put(record.entry.getName(), record.entry);
+    }
+    return entries;
+  }
+
+  private static List<CentralDirectoryRecord> parseCentralDirectoryRecords(byte[] centralDirectory, long entryCount) throws IOException {
+    List<CentralDirectoryRecord> records = new ArrayList<>();
+    int position = 0;
+    for (long i = 0; i < entryCount; i++) {
+      if (position + CENTRAL_DIRECTORY_HEADER_LENGTH > centralDirectory.length ||
+          getInt(centralDirectory, position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+        throw new IOException("Invalid central directory header");
+      }
+      int method = getShort(centralDirectory, position + 10);
+      long crc = getUnsignedInt(centralDirectory, position + 16);
+      long compressedSize = getUnsignedInt(centralDirectory, position + 20);
+      long size = getUnsignedInt(centralDirectory, position + 24);
+      int nameLength = getShort(centralDirectory, position + 28);
+      int extraLength = getShort(centralDirectory, position + 30);
+      int commentLength = getShort(centralDirectory, position + 32);
+      long localHeaderOffset = getUnsignedInt(centralDirectory, position + 42);
+      int localHeaderOffsetPosition = position + 42;
+      boolean zip64LocalHeaderOffset = false;
+      int namePosition = position + CENTRAL_DIRECTORY_HEADER_LENGTH;
+      if (namePosition + nameLength + extraLength > centralDirectory.length) {
+        throw new IOException("Invalid central directory header");
+      }
+      String name = new String(centralDirectory, namePosition, nameLength, UTF_8);
+
+      int extraPosition = namePosition + nameLength;
+      int extraEnd = extraPosition + extraLength;
+      while (extraPosition + 4 <= extraEnd) {
+        int headerId = getShort(centralDirectory, extraPosition);
+        int dataSize = getShort(centralDirectory, extraPosition + 2);
+        int dataPosition = extraPosition + 4;
+        if (headerId == ZIP64_EXTRA_FIELD_ID) {
+          if (size == ZIP64_MAGIC_VALUE && dataPosition + 8 <= extraEnd) {
+            size = getLong(centralDirectory, dataPosition);
+            dataPosition += 8;
+          }
+          if (compressedSize == ZIP64_MAGIC_VALUE && dataPosition + 8 <= extraEnd) {
+            compressedSize = getLong(centralDirectory, dataPosition);
+            dataPosition += 8;
+          }
+          if (localHeaderOffset == ZIP64_MAGIC_VALUE && dataPosition + 8 <= extraEnd) {
+            localHeaderOffset = getLong(centralDirectory, dataPosition);
+            localHeaderOffsetPosition = dataPosition;
+            zip64LocalHeaderOffset = true;
+          }
+        }
+        extraPosition += 4 + dataSize;
+      }
+
+      Entry entry = new Entry(name, method, crc, compressedSize, size, localHeaderOffset);
+      int recordLength = extraEnd + commentLength - position;
+      records.add(new CentralDirectoryRecord(entry, position, recordLength, localHeaderOffsetPosition, zip64LocalHeaderOffset));
+      position = extraEnd + commentLength;
+    }
+    return records;
+  }
+
+  private static int getShort(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8);
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return getShort(bytes, offset) | (getShort(bytes, offset + 2) << 16);
+  }
+
+  private static long getUnsignedInt(byte[] bytes, int offset) {
+    return getInt(bytes, offset) & 0xFFFFFFFFL;
+  }
+
+  private static long getLong(byte[] bytes, int offset) {
+    return getUnsignedInt(bytes, offset) | (getUnsignedInt(bytes, offset + 4) << 32);
+  }
+
+  private static void putShort(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) value;
+    bytes[offset + 1] = (byte) (value >>> 8);
+  }
+
+  private static void putInt(byte[] bytes, int offset, int value) {
+    putShort(bytes, offset, value);
+    putShort(bytes, offset + 2, value >>> 16);
+  }
+
+  private static void putLong(byte[] bytes, int offset, long value) {
+    putInt(bytes, offset, (int) value);
+    putInt(bytes, offset + 4, (int) (value >>> 32));
+  }
+
+  private static int toDosTime(Calendar time) {
+    return (time.get(Calendar.HOUR_OF_DAY) << 11) | (time.get(Calendar.MINUTE) << 5) | (time.get(Calendar.SECOND) >> 1);
+  }
+
+  private static int toDosDate(Calendar time) {
+    return ((time.get(Calendar.YEAR) - 1980) << 9) | ((time.get(Calendar.MONTH) + 1) << 5) | time.get(Calendar.DAY_OF_MONTH);
+  }
+
+  /**
+   * Central directory header of an entry and the position of its local header offset in the central directory.
+   */
+  private static class CentralDirectoryRecord {
+    private final Entry entry;
+    private final int position;
+    private final int length;
+    private final int localHeaderOffsetPosition;
+    private final boolean zip64LocalHeaderOffset;
+
+    CentralDirectoryRecord(Entry entry, int position, int length, int localHeaderOffsetPosition,
+                           boolean zip64LocalHeaderOffset) {
+      this.entry = entry;
+      this.position = position;
+      this.length = length;
+      this.localHeaderOffsetPosition = localHeaderOffsetPosition;
+      this.zip64LocalHeaderOffset = zip64LocalHeaderOffset;
+    }
+
+    void setLocalHeaderOffset(byte[] centralDirectory, long localHeaderOffset) {
+      if (zip64LocalHeaderOffset) {
+        putLong(centralDirectory, localHeaderOffsetPosition, localHeaderOffset);
+      } else {
+        putInt(centralDirectory, localHeaderOffsetPosition, (int) localHeaderOffset);
+      }
+    }
+  }
+
+  /**
+   * Entry to be removed and the region of its local header, data and data descriptor in the container.
+   */
+  private static class RemovedEntry {
+    private final CentralDirectoryRecord record;
+    private final long localRecordStart;
+    private final long localRecordEnd;
+
+    RemovedEntry(CentralDirectoryRecord record, long localRecordStart, long localRecordEnd) {
+      this.record = record;
+      this.localRecordStart = localRecordStart;
+      this.localRecordEnd = localRecordEnd;
+    }
+
+    long getLocalRecordLength() {
+      return localRecordEnd - localRecordStart;
+    }
+  }
+
+  /**
+   * Layout of the container after removing and appending entries.
+   */
+  private class ContainerChange {
+    private final byte[] centralDirectory;
+    private final List<CentralDirectoryRecord> records;
+    private final List<RemovedEntry> removedEntries = new ArrayList<>();
+    private final List<NewEntry> newEntries;
+    private final long[] newEntryOffsets;
+    private long newCentralDirectoryOffset;
+    private long newCentralDirectorySize;
+
+    ContainerChange(List<Entry> removed, List<NewEntry> newEntries) throws IOException {
+      this.centralDirectory = readCentralDirectoryBytes();
+      this.records = parseCentralDirectoryRecords(centralDirectory, entryCount);
+      this.newEntries = newEntries;
+      this.newEntryOffsets = new long[newEntries.size()];
+      Set<String> removedNames = new HashSet<>();
+      for (Entry entry : removed) {
+        removedEntries.add(findRemovedEntry(entry));
+        removedNames.add(entry.getName());
+      }
+      Collections.sort(removedEntries, new Comparator<RemovedEntry>() {
+        @Override
+        public int compare(RemovedEntry first, RemovedEntry second) {
+          return Long.compare(first.localRecordStart, second.localRecordStart);
+        }
+      });
+      Set<String> newNames = new HashSet<>();
+      for (NewEntry newEntry : newEntries) {
+        boolean existingEntry = entries.containsKey(newEntry.getName()) && !removedNames.contains(newEntry.getName());
+        if (existingEntry || !newNames.add(newEntry.getName())) {
+          throw new TechnicalException("Container already contains entry " + newEntry.getName(), null);
+        }
+      }
+      calculateLayout();
+    }
+
+    private RemovedEntry findRemovedEntry(Entry entry) throws IOException {
+      CentralDirectoryRecord removedRecord = null;
+      for (CentralDirectoryRecord record : records) {
+        if (record.entry.getName().equals(entry.getName()) &&
+            record.entry.getLocalHeaderOffset() == entry.getLocalHeaderOffset()) {
+          removedRecord = record;
+        }
+      }
+      if (removedRecord == null) {
+        throw new IOException("Container does not contain entry " + entry.getName());
+      }
+      long localRecordStart = removedRecord.entry.getLocalHeaderOffset();
+      long localRecordEnd = centralDirectoryOffset;
+      for (CentralDirectoryRecord record : records) {
+        long localHeaderOffset = record.entry.getLocalHeaderOffset();
+        if (localHeaderOffset > localRecordStart && localHeaderOffset < localRecordEnd) {
+          localRecordEnd = localHeaderOffset;
+        }
+      }
+      return new RemovedEntry(removedRecord, localRecordStart, localRecordEnd);
+    }
+
+    private void calculateLayout() {
+      long offset = centralDirectoryOffset - getRemovedLength(Long.MAX_VALUE);
+      newCentralDirectorySize = centralDirectorySize;
+      for (RemovedEntry removedEntry : removedEntries) {
+        newCentralDirectorySize -= removedEntry.record.length;
+      }
+      for (int i = 0; i < newEntries.size(); i++) {
+        NewEntry newEntry = newEntries.get(i);
+        newEntryOffsets[i] = offset;
+        offset += newEntry.getLocalHeaderLength() + newEntry.getCompressedSize();
+        newCentralDirectorySize += newEntry.getCentralDirectoryHeaderLength(isZip64Offset(newEntryOffsets[i]));
+      }
+      newCentralDirectoryOffset = offset;
+    }
+
+    /**
+     * @return length of the removed entries located before the offset
+     */
+    private long getRemovedLength(long offset) {
+      long removedLength = 0;
+      for (RemovedEntry removedEntry : removedEntries) {
+        if (removedEntry.localRecordStart < offset) {
+          removedLength += removedEntry.getLocalRecordLength();
+        }
+      }
+      return removedLength;
+    }
+
+    private long getNewEntryCount() {
+      return entryCount - removedEntries.size() + newEntries.size();
+    }
+
+    long getLength() {
+      return newCentralDirectoryOffset + newCentralDirectorySize +
+          getEndOfCentralDirectoryLength(getNewEntryCount(), newCentralDirectorySize, newCentralDirectoryOffset);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+      long position = 0;
+      for (RemovedEntry removedEntry : removedEntries) {
+        source.copy(position, removedEntry.localRecordStart - position, out);
+        position = removedEntry.localRecordEnd;
+      }
+      source.copy(position, centralDirectoryOffset - position, out);
+      for (NewEntry newEntry : newEntries) {
+        out.write(newEntry.createLocalHeader());
+        out.write(newEntry.compressedContent);
+      }
+
+      for (CentralDirectoryRecord record : records) {
+        if (isRemoved(record)) {
+          continue;
+        }
+        long localHeaderOffset = record.entry.getLocalHeaderOffset();
+        long removedLength = getRemovedLength(localHeaderOffset);
+        if (removedLength > 0) {
+          record.setLocalHeaderOffset(centralDirectory, localHeaderOffset - removedLength);
+        }
+        out.write(centralDirectory, record.position, record.length);
+      }
+      for (int i = 0; i < newEntries.size(); i++) {
+        out.write(newEntries.get(i).createCentralDirectoryHeader(newEntryOffsets[i], isZip64Offset(newEntryOffsets[i])));
+      }
+      writeEndOfCentralDirectory(getNewEntryCount(), newCentralDirectorySize, newCentralDirectoryOffset, out);
+    }
+
+    private boolean isRemoved(CentralDirectoryRecord record) {
+      for (RemovedEntry removedEntry : removedEntries) {
+        if (removedEntry.record == record) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Deflated entry to be appended to a container.
+   *
+   * @see #deflateEntry(String, byte[])
+   */
+  public static class NewEntry {
+    private final String name;
+    private final byte[] nameBytes;
+    private final long crc;
+    private final long size;
+    private final byte[] compressedContent;
+    private final Calendar modificationTime = Calendar.getInstance();
+
+    NewEntry(String name, long crc, long size, byte[] compressedContent) {
+      this.name = name;
+      this.nameBytes = name.getBytes(UTF_8);
+      this.crc = crc;
+      this.size = size;
+      this.compressedContent = compressedContent;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getCompressedSize() {
+      return compressedContent.length;
+    }
+
+    int getLocalHeaderLength() {
+      return LOCAL_FILE_HEADER_LENGTH + nameBytes.length;
+    }
+
+    int getCentralDirectoryHeaderLength(boolean zip64Offset) {
+      return CENTRAL_DIRECTORY_HEADER_LENGTH + nameBytes.length + (zip64Offset ? 12 : 0);
+    }
+
+    byte[] createLocalHeader() {
+      byte[] header = new byte[getLocalHeaderLength()];
+      putInt(header, 0, LOCAL_FILE_HEADER_SIGNATURE);
+      putShort(header, 4, ZIP_VERSION);
+      putShort(header, 6, UTF_8_NAME_FLAG);
+      putShort(header, 8, ZipEntry.DEFLATED);
+      putShort(header, 10, toDosTime(modificationTime));
+      putShort(header, 12, toDosDate(modificationTime));
+      putInt(header, 14, (int) crc);
+      putInt(header, 18, compressedContent.length);
+      putInt(header, 22, (int) size);
+      putShort(header, 26, nameBytes.length);
+      System.arraycopy(nameBytes, 0, header, LOCAL_FILE_HEADER_LENGTH, nameBytes.length);
+      return header;
+    }
+
+    byte[] createCentralDirectoryHeader(long localHeaderOffset, boolean zip64Offset) {
+      byte[] header = new byte[getCentralDirectoryHeaderLength(zip64Offset)];
+      int version = zip64Offset ? ZIP64_VERSION : ZIP_VERSION;
+      putInt(header, 0, CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+      putShort(header, 4, version);
+      putShort(header, 6, version);
+      putShort(header, 8, UTF_8_NAME_FLAG);
+      putShort(header, 10, ZipEntry.DEFLATED);
+      putShort(header, 12, toDosTime(modificationTime));
+      putShort(header, 14, toDosDate(modificationTime));
+      putInt(header, 16, (int) crc);
+      putInt(header, 20, compressedContent.length);
+      putInt(header, 24, (int) size);
+      putShort(header, 28, nameBytes.length);
+      putInt(header, 42, (int) (zip64Offset ? ZIP64_MAGIC_VALUE : localHeaderOffset));
+      System.arraycopy(nameBytes, 0, header, CENTRAL_DIRECTORY_HEADER_LENGTH, nameBytes.length);
+      if (zip64Offset) {
+        int extraPosition = CENTRAL_DIRECTORY_HEADER_LENGTH + nameBytes.length;
+        putShort(header, 30, 12);
+        putShort(header, extraPosition, ZIP64_EXTRA_FIELD_ID);
+        putShort(header, extraPosition + 2, 8);
+        putLong(header, extraPosition + 4, localHeaderOffset);
+      }
+      return header;
+    }
+  }
+
+  /**
+   * Entry of the container central directory.
+   */
+  public static class Entry implements Serializable {
+    private final String name;
+    private final int method;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long localHeaderOffset;
+
+    Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+      this.name = name;
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getMethod() {
+      return method;
+    }
+
+    public long getCrc() {
+      return crc;
+    }
+
+    public long getCompressedSize() {
+      return compressedSize;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLocalHeaderOffset() {
+      return localHeaderOffset;
+    }
+
+    public boolean isDirectory() {
+      return name.endsWith("/");
+    }
+  }
+
+  private interface ContainerSource extends Serializable {
+    long length() throws IOException;
+
+    void read(long position, byte[] buffer, int offset, int length) throws IOException;
+
+    InputStream openStream(long position, long length) throws IOException;
+
+    void digest(MessageDigest messageDigest, long position, long length) throws IOException;
+
+    void copy(long position, long length, OutputStream out) throws IOException;
+  }
+
+  private static class FileSource implements ContainerSource {
+    private final String path;
+    private final long fileLength;
+    private final long lastModified;
+
+    FileSource(String path) {
+      File file = new File(path);
+      this.path = path;
+      this.fileLength = file.length();
+      this.lastModified = file.lastModified();
+    }
+
+    @Override
+    public long length() throws IOException {
+      checkFileIsUnchanged();
+      return fileLength;
+    }
+
+    @Override
+    public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+      checkFileIsUnchanged();
+      RandomAccessFile file = new RandomAccessFile(path, "r");
+      try {
+        file.seek(position);
+        file.readFully(buffer, offset, length);
+      } finally {
+        file.close();
+      }
+    }
+
+    @Override
+    public InputStream openStream(long position, long length) throws IOException {
+      checkFileIsUnchanged();
+      RandomAccessFile file = new RandomAccessFile(path, "r");
+      file.seek(position);
+      return new FileRegionInputStream(file, length);
+    }
+
+    @Override
+    public void digest(MessageDigest messageDigest, long position, long length) throws IOException {
+      InputStream stream = openStream(position, length);
+      try {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = stream.read(buffer)) > 0) {
+          messageDigest.update(buffer, 0, count);
+        }
+      } finally {
+        stream.close();
+      }
+    }
+
+    @Override
+    public void copy(long position, long length, OutputStream out) throws IOException {
+      checkFileIsUnchanged();
+      FileTransfer.copy(new File(path), position, length, out);
+    }
+
+    private void checkFileIsUnchanged() throws IOException {
+      MappedFile.checkFileIsUnchanged(path, fileLength, lastModified);
+    }
+  }
+
+  private static class ByteArraySource implements ContainerSource {
+    private final byte[] bytes;
+
+    ByteArraySource(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public long length() {
+      return bytes.length;
+    }
+
+    @Override
+    public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+      if (position < 0 || position + length > bytes.length) {
+        throw new EOFException();
+      }
+      System.arraycopy(bytes, (int) position, buffer, offset, length);
+    }
+
+    @Override
+    public InputStream openStream(long position, long length) throws IOException {
+      if (position < 0 || position + length > bytes.length) {
+        throw new EOFException();
+      }
+      return new ByteArrayInputStream(bytes, (int) position, (int) length);
+    }
+
+    @Override
+    public void digest(MessageDigest messageDigest, long position, long length) throws IOException {
+      if (position < 0 || position + length > bytes.length) {
+        throw new EOFException();
+      }
+      messageDigest.update(bytes, (int) position, (int) length);
+    }
+
+    @Override
+    public void copy(long position, long length, OutputStream out) throws IOException {
+      if (position < 0 || position + length > bytes.length) {
+        throw new EOFException();
+      }
+      out.write(bytes, (int) position, (int) length);
+    }
+  }
+
+  private static class MappedSource implements ContainerSource {
+    private final MappedFile mappedFile;
+
+    MappedSource(MappedFile mappedFile) {
+      this.mappedFile = mappedFile;
+    }
+
+    @Override
+    public long length() {
+      return mappedFile.length();
+    }
+
+    @Override
+    public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+      mappedFile.read(position, buffer, offset, length);
+    }
+
+    @Override
+    public InputStream openStream(long position, long length) throws IOException {
+      return mappedFile.openStream(position, length);
+    }
+
+    @Override
+    public void digest(MessageDigest messageDigest, long position, long length) throws IOException {
+      mappedFile.digest(messageDigest, position, length);
+    }
+
+    @Override
+    public void copy(long position, long length, OutputStream out) throws IOException {
+      mappedFile.write(position, length, out);
+    }
+  }
+
+  private static class FileRegionInputStream extends InputStream {
+    private final RandomAccessFile file;
+    private long remaining;
+
+    FileRegionInputStream(RandomAccessFile file, long length) {
+      this.file = file;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int result = file.read();
+      if (result >= 0) {
+        remaining--;
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int result = file.read(buffer, offset, (int) Math.min(length, remaining));
+      if (result > 0) {
+        remaining -= result;
+      }
+      return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = Math.min(n, remaining);
+      file.seek(file.getFilePointer() + skipped);
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+    private boolean eofAdded;
+    private boolean closed;
+
+    EntryInflaterInputStream(InputStream stream) {
+      super(stream, new Inflater(true), BUFFER_SIZE);
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eofAdded) {
+        throw new EOFException("Unexpected end of zip entry");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        // Inflater in nowrap mode may need an extra dummy byte to finish
+        buf[0] = 0;
+        len = 1;
+        eofAdded = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        inf.end();
+        super.close();
+      }
+    }
+  }
+}
@@ -10,12 +10,10 @@
 
 package org.digidoc4j.impl.bdoc;
 
-import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
+import org.digidoc4j.exceptions.TechnicalException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,34 +26,43 @@ public class AsicContainerParser {
   private static final String SIGNATURES_FILE_REGEX = "META-INF/(.*)signatures(\\d+).xml";
   private static final Pattern SIGNATURE_FILE_ENDING_PATTERN = Pattern.compile("(\\d+).xml");
   private DSSDocument asicContainer;
+  private AsicContainerIndex containerIndex;
 
   public AsicContainerParser(DSSDocument asicContainer) {
     this.asicContainer = asicContainer;
   }
 
+  public AsicContainerParser(AsicContainerIndex containerIndex) {
+    this.containerIndex = containerIndex;
+  }
+
   public Integer findCurrentSignatureFileIndex() throws InvalidAsicContainerException {
     logger.debug("Finding the current signature file index of the container");
-    try {
-      Integer currentSignatureFileIndex = null;
-      ZipInputStream docStream = new ZipInputStream(asicContainer.openStream());
-      ZipEntry entry = docStream.getNextEntry();
-      while (entry != null) {
-        String entryName = entry.getName();
-        if(isSignaturesFile(entryName)) {
-          logger.debug("Signatures file name: " + entryName);
-          int fileIndex = extractSignaturesFileIndex(entryName);
-          if(currentSignatureFileIndex == null || currentSignatureFileIndex <= fileIndex) {
-            currentSignatureFileIndex = fileIndex;
-          }
+    Integer currentSignatureFileIndex = null;
+    for (AsicContainerIndex.Entry entry : getContainerIndex().getEntries()) {
+      String entryName = entry.getName();
+      if(isSignaturesFile(entryName)) {
+        logger.debug("Signatures file name: " + entryName);
+        int fileIndex = extractSignaturesFileIndex(entryName);
+        if(currentSignatureFileIndex == null || currentSignatureFileIndex <= fileIndex) {
+          currentSignatureFileIndex = fileIndex;
         }
-        entry = docStream.getNextEntry();
       }
-      logger.debug("The current signature file index is " + currentSignatureFileIndex);
-      return currentSignatureFileIndex;
-    } catch (IOException e) {
-      logger.error("Invalid asic container: " + e.getMessage());
-      throw new InvalidAsicContainerException(e);
     }
+    logger.debug("The current signature file index is " + currentSignatureFileIndex);
+    return currentSignatureFileIndex;
+  }
+
+  private AsicContainerIndex getContainerIndex() throws InvalidAsicContainerException {
+    if (containerIndex == null) {
+      try {
+        containerIndex = AsicContainerIndex.fromDocument(asicContainer);
+      } catch (TechnicalException e) {
+        logger.error("Invalid asic container: " + e.getMessage());
+        throw new InvalidAsicContainerException(e);
+      }
+    }
+    return containerIndex;
   }
 
   private boolean isSignaturesFile(String entryName) {
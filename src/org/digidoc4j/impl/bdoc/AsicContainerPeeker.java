@@ -0,0 +1,276 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.ContainerSummary;
+import org.digidoc4j.ContainerSummary.DataFileSummary;
+import org.digidoc4j.ContainerSummary.SignatureSummary;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.X509Cert;
+import org.digidoc4j.exceptions.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.MimeType;
+import eu.europa.esig.dss.asic.validation.ASiCContainerValidator;
+import eu.europa.esig.dss.x509.CertificateToken;
+
+/**
+ * Reads the metadata of an ASiC container from the container index with a streaming scan of
+ * META-INF/manifest.xml and META-INF/*signatures*.xml. Signatures are not validated and no TSL is loaded.
+ */
+public class AsicContainerPeeker {
+
+  private static final Logger logger = LoggerFactory.getLogger(AsicContainerPeeker.class);
+  private static final String MANIFEST_FILE_NAME = "META-INF/manifest.xml";
+  private static final String MANIFEST_NAMESPACE = "urn:oasis:names:tc:opendocument:xmlns:manifest:1.0";
+  private static final String XML_DSIG_NAMESPACE = "http://www.w3.org/2000/09/xmldsig#";
+  private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+  private final AsicContainerIndex containerIndex;
+
+  public AsicContainerPeeker(AsicContainerIndex containerIndex) {
+    this.containerIndex = containerIndex;
+  }
+
+  public ContainerSummary peek() {
+    logger.debug("Reading container summary");
+    Map<String, String> manifestMediaTypes = readManifestMediaTypes();
+    List<DataFileSummary> dataFiles = new ArrayList<>();
+    List<SignatureSummary> signatures = new ArrayList<>();
+    for (AsicContainerIndex.Entry entry : containerIndex.getEntries()) {
+      String entryName = entry.getName();
+      if (AsicFacade.isDataFileEntry(entry)) {
+        String mediaType = manifestMediaTypes.get(entryName);
+        if (mediaType == null) {
+          mediaType = MimeType.fromFileName(entryName).getMimeTypeString();
+        }
+        dataFiles.add(new DataFileSummary(entryName, entry.getSize(), mediaType));
+      } else if (ASiCContainerValidator.isXAdES(entryName)) {
+        signatures.addAll(readSignatures(entry));
+      }
+    }
+    logger.debug("Container has " + dataFiles.size() + " data files and " + signatures.size() + " signatures");
+    return new ContainerSummary("BDOC", dataFiles, signatures);
+  }
+
+  /**
+   * Reads the ids of the signatures in each signature file of the container.
+   *
+   * @return signature ids by signature file name
+   */
+  public Map<String, List<String>> readSignatureIds() {
+    logger.debug("Reading signature ids");
+    Map<String, List<String>> signatureIds = new LinkedHashMap<>();
+    for (AsicContainerIndex.Entry entry : containerIndex.getEntries()) {
+      if (ASiCContainerValidator.isXAdES(entry.getName())) {
+        List<String> ids = new ArrayList<>();
+        for (SignatureSummary signature : readSignatures(entry)) {
+          ids.add(signature.getId());
+        }
+        signatureIds.put(entry.getName(), ids);
+      }
+    }
+    return signatureIds;
+  }
+
+  private Map<String, String> readManifestMediaTypes() {
+    Map<String, String> mediaTypes = new HashMap<>();
+    AsicContainerIndex.Entry manifestEntry = containerIndex.getEntry(MANIFEST_FILE_NAME);
+    if (manifestEntry == null) {
+      return mediaTypes;
+    }
+    InputStream stream = containerIndex.openEntryStream(manifestEntry);
+    XMLStreamReader reader = null;
+    try {
+      reader = xmlInputFactory.createXMLStreamReader(stream);
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT && "file-entry".equals(reader.getLocalName())) {
+          String fullPath = reader.getAttributeValue(MANIFEST_NAMESPACE, "full-path");
+          String mediaType = reader.getAttributeValue(MANIFEST_NAMESPACE, "media-type");
+          if (fullPath != null) {
+            mediaTypes.put(fullPath, mediaType);
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      logger.error("Error reading manifest: " + e.getMessage());
+      throw new TechnicalException("Error reading manifest", e);
+    } finally {
+      closeQuietly(reader);
+      IOUtils.closeQuietly(stream);
+    }
+    return mediaTypes;
+  }
+
+  private List<SignatureSummary> readSignatures(AsicContainerIndex.Entry entry) {
+    logger.debug("Reading signatures from " + entry.getName());
+    List<SignatureSummary> signatures = new ArrayList<>();
+    InputStream stream = containerIndex.openEntryStream(entry);
+    XMLStreamReader reader = null;
+    try {
+      reader = xmlInputFactory.createXMLStreamReader(stream);
+      SignatureScan scan = null;
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          String localName = reader.getLocalName();
+          if (isSignatureElement(reader)) {
+            scan = new SignatureScan(reader.getAttributeValue(null, "Id"));
+          } else if (scan != null) {
+            scan.startElement(localName, reader);
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT && scan != null && isSignatureElement(reader)) {
+          signatures.add(scan.toSummary());
+          scan = null;
+        }
+      }
+    } catch (XMLStreamException e) {
+      logger.error("Error reading signatures from " + entry.getName() + ": " + e.getMessage());
+      throw new TechnicalException("Error reading signatures from " + entry.getName(), e);
+    } finally {
+      closeQuietly(reader);
+      IOUtils.closeQuietly(stream);
+    }
+    return signatures;
+  }
+
+  private static boolean isSignatureElement(XMLStreamReader reader) {
+    return "Signature".equals(reader.getLocalName()) && XML_DSIG_NAMESPACE.equals(reader.getNamespaceURI());
+  }
+
+  private static void closeQuietly(XMLStreamReader reader) {
+    if (reader == null) {
+      return;
+    }
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      logger.warn("Failed to close XML reader: " + e.getMessage());
+    }
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /**
+   * Collects the signature details while the elements of one ds:Signature are read.
+   */
+  private static class SignatureScan {
+    private final String id;
+    private boolean inKeyInfo;
+    private String signerCertificate;
+    private String signingTime;
+    private boolean hasSignatureTimestamp;
+    private boolean hasArchiveTimestamp;
+    private boolean hasOcspResponse;
+
+    SignatureScan(String id) {
+      this.id = id;
+    }
+
+    void startElement(String localName, XMLStreamReader reader) throws XMLStreamException {
+      switch (localName) {
+        case "KeyInfo":
+          inKeyInfo = true;
+          break;
+        case "X509Certificate":
+          if (inKeyInfo && signerCertificate == null) {
+            signerCertificate = reader.getElementText();
+          }
+          break;
+        case "SigningTime":
+          signingTime = reader.getElementText();
+          break;
+        case "SignatureTimeStamp":
+          hasSignatureTimestamp = true;
+          break;
+        case "ArchiveTimeStamp":
+          hasArchiveTimestamp = true;
+          break;
+        case "EncapsulatedOCSPValue":
+          hasOcspResponse = true;
+          break;
+        case "Object":
+          inKeyInfo = false;
+          break;
+        default:
+          break;
+      }
+    }
+
+    SignatureSummary toSummary() {
+      return new SignatureSummary(id, getSignerSubjectName(), getSigningTime(), getProfile());
+    }
+
+    /**
+     * Time-mark signatures are reported as LT, the same as {@link BDocSignature#getProfile()} reports them.
+     */
+    private SignatureProfile getProfile() {
+      if (hasArchiveTimestamp) {
+        return SignatureProfile.LTA;
+      }
+      if (hasSignatureTimestamp || hasOcspResponse) {
+        return SignatureProfile.LT;
+      }
+      return SignatureProfile.B_BES;
+    }
+
+    private String getSignerSubjectName() {
+      if (signerCertificate == null) {
+        return null;
+      }
+      try {
+        CertificateToken certificate = DSSUtils.loadCertificate(Base64.decodeBase64(signerCertificate.trim()));
+        return new X509Cert(certificate.getCertificate()).getSubjectName();
+      } catch (DSSException e) {
+        logger.error("Error reading signer certificate of signature " + id + ": " + e.getMessage());
+        throw new TechnicalException("Error reading signer certificate of signature " + id, e);
+      }
+    }
+
+    private Date getSigningTime() {
+      if (signingTime == null) {
+        return null;
+      }
+      try {
+        return DatatypeFactory.newInstance().newXMLGregorianCalendar(signingTime.trim()).toGregorianCalendar().getTime();
+      } catch (DatatypeConfigurationException | IllegalArgumentException e) {
+        logger.error("Error reading signing time of signature " + id + ": " + e.getMessage());
+        throw new TechnicalException("Error reading signing time of signature " + id, e);
+      }
+    }
+  }
+}
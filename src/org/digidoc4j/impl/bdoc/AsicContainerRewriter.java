@@ -0,0 +1,105 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.exceptions.TechnicalException;
+import org.digidoc4j.utils.SpoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.ec.markt.dss.signature.StreamDocument;
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.FileDocument;
+import eu.europa.esig.dss.InMemoryDocument;
+
+/**
+ * Writes a changed copy of a container. Copies of containers read from files are written to spool files,
+ * copies of containers held in memory are written to memory.
+ */
+public class AsicContainerRewriter {
+
+  private static final Logger logger = LoggerFactory.getLogger(AsicContainerRewriter.class);
+
+  private AsicContainerRewriter() {
+  }
+
+  /**
+   * @param container container to copy
+   * @param content   contents of the copy
+   * @return copy of the container, spool file backed copies are owned by the caller
+   */
+  public static DSSDocument rewrite(DSSDocument container, Content content) {
+    if (isFileBacked(container)) {
+      return writeToSpoolFile(container, content);
+    }
+    logger.debug("Writing container copy to memory");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    content.writeTo(out);
+    return new InMemoryDocument(out.toByteArray(), container.getName(), container.getMimeType());
+  }
+
+  private static DSSDocument writeToSpoolFile(DSSDocument container, Content content) {
+    SpoolManager.SpoolFile spoolFile;
+    try {
+      spoolFile = SpoolManager.getInstance().createFile();
+    } catch (IOException e) {
+      logger.error("Error creating spool file: " + e.getMessage());
+      throw new TechnicalException("Error creating spool file: " + e.getMessage(), e);
+    }
+    logger.debug("Writing container copy to " + spoolFile.getFile());
+    FileOutputStream out = null;
+    try {
+      spoolFile.allocate(content.getLength());
+      out = new FileOutputStream(spoolFile.getFile());
+      content.writeTo(out);
+      out.close();
+    } catch (IOException e) {
+      IOUtils.closeQuietly(out);
+      spoolFile.release();
+      logger.error("Error writing container copy: " + e.getMessage());
+      throw new TechnicalException("Error writing container copy: " + e.getMessage(), e);
+    } catch (RuntimeException e) {
+      IOUtils.closeQuietly(out);
+      spoolFile.release();
+      throw e;
+    }
+    return new StreamDocument(spoolFile, container.getName(), container.getMimeType());
+  }
+
+  private static boolean isFileBacked(DSSDocument container) {
+    return container instanceof FileDocument || container instanceof StreamDocument ||
+        container instanceof MappedContainerDocument;
+  }
+
+  /**
+   * Contents of a container copy.
+   */
+  public interface Content {
+
+    /**
+     * @return length of the copy in bytes
+     */
+    long getLength();
+
+    /**
+     * Writes the copy. The output stream is not closed.
+     *
+     * @param out stream to write to
+     */
+    void writeTo(OutputStream out);
+  }
+}
@@ -34,7 +34,10 @@ import org.slf4j.LoggerFactory;
 import eu.europa.esig.dss.DSSDocument;
 import eu.europa.esig.dss.DSSException;
 import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.InMemoryDocument;
+import eu.europa.esig.dss.MimeType;
 import eu.europa.esig.dss.asic.validation.ASiCContainerValidator;
+import eu.europa.esig.dss.asic.validation.ASiCXMLDocumentValidator;
 import eu.europa.esig.dss.validation.AdvancedSignature;
 import eu.europa.esig.dss.validation.CertificateVerifier;
 import eu.europa.esig.dss.validation.SignedDocumentValidator;
@@ -58,6 +61,15 @@ public class AsicContainerValidator implements Serializable {
     this.configuration = configuration;
   }
 
+  /**
+   * Sets a validation report created earlier for the same container. The container is then not validated again.
+   *
+   * @param validationReport validation report of the container
+   */
+  public void setValidationReport(Reports validationReport) {
+    this.validationReport = validationReport;
+  }
+
   public AsicContainerValidationResult validate() throws ContainerWithoutSignaturesException {
     logger.debug("Validating asic container");
     try {
@@ -87,6 +99,39 @@ public class AsicContainerValidator implements Serializable {
     return validationResult;
   }
 
+  public AsicContainerValidationResult loadContainerDetailsWithoutValidation() throws ContainerWithoutSignaturesException {
+    return loadContainerDetailsWithoutValidation(AsicContainerIndex.fromDocument(signedDocument));
+  }
+
+  /**
+   * Parses the signatures of the container without validating them. Signature files are read through the container
+   * index, data files are referenced as container entries and are not read.
+   *
+   * @param containerIndex index of the container
+   * @return container details without validation report
+   */
+  public AsicContainerValidationResult loadContainerDetailsWithoutValidation(AsicContainerIndex containerIndex) throws ContainerWithoutSignaturesException {
+    logger.debug("Loading container details without validation");
+    List<AsicContainerIndex.Entry> signatureEntries = new ArrayList<>();
+    List<DSSDocument> detachedContents = readContainerEntries(containerIndex, signatureEntries);
+
+    signatures = new ArrayList<>();
+    containerDigestAlgorithm = null;
+    for (AsicContainerIndex.Entry signatureEntry : signatureEntries) {
+      SignedDocumentValidator validator = openSignatureValidator(containerIndex, signatureEntry, detachedContents);
+      for (AdvancedSignature advancedSignature : validator.getSignatures()) {
+        XAdESSignature xadesSignature = (XAdESSignature) advancedSignature;
+        if (containerDigestAlgorithm == null) {
+          containerDigestAlgorithm = xadesSignature.getDigestAlgorithm();
+        }
+        signatures.add(new BDocSignature(xadesSignature));
+      }
+    }
+    AsicContainerValidationResult validationResult = createContainerValidationResult();
+    validationResult.setSignedDocuments(detachedContents);
+    return validationResult;
+  }
+
   public List<Signature> loadSignaturesWithoutValidation() throws ContainerWithoutSignaturesException {
     logger.debug("Loading signatures without validation");
     signatures = new ArrayList<>();
@@ -99,21 +144,61 @@ public class AsicContainerValidator implements Serializable {
     return signatures;
   }
 
-  public XAdESSignature findXadesSignature(String deterministicId) throws SignatureNotFoundException, ContainerWithoutSignaturesException {
-    logger.debug("Finding xades signature with id " + deterministicId);
-    SignedDocumentValidator validator = openValidator();
-    validate(validator);
-    List<AdvancedSignature> signatureList = validator.getSignatures();
-    for (AdvancedSignature advancedSignature : signatureList) {
-      if (advancedSignature.getId().equals(deterministicId)) {
-        logger.debug("Signature found");
-        return (XAdESSignature) advancedSignature;
+  /**
+   * Finds a signature by its id without validating the container. Only the signature files are parsed, data files
+   * are referenced as container entries and are not read. The signature file with the given name is searched first.
+   *
+   * @param deterministicId   id of the signature
+   * @param signatureFileName name of the signature file expected to contain the signature, without the META-INF/
+   *                          folder, or null if not known
+   * @return signature with the given id
+   */
+  public XAdESSignature findXadesSignatureWithoutValidation(String deterministicId, String signatureFileName) throws SignatureNotFoundException, ContainerWithoutSignaturesException {
+    logger.debug("Finding xades signature with id " + deterministicId + " without validation");
+    AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+    List<AsicContainerIndex.Entry> signatureEntries = new ArrayList<>();
+    List<DSSDocument> detachedContents = readContainerEntries(containerIndex, signatureEntries);
+    if (signatureFileName != null) {
+      AsicContainerIndex.Entry expectedEntry = containerIndex.getEntry("META-INF/" + signatureFileName);
+      if (signatureEntries.remove(expectedEntry)) {
+        signatureEntries.add(0, expectedEntry);
+      }
+    }
+    for (AsicContainerIndex.Entry signatureEntry : signatureEntries) {
+      SignedDocumentValidator validator = openSignatureValidator(containerIndex, signatureEntry, detachedContents);
+      for (AdvancedSignature advancedSignature : validator.getSignatures()) {
+        if (advancedSignature.getId().equals(deterministicId)) {
+          logger.debug("Signature found from " + signatureEntry.getName());
+          return (XAdESSignature) advancedSignature;
+        }
       }
     }
     logger.error("Signature " + deterministicId + " was not found");
     throw new SignatureNotFoundException();
   }
 
+  private List<DSSDocument> readContainerEntries(AsicContainerIndex containerIndex, List<AsicContainerIndex.Entry> signatureEntries) throws ContainerWithoutSignaturesException {
+    List<DSSDocument> detachedContents = new ArrayList<>();
+    for (AsicContainerIndex.Entry entry : containerIndex.getEntries()) {
+      if (ASiCContainerValidator.isXAdES(entry.getName())) {
+        signatureEntries.add(entry);
+      } else if (!entry.isDirectory()) {
+        detachedContents.add(new AsicEntryDocument(containerIndex, entry, MimeType.fromFileName(entry.getName())));
+      }
+    }
+    if (signatureEntries.isEmpty()) {
+      throw new ContainerWithoutSignaturesException();
+    }
+    return detachedContents;
+  }
+
+  private SignedDocumentValidator openSignatureValidator(AsicContainerIndex containerIndex, AsicContainerIndex.Entry signatureEntry, List<DSSDocument> detachedContents) {
+    DSSDocument signatureDocument = new InMemoryDocument(containerIndex.readEntry(signatureEntry), signatureEntry.getName());
+    SignedDocumentValidator validator = openSignatureValidator(signatureDocument, detachedContents);
+    validator.setCertificateVerifier(certificateVerifier);
+    return validator;
+  }
+
   private void loadSignatures(SignedDocumentValidator validator) {
     logger.debug("Loading signatures");
     signatureVerificationErrors = new LinkedHashMap<>();
@@ -176,6 +261,15 @@ public class AsicContainerValidator implements Serializable {
     validator.setCertificateVerifier(certificateVerifier);
   }
 
+  private SignedDocumentValidator openSignatureValidator(DSSDocument signatureDocument, List<DSSDocument> detachedContents) {
+    try {
+      return new ASiCXMLDocumentValidator(signatureDocument, detachedContents);
+    } catch (DSSException e) {
+      logger.error("Error parsing signature " + signatureDocument.getName() + ": " + e.getMessage());
+      throw new TechnicalException("Error parsing signature " + signatureDocument.getName() + ": " + e.getMessage(), e);
+    }
+  }
+
   private InputStream getValidationPolicyAsStream() {
     String policyFile = configuration.getValidationPolicy();
     if (Files.exists(Paths.get(policyFile))) {
@@ -0,0 +1,137 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+import org.digidoc4j.impl.StreamableDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.MimeType;
+
+/**
+ * @see eu.europa.esig.dss.DSSDocument implementation backed by an entry of an ASiC container.
+ * The entry is read from the container only when its contents are requested.
+ */
+public class AsicEntryDocument implements StreamableDocument {
+  private static final Logger logger = LoggerFactory.getLogger(AsicEntryDocument.class);
+
+  private final AsicContainerIndex containerIndex;
+  private final AsicContainerIndex.Entry entry;
+  private String name;
+  private MimeType mimeType;
+  private DSSDocument nextDocument;
+
+  public AsicEntryDocument(AsicContainerIndex containerIndex, AsicContainerIndex.Entry entry, MimeType mimeType) {
+    logger.debug("Entry: " + entry.getName() + ", mime type: " + mimeType);
+    this.containerIndex = containerIndex;
+    this.entry = entry;
+    this.name = entry.getName();
+    this.mimeType = mimeType;
+  }
+
+  /**
+   * @return uncompressed size of the entry
+   */
+  @Override
+  public long getSize() {
+    return entry.getSize();
+  }
+
+  @Override
+  public InputStream openStream() throws DSSException {
+    logger.debug("");
+    return containerIndex.openEntryStream(entry);
+  }
+
+  @Override
+  public byte[] getBytes() throws DSSException {
+    logger.debug("");
+    return containerIndex.readEntry(entry);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String getAbsolutePath() {
+    return null;
+  }
+
+  @Override
+  public MimeType getMimeType() {
+    return mimeType;
+  }
+
+  @Override
+  public void setMimeType(MimeType mimeType) {
+    this.mimeType = mimeType;
+  }
+
+  @Override
+  public void save(String filePath) throws IOException {
+    logger.debug("File Path: " + filePath);
+    OutputStream out = new FileOutputStream(filePath);
+    try {
+      writeTo(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the entry contents to the output stream without reading the whole entry into memory.
+   * The output stream is not closed.
+   *
+   * @param out stream to write to
+   */
+  @Override
+  public void writeTo(OutputStream out) {
+    logger.debug("");
+    containerIndex.copyEntry(entry, out);
+  }
+
+  @Override
+  public String getDigest(DigestAlgorithm digestAlgorithm) {
+    logger.debug("Digest algorithm: " + digestAlgorithm);
+    return Base64.encodeBase64String(containerIndex.digestEntry(entry, digestAlgorithm));
+  }
+
+  @Override
+  public String getBase64Encoded() {
+    return Base64.encodeBase64String(getBytes());
+  }
+
+  @Override
+  public DSSDocument getNextDocument() {
+    return nextDocument;
+  }
+
+  @Override
+  public void setNextDocument(DSSDocument nextDocument) {
+    this.nextDocument = nextDocument;
+  }
+}
@@ -19,7 +19,10 @@ import static eu.europa.esig.dss.SignatureLevel.ASiC_E_BASELINE_LTA;
 import static eu.europa.esig.dss.SignaturePackaging.DETACHED;
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
 import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.digidoc4j.SignatureProfile.B_BES;
 import static org.digidoc4j.SignatureProfile.LT;
+import static org.digidoc4j.SignatureProfile.LTA;
+import static org.digidoc4j.SignatureProfile.LT_TM;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -31,14 +34,17 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.digidoc4j.Configuration;
 import org.digidoc4j.Container;
 import org.digidoc4j.DataFile;
@@ -55,6 +61,7 @@ import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.exceptions.DuplicateDataFileException;
 import org.digidoc4j.exceptions.NotYetImplementedException;
 import org.digidoc4j.exceptions.OCSPRequestFailedException;
+import org.digidoc4j.exceptions.SignatureNotFoundException;
 import org.digidoc4j.exceptions.TechnicalException;
 import org.digidoc4j.exceptions.UnsupportedFormatException;
 import org.digidoc4j.impl.SignatureFinalizer;
@@ -81,10 +88,8 @@ import eu.europa.esig.dss.SignatureValue;
 import eu.europa.esig.dss.SignerLocation;
 import eu.europa.esig.dss.ToBeSigned;
 import eu.europa.esig.dss.asic.ASiCSignatureParameters;
-import eu.europa.esig.dss.asic.signature.ASiCService;
+import eu.europa.esig.dss.asic.validation.ASiCContainerValidator;
 import eu.europa.esig.dss.asic.validation.ASiCXMLDocumentValidator;
-import eu.europa.esig.dss.client.tsp.OnlineTSPSource;
-import eu.europa.esig.dss.signature.DocumentSignatureService;
 import eu.europa.esig.dss.validation.SignedDocumentValidator;
 import eu.europa.esig.dss.validation.report.Reports;
 import eu.europa.esig.dss.x509.CertificateToken;
@@ -100,7 +105,8 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
 
   private final Map<String, DataFile> dataFiles = new LinkedHashMap<>();
   private SKCommonCertificateVerifier commonCertificateVerifier;
-  private DocumentSignatureService asicService;
+  private IncrementalASiCService asicService;
+  private SKOnlineTSPSource tspSource;
   private ASiCSignatureParameters dssSignatureParameters;
   private SignatureParameters signatureParameters = new SignatureParameters();
   private DSSDocument signedDocument;
@@ -108,8 +114,14 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
   protected Configuration configuration = null;
   private static final MimeType BDOC_MIME_TYPE = MimeType.ASICE;
   private transient Reports validationReport;
+  private transient DSSDocument validationReportDocument;
   private boolean isTimeMark = false;
   private Integer currentUsedSignatureFileIndex;
+  private boolean dataFilesReferenceContainerEntries = false;
+  private final List<DataFile> ownedDataFiles = new ArrayList<>();
+  private final List<DataFile> retainedDataFiles = new ArrayList<>();
+  private final List<StreamDocument> ownedDocuments = new ArrayList<>();
+  private final Map<String, StreamDocument> spooledAttachments = new HashMap<>();
 
   /**
    * Create a new container object of type BDOC.
@@ -200,9 +212,10 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     commonCertificateVerifier = new SKCommonCertificateVerifier();
     commonCertificateVerifier.setCrlSource(null); //Disable CRL checks
     commonCertificateVerifier.setSignatureCRLSource(null); //Disable CRL checks
-    asicService = new ASiCService(commonCertificateVerifier);
-    OnlineTSPSource tspSource = new OnlineTSPSource(configuration.getTspSource());
+    asicService = new IncrementalASiCService(commonCertificateVerifier);
+    tspSource = new SKOnlineTSPSource(configuration.getTspSource());
     SKTimestampDataLoader dataLoader = new SKTimestampDataLoader();
+    dataLoader.setTimeoutConnection(configuration.getConnectionTimeout());
     tspSource.setDataLoader(dataLoader);
     asicService.setTspSource(tspSource);
   }
@@ -242,17 +255,24 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     this.configuration = configuration;
     initASiC();
     try {
-      if (actAsBigFilesSupportEnabled) {
+      long spillToDiskThreshold = configuration.getContainerSpillToDiskThresholdInBytes();
+      if (spillToDiskThreshold != Configuration.SPILL_TO_DISK_DISABLED) {
+        signedDocument = new SpillingDocumentReader(spillToDiskThreshold).read(stream, null, BDOC_MIME_TYPE);
+      } else if (actAsBigFilesSupportEnabled) {
         signedDocument = new StreamDocument(stream, null, BDOC_MIME_TYPE);
-      } else
-       signedDocument = new InMemoryDocument(IOUtils.toByteArray(stream), null, BDOC_MIME_TYPE);
+      } else {
+        signedDocument = new InMemoryDocument(IOUtils.toByteArray(stream), null, BDOC_MIME_TYPE);
+      }
+      if (signedDocument instanceof StreamDocument) {
+        ownedDocuments.add((StreamDocument) signedDocument);
+      }
     } catch (IOException e) {
       logger.error(e.getMessage());
       throw new DigiDoc4JException(e);
-  }
+    }
 
-  readsOpenedDocumentDetails();
-}
+    readsOpenedDocumentDetails(AsicContainerIndex.fromDocument(signedDocument), true);
+  }
 
   /**
    * Opens container from a file with specified configuration settings
@@ -262,25 +282,33 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
    */
   public AsicFacade(String path, Configuration configuration) {
     logger.info("Opening BDoc container from file: " + path);
-    configuration.getTSL();
+    if (configuration.isValidateContainerOnOpen()) {
+      configuration.getTSL();
+    }
     this.configuration = configuration.copy();
     initASiC();
 
+    AsicContainerIndex containerIndex;
     try {
-      signedDocument = new FileDocument(path);
+      if (this.configuration.isMemoryMappedContainersEnabled()) {
+        signedDocument = new MappedContainerDocument(path);
+      } else {
+        signedDocument = new FileDocument(path);
+      }
       signedDocument.setMimeType(MimeType.ASICE);
-      checkMimeType(path);
+      containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+      checkMimeType(containerIndex);
     } catch (DSSException e) {
       logger.error(e.getMessage());
       throw new DigiDoc4JException(e);
     }
 
-    readsOpenedDocumentDetails();
+    readsOpenedDocumentDetails(containerIndex, this.configuration.isLazyDataFilesEnabled());
   }
 
-  private void checkMimeType(String path) {
-    logger.debug("Check mime type for " + path);
-    String bdocMimeTypeFromZip = getBdocMimeTypeFromZip(path).trim();
+  private void checkMimeType(AsicContainerIndex containerIndex) {
+    logger.debug("");
+    String bdocMimeTypeFromZip = getBdocMimeTypeFromZip(containerIndex).trim();
     try {
       if (!MimeType.ASICE.equals(MimeType.fromMimeTypeString(bdocMimeTypeFromZip))) {
         throw new UnsupportedFormatException(bdocMimeTypeFromZip);
@@ -291,38 +319,40 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     }
   }
 
-  private String getBdocMimeTypeFromZip(String path) {
-    logger.debug("Get mime type from zip for " + path);
-    String mimeType;
-    try {
-      ZipFile zipFile = new ZipFile(path);
-      ZipEntry entry = zipFile.getEntry("mimetype");
-      if (entry == null) {
-        logger.error("Unsupported format, mimetype missing");
-        throw new UnsupportedFormatException("Not an asic-e document. Mimetype is missing.");
-      }
-      InputStream stream = zipFile.getInputStream(entry);
-      mimeType = IOUtils.toString(stream);
-      stream.close();
-      zipFile.close();
-    } catch (IOException e) {
-      e.printStackTrace();
-      throw new DigiDoc4JException(e);
+  private String getBdocMimeTypeFromZip(AsicContainerIndex containerIndex) {
+    logger.debug("");
+    AsicContainerIndex.Entry entry = containerIndex.getEntry("mimetype");
+    if (entry == null) {
+      logger.error("Unsupported format, mimetype missing");
+      throw new UnsupportedFormatException("Not an asic-e document. Mimetype is missing.");
     }
+    String mimeType = new String(containerIndex.readEntry(entry));
 
     logger.debug("Mime type " + mimeType);
     return mimeType;
   }
 
-  private void readsOpenedDocumentDetails() {
+  /**
+   * @param containerIndex   index of the opened container
+   * @param referenceEntries true to read the data files from the container entries when they are used, false to read
+   *                         them into memory
+   */
+  private void readsOpenedDocumentDetails(AsicContainerIndex containerIndex, boolean referenceEntries) {
     logger.debug("");
 
-    AsicContainerValidationResult validationResult = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration).loadContainerDetails();
-    validationReport = validationResult.getValidationReport();
+    AsicContainerValidator containerValidator = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration);
+    AsicContainerValidationResult validationResult;
+    if (configuration.isValidateContainerOnOpen()) {
+      validationResult = containerValidator.loadContainerDetails();
+    } else {
+      validationResult = containerValidator.loadContainerDetailsWithoutValidation(containerIndex);
+    }
+    cacheValidationReport(validationResult.getValidationReport());
     dssSignatureParameters.setDigestAlgorithm(validationResult.getContainerDigestAlgorithm());
     signatures = validationResult.getSignatures();
+    validateSignaturesOnDemand(signatures);
 
-    loadAttachments(validationResult.getSignedDocuments());
+    loadAttachments(containerIndex, referenceEntries);
 
     //TODO must be changed when extending signature is possible in sd-dss currently is possible to extend whole
     //container and it extend also all signatures
@@ -334,28 +364,61 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
       signatureParameters.setDigestAlgorithm(null);
     }
 
-    currentUsedSignatureFileIndex = new AsicContainerParser(signedDocument).findCurrentSignatureFileIndex();
+    currentUsedSignatureFileIndex = new AsicContainerParser(containerIndex).findCurrentSignatureFileIndex();
 
     logger.info("Finished reading BDoc container details");
   }
 
-  private void loadAttachments(List<DSSDocument> signedDocuments) {
-    logger.debug("");
-    for (DSSDocument externalContent : signedDocuments) {
-      if (!"mimetype".equals(externalContent.getName()) && !"META-INF/manifest.xml".equals(externalContent.getName())) {
-        checkForDuplicateDataFile(externalContent.getName());
-        dataFiles.put(externalContent.getName(), new DataFile(externalContent.getBytes(), externalContent.getName(),
-            externalContent.getMimeType().getMimeTypeString()));
+  private void loadAttachments(AsicContainerIndex containerIndex, boolean referenceEntries) {
+    logger.debug("Data files are read " + (referenceEntries ? "when they are used" : "into memory"));
+    for (AsicContainerIndex.Entry entry : containerIndex.getEntries()) {
+      String entryName = entry.getName();
+      if (isDataFileEntry(entry)) {
+        checkForDuplicateDataFile(entryName);
+        MimeType mimeType = MimeType.fromFileName(entryName);
+        if (referenceEntries) {
+          dataFiles.put(entryName, new DataFile(new AsicEntryDocument(containerIndex, entry, mimeType)));
+        } else {
+          dataFiles.put(entryName, new DataFile(containerIndex.readEntry(entry), entryName, mimeType.getMimeTypeString()));
+        }
+      }
+    }
+    dataFilesReferenceContainerEntries = referenceEntries;
+  }
+
+  private void referenceDataFilesToSignedDocument() {
+    if (!dataFilesReferenceContainerEntries) {
+      return;
+    }
+    logger.debug("Referencing data files to the changed container");
+    AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+    for (Map.Entry<String, DataFile> dataFileEntry : dataFiles.entrySet()) {
+      AsicContainerIndex.Entry entry = containerIndex.getEntry(dataFileEntry.getKey());
+      if (entry != null) {
+        MimeType mimeType = MimeType.fromMimeTypeString(dataFileEntry.getValue().getMediaType());
+        dataFileEntry.setValue(new DataFile(new AsicEntryDocument(containerIndex, entry, mimeType)));
       }
     }
   }
 
+  static boolean isDataFileEntry(AsicContainerIndex.Entry entry) {
+    String entryName = entry.getName();
+    return !entry.isDirectory() && !"mimetype".equals(entryName) && !"META-INF/manifest.xml".equals(entryName) &&
+        !ASiCContainerValidator.isXAdES(entryName) && !ASiCContainerValidator.isCAdES(entryName) &&
+        !ASiCContainerValidator.isTimestamp(entryName) && !isAsicManifest(entryName);
+  }
+
+  private static boolean isAsicManifest(String entryName) {
+    return entryName.startsWith("META-INF/ASiCManifest") && entryName.endsWith(".xml");
+  }
+
   public DataFile addDataFile(String path, String mimeType) {
     logger.info("Adding data file: " + path + ", mime type: " + mimeType);
 
     verifyIfAllowedToAddDataFile(path);
 
     validationReport = null;
+    invalidateAttachments();
     try {
       long cachedFileSizeInBytes = configuration.getMaxDataFileCachedInBytes();
       if (configuration.isBigFilesSupportEnabled() && new File(path).length() > cachedFileSizeInBytes) {
@@ -403,10 +466,12 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     verifyIfAllowedToAddDataFile(fileName);
 
     validationReport = null;
+    invalidateAttachments();
     try {
       if (configuration.isBigFilesSupportEnabled()) {
         DataFile dataFile = new DataFile(is, fileName, mimeType);
         dataFiles.put(fileName, dataFile);
+        ownedDataFiles.add(dataFile);
         return dataFile;
       } else {
         DataFile dataFile = new DataFile(IOUtils.toByteArray(is), fileName, mimeType);
@@ -462,6 +527,8 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
       throw new DigiDoc4JException(errorMessage);
     }
 
+    validationReport = null;
+    invalidateAttachments();
     if (dataFiles.remove(fileName) == null) {
       DigiDoc4JException exception = new DigiDoc4JException("File not found");
       logger.error(exception.getMessage());
@@ -484,6 +551,73 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
   }
 
   private void buildContainerWithoutSignature(String signatureId) {
+    AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+    AsicContainerIndex.Entry signatureEntry = findSignatureEntryToRemove(containerIndex, signatureId);
+    if (signatureEntry != null) {
+      removeContainerEntry(containerIndex, signatureEntry);
+    } else {
+      rebuildContainerWithoutSignature(signatureId);
+    }
+    referenceDataFilesToSignedDocument();
+    validationReport = null;
+  }
+
+  /**
+   * Finds the signature file holding only the signature with the given id.
+   *
+   * @return entry of the signature file or null if the signature is not alone in a signature file
+   */
+  private AsicContainerIndex.Entry findSignatureEntryToRemove(AsicContainerIndex containerIndex, String signatureId) {
+    Map.Entry<String, List<String>> signatureFile = findSignatureFile(containerIndex, signatureId);
+    if (signatureFile == null) {
+      return null;
+    }
+    return signatureFile.getValue().size() == 1 ? containerIndex.getEntry(signatureFile.getKey()) : null;
+  }
+
+  /**
+   * @return name of the signature file holding the signature with the ids of its signatures or null if the signature
+   * was not found
+   */
+  private Map.Entry<String, List<String>> findSignatureFile(AsicContainerIndex containerIndex, String signatureId) {
+    Map<String, List<String>> signatureIds = new AsicContainerPeeker(containerIndex).readSignatureIds();
+    for (Map.Entry<String, List<String>> signatureFile : signatureIds.entrySet()) {
+      List<String> ids = signatureFile.getValue();
+      if (ids.contains(signatureId)) {
+        logger.debug("Signature " + signatureId + " is in " + signatureFile.getKey() + " with " + ids.size() + " signatures");
+        return signatureFile;
+      }
+    }
+    logger.debug("Signature " + signatureId + " was not found from the signature files");
+    return null;
+  }
+
+  private void removeContainerEntry(final AsicContainerIndex containerIndex, final AsicContainerIndex.Entry entry) {
+    logger.debug("Removing " + entry.getName() + " from the container");
+    setChangedSignedDocument(AsicContainerRewriter.rewrite(signedDocument, new AsicContainerRewriter.Content() {
+      @Override
+      public long getLength() {
+        return containerIndex.getLengthWithoutEntry(entry);
+      }
+
+      @Override
+      public void writeTo(OutputStream out) {
+        containerIndex.writeWithoutEntry(entry, out);
+      }
+    }));
+  }
+
+  /**
+   * Replaces the signed document with its changed copy. Spooled copies are closed with the container.
+   */
+  private void setChangedSignedDocument(DSSDocument changedDocument) {
+    signedDocument = changedDocument;
+    if (changedDocument instanceof StreamDocument) {
+      ownedDocuments.add((StreamDocument) changedDocument);
+    }
+  }
+
+  private void rebuildContainerWithoutSignature(String signatureId) {
     SignedDocumentValidator validator = ASiCXMLDocumentValidator.fromDocument(signedDocument);
     DSSDocument signingDocument = getAttachment();
     DSSDocument signature = validator.removeSignature(signatureId);
@@ -494,7 +628,7 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
       try {
         String signatureFileName = getSignatureFileName(signature);
         dssSignatureParameters.aSiC().setSignatureFileName(signatureFileName);
-        signedDocument = ((ASiCService) asicService).buildASiCContainer(signingDocument, signedDocument,
+        signedDocument = asicService.buildASiCContainer(signingDocument, signedDocument,
             dssSignatureParameters, createBareDocument(signature));
         signature = signature.getNextDocument();
       } catch (IOException e) {
@@ -502,8 +636,6 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
         throw new TechnicalException("Error building asic container", e);
       }
     } while (signature != null);
-
-    validationReport = null;
   }
 
   private DSSDocument createBareDocument(DSSDocument signature) {
@@ -609,7 +741,11 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
 
     try {
       SignatureValue signature = new SignatureValue(dssSignatureParameters.getSignatureAlgorithm(), signatureValue);
-      signedDocument = asicService.signDocument(getSigningDocument(), dssSignatureParameters, signature);
+      if (canAppendSignature()) {
+        setChangedSignedDocument(asicService.appendSignature(signedDocument, getAttachment(), dssSignatureParameters, signature));
+      } else {
+        signedDocument = asicService.signDocument(getSigningDocument(), dssSignatureParameters, signature);
+      }
     } catch (DSSException e) {
       logger.error(e.getMessage());
       if ("OCSP request failed".equals(e.getMessage()))
@@ -617,11 +753,15 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
       throw new DigiDoc4JException(e);
     }
 
-    XAdESSignature xAdESSignature = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration).findXadesSignature(deterministicId);
+    String signatureFileName = dssSignatureParameters.aSiC().getSignatureFileName();
+    XAdESSignature xAdESSignature = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration)
+        .findXadesSignatureWithoutValidation(deterministicId, signatureFileName);
     validateOcspResponse(xAdESSignature);
 
+    referenceDataFilesToSignedDocument();
     validationReport = null;
-    Signature signature = new BDocSignature(xAdESSignature);
+    BDocSignature signature = new BDocSignature(xAdESSignature);
+    signature.setContainer(this);
 
     logger.info("Signing BDoc successfully completed");
     return signature;
@@ -639,11 +779,42 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     return signature;
   }
 
+  /**
+   * Signatures can be appended to a signed container that holds exactly the data files of this container. Other
+   * containers are rebuilt when signing.
+   */
+  private boolean canAppendSignature() {
+    if (signedDocument == null || signatures.isEmpty()) {
+      return false;
+    }
+    AsicContainerIndex containerIndex;
+    try {
+      containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+    } catch (TechnicalException e) {
+      logger.debug("Signed document is not a container: " + e.getMessage());
+      return false;
+    }
+    String signatureFileName = "META-INF/" + dssSignatureParameters.aSiC().getSignatureFileName();
+    if (!containerIndex.containsEntry("mimetype") || !containerIndex.containsEntry("META-INF/manifest.xml") ||
+        containerIndex.containsEntry(signatureFileName)) {
+      return false;
+    }
+    Set<String> dataFileEntryNames = new HashSet<>();
+    for (AsicContainerIndex.Entry entry : containerIndex.getEntries()) {
+      if (isDataFileEntry(entry)) {
+        dataFileEntryNames.add(entry.getName());
+      }
+    }
+    boolean canAppend = dataFileEntryNames.equals(dataFiles.keySet());
+    logger.debug("Signature can be appended to the container: " + canAppend);
+    return canAppend;
+  }
+
   private SKOnlineOCSPSource getOcspSource(byte[] signatureValue) {
     logger.debug("");
     if (isTimeMark && signatureValue != null)
       return new BDocTMOcspSource(configuration, signatureValue);
-    return new BDocTSOcspSource(configuration);
+    return new BDocTSOcspSource(configuration, tspSource);
   }
 
   private DSSDocument getSigningDocument() {
@@ -684,13 +855,32 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     String dataFileName = dataFile.getName();
 
     if (configuration.isBigFilesSupportEnabled() && dataFile.getFileSize() > cachedFileSizeInMB * ONE_MB_IN_BYTES) {
-      attachment = new StreamDocument(dataFile.getStream(), dataFileName, mimeType);
+      StreamDocument streamDocument = spooledAttachments.get(dataFileName);
+      if (streamDocument == null) {
+        streamDocument = new StreamDocument(dataFile.getStream(), dataFileName, mimeType,
+            dssSignatureParameters.getDigestAlgorithm());
+        ownedDocuments.add(streamDocument);
+        spooledAttachments.put(dataFileName, streamDocument);
+      }
+      attachment = streamDocument;
     } else {
-      attachment = new InMemoryDocument(dataFile.getBytes(), dataFileName, mimeType);
+      attachment = new DataFileAttachmentDocument(dataFile, dataFileName, mimeType);
     }
     return attachment;
   }
 
+  /**
+   * Closes the spooled attachments of earlier signings after data files have changed.
+   */
+  private void invalidateAttachments() {
+    logger.debug("");
+    for (StreamDocument streamDocument : spooledAttachments.values()) {
+      ownedDocuments.remove(streamDocument);
+      streamDocument.close();
+    }
+    spooledAttachments.clear();
+  }
+
   public Configuration getConfiguration() {
     return configuration;
   }
@@ -732,12 +922,75 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     logger.info("Verifying BDoc container");
     documentMustBeInitializedCheck();
 
-    AsicContainerValidationResult result = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration).validate();
-
+    AsicContainerValidationResult result = validateContainer();
     logger.info("BDoc container is valid: " + result.isValid());
     return result.getbDocValidationResult();
   }
 
+  /**
+   * Validates the container for a signature that was loaded without validation.
+   *
+   * @param signatureId id of the signature
+   * @return validation errors of the signature
+   */
+  List<DigiDoc4JException> validateSignature(String signatureId) {
+    logger.info("Validating BDoc container for signature " + signatureId);
+    documentMustBeInitializedCheck();
+
+    for (Signature validatedSignature : validateContainer().getSignatures()) {
+      if (StringUtils.equals(signatureId, validatedSignature.getId())) {
+        return ((BDocSignature) validatedSignature).getValidationErrors();
+      }
+    }
+    logger.error("Signature " + signatureId + " was not found from the container");
+    throw new SignatureNotFoundException();
+  }
+
+  private AsicContainerValidationResult validateContainer() {
+    AsicContainerValidator containerValidator = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration);
+    Reports cachedValidationReport = getCachedValidationReport();
+    if (cachedValidationReport != null) {
+      logger.debug("Using the validation report of the unchanged container");
+      containerValidator.setValidationReport(cachedValidationReport);
+    }
+    AsicContainerValidationResult result = containerValidator.validate();
+    cacheValidationReport(result.getValidationReport());
+    updateSignatureValidationErrors(result.getSignatures());
+    return result;
+  }
+
+  private void validateSignaturesOnDemand(List<Signature> loadedSignatures) {
+    for (Signature signature : loadedSignatures) {
+      ((BDocSignature) signature).setContainer(this);
+    }
+  }
+
+  private void cacheValidationReport(Reports report) {
+    validationReport = report;
+    validationReportDocument = report != null ? signedDocument : null;
+  }
+
+  /**
+   * @return validation report if it was created for the current container document, null otherwise
+   */
+  private Reports getCachedValidationReport() {
+    if (validationReport != null && validationReportDocument == signedDocument) {
+      return validationReport;
+    }
+    return null;
+  }
+
+  private void updateSignatureValidationErrors(List<Signature> validatedSignatures) {
+    logger.debug("");
+    for (Signature validatedSignature : validatedSignatures) {
+      for (Signature signature : signatures) {
+        if (signature instanceof BDocSignature && StringUtils.equals(signature.getId(), validatedSignature.getId())) {
+          ((BDocSignature) signature).setValidationErrors(((BDocSignature) validatedSignature).getValidationErrors());
+        }
+      }
+    }
+  }
+
   public List<Signature> getSignatures() {
     logger.debug("");
     return new ArrayList<>(signatures);
@@ -753,6 +1006,7 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
   }
 
   public void addSignature(Signature signature) {
+    validationReport = null;
     signatures.add(signature);
   }
 
@@ -777,17 +1031,57 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
       logger.error(errorMessage);
       throw new DigiDoc4JException(errorMessage);
     }
+    dssSignatureParameters.setSignatureLevel(signatureLevel);
+
+    AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+    List<AsicContainerIndex.Entry> signatureEntries = new ArrayList<>();
+    for (AsicContainerIndex.Entry entry : containerIndex.getEntries()) {
+      if (ASiCContainerValidator.isXAdES(entry.getName())) {
+        signatureEntries.add(entry);
+      }
+    }
+    extendSignatureFiles(containerIndex, signatureEntries);
+  }
+
+  /**
+   * Extends the signatures of the given signature files to the signature level of the signature parameters and
+   * replaces the signature files in the container. Other entries of the container are copied unchanged.
+   */
+  private void extendSignatureFiles(final AsicContainerIndex containerIndex,
+                                    final List<AsicContainerIndex.Entry> signatureEntries) {
     SKOnlineOCSPSource ocspSource = getOcspSource(null);
     commonCertificateVerifier.setTrustedCertSource(configuration.getTSL());
     commonCertificateVerifier.setOcspSource(ocspSource);
 
-    dssSignatureParameters.setSignatureLevel(signatureLevel);
+    dssSignatureParameters.setDetachedContent(getAttachment());
+
+    byte[] mimeType = containerIndex.readEntry(containerIndex.getEntry("mimetype"));
+    AsicContainerIndex.Entry manifestEntry = containerIndex.getEntry("META-INF/manifest.xml");
+    byte[] manifest = manifestEntry != null ? containerIndex.readEntry(manifestEntry) : null;
+    final List<AsicContainerIndex.NewEntry> extendedSignatureEntries = new ArrayList<>();
+    for (AsicContainerIndex.Entry entry : signatureEntries) {
+      byte[] extendedSignatureFile = asicService.extendSignatureFile(mimeType, manifest, entry.getName(),
+          containerIndex.readEntry(entry), dssSignatureParameters);
+      extendedSignatureEntries.add(AsicContainerIndex.deflateEntry(entry.getName(), extendedSignatureFile));
+    }
 
-    DSSDocument extendedDocument = asicService.extendDocument(signedDocument, dssSignatureParameters);
-    signedDocument = new InMemoryDocument(extendedDocument.getBytes(),
-        signedDocument.getName(), signedDocument.getMimeType());
+    setChangedSignedDocument(AsicContainerRewriter.rewrite(signedDocument, new AsicContainerRewriter.Content() {
+      @Override
+      public long getLength() {
+        return containerIndex.getLengthWithChanges(signatureEntries, extendedSignatureEntries);
+      }
 
-    signatures = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration).loadSignaturesWithoutValidation();
+      @Override
+      public void writeTo(OutputStream out) {
+        containerIndex.writeWithChanges(signatureEntries, extendedSignatureEntries, out);
+      }
+    }));
+    referenceDataFilesToSignedDocument();
+
+    AsicContainerIndex extendedIndex = AsicContainerIndex.fromDocument(signedDocument);
+    signatures = new AsicContainerValidator(signedDocument, commonCertificateVerifier, configuration)
+        .loadContainerDetailsWithoutValidation(extendedIndex).getSignatures();
+    validateSignaturesOnDemand(signatures);
   }
 
   public String getVersion() {
@@ -820,6 +1114,86 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
     }
   }
 
+  /**
+   * Extends the profile of one signature. Only the signature file of the signature is extended and replaced,
+   * other signatures of the container are not changed. The signature profile used for new signatures is not changed.
+   *
+   * @param signature signature to extend
+   * @param profile   signature profile to extend to
+   */
+  public void extendSignature(Signature signature, SignatureProfile profile) {
+    logger.info("Extending signature " + signature.getId() + " profile to " + profile.name());
+    SignatureLevel signatureLevel = getExtensionLevel(signature.getProfile(), profile);
+    AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(signedDocument);
+    AsicContainerIndex.Entry signatureEntry = findSignatureEntry(containerIndex, signature.getId());
+    validationReport = null;
+
+    SignatureLevel containerSignatureLevel = dssSignatureParameters.getSignatureLevel();
+    dssSignatureParameters.setSignatureLevel(signatureLevel);
+    try {
+      extendSignatureFiles(containerIndex, Collections.singletonList(signatureEntry));
+    } finally {
+      dssSignatureParameters.setSignatureLevel(containerSignatureLevel);
+    }
+  }
+
+  /**
+   * Returns the signature level for extending a signature of the current profile to the given profile. Signatures
+   * can only be extended to a higher profile: B_BES to LT or LTA and LT to LTA. Signatures can not be extended to
+   * LT_TM, because the signature policy of a time-mark signature is added when signing.
+   *
+   * @param currentProfile profile of the signature
+   * @param profile        profile to extend to
+   * @return signature level to extend to
+   * @throws DigiDoc4JException when the signature can not be extended to the profile
+   */
+  static SignatureLevel getExtensionLevel(SignatureProfile currentProfile, SignatureProfile profile) {
+    if (profile == LT_TM) {
+      String errorMessage = "It is not possible to extend the signature from " + currentProfile +
+          " to LT_TM, time-mark signatures can only be created when signing";
+      logger.error(errorMessage);
+      throw new DigiDoc4JException(errorMessage);
+    }
+    int currentRank = getExtensionRank(currentProfile);
+    int rank = getExtensionRank(profile);
+    if (rank == currentRank) {
+      String errorMessage = "It is not possible to extend the signature to the same level";
+      logger.error(errorMessage);
+      throw new DigiDoc4JException(errorMessage);
+    }
+    if (rank < currentRank) {
+      String errorMessage = "It is not possible to extend the signature from " + currentProfile + " to " + profile;
+      logger.error(errorMessage);
+      throw new DigiDoc4JException(errorMessage);
+    }
+    return profile == LTA ? ASiC_E_BASELINE_LTA : ASiC_E_BASELINE_LT;
+  }
+
+  private static int getExtensionRank(SignatureProfile profile) {
+    if (profile == null) {
+      return 0;
+    }
+    switch (profile) {
+      case LT:
+      case LT_TM:
+        return 1;
+      case LTA:
+        return 2;
+      default:
+        return 0;
+    }
+  }
+
+  private AsicContainerIndex.Entry findSignatureEntry(AsicContainerIndex containerIndex, String signatureId) {
+    Map.Entry<String, List<String>> signatureFile = findSignatureFile(containerIndex, signatureId);
+    if (signatureFile == null) {
+      String errorMessage = "Signature " + signatureId + " was not found from the container";
+      logger.error(errorMessage);
+      throw new DigiDoc4JException(errorMessage);
+    }
+    return containerIndex.getEntry(signatureFile.getKey());
+  }
+
   public void setSignatureProfile(SignatureProfile profile) {
     logger.debug("");
     isTimeMark = false;
@@ -845,9 +1219,34 @@ public class AsicFacade implements SignatureFinalizer, Serializable {
   public void addDataFile(DataFile dataFile) {
     logger.info("Adding data file " + dataFile.getName());
     checkForDuplicateDataFile(dataFile.getName());
+    validationReport = null;
+    invalidateAttachments();
+    dataFile.retain();
+    retainedDataFiles.add(dataFile);
     dataFiles.put(dataFile.getName(), dataFile);
   }
 
+  /**
+   * Releases the temporary files of the container, of the data files created by the container and the references
+   * to the temporary files of the data files added to the container.
+   */
+  public void close() {
+    logger.debug("Closing container");
+    for (DataFile dataFile : ownedDataFiles) {
+      dataFile.close();
+    }
+    for (DataFile dataFile : retainedDataFiles) {
+      dataFile.release();
+    }
+    for (StreamDocument document : ownedDocuments) {
+      document.close();
+    }
+    ownedDataFiles.clear();
+    retainedDataFiles.clear();
+    ownedDocuments.clear();
+    spooledAttachments.clear();
+  }
+
   private void addSignatureProfile(SignatureParameters signatureParameters) {
     if(signatureParameters.getSignatureProfile() != null) {
       setSignatureProfile(signatureParameters.getSignatureProfile());
@@ -98,6 +98,11 @@ public class BDocContainer implements Container {
     asicFacade.extendTo(profile);
   }
 
+  @Override
+  public void extendSignature(Signature signature, SignatureProfile profile) {
+    asicFacade.extendSignature(signature, profile);
+  }
+
   @Override
   public File saveAsFile(String filePath) {
     asicFacade.save(filePath);
@@ -114,6 +119,11 @@ public class BDocContainer implements Container {
     return asicFacade.validate();
   }
 
+  @Override
+  public void close() {
+    asicFacade.close();
+  }
+
   /**
    * Prepare signature.
    * After preparing the signature the container will have to be signed as well
@@ -16,7 +16,6 @@ import static org.digidoc4j.SignatureProfile.LT;
 import static org.digidoc4j.SignatureProfile.LTA;
 
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -32,6 +31,7 @@ import org.digidoc4j.X509Cert;
 import org.digidoc4j.exceptions.CertificateNotFoundException;
 import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.exceptions.NotYetImplementedException;
+import org.digidoc4j.exceptions.SignatureNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -53,7 +53,8 @@ public class BDocSignature implements Signature {
   private static final Logger logger = LoggerFactory.getLogger(BDocSignature.class);
   private XAdESSignature origin;
   private SignatureProductionPlace signerLocation;
-  private List<DigiDoc4JException> validationErrors = new ArrayList<>();
+  private List<DigiDoc4JException> validationErrors;
+  private AsicFacade container;
   private static final Map<SignatureLevel, SignatureProfile> signatureProfileMap =
       new HashMap<SignatureLevel, SignatureProfile>() {
         {
@@ -239,11 +240,23 @@ public class BDocSignature implements Signature {
     return new X509Cert(origin.getSignatureTimestamps().get(0).getIssuerToken().getCertificate());
   }
 
+  /**
+   * Signatures loaded without validation are validated with their container on the first call.
+   *
+   * @throws SignatureNotFoundException when the signature has not been validated and is no longer in its container
+   * @throws DigiDoc4JException         when the signature has not been validated and does not belong to a container
+   */
   @Override
   public List<DigiDoc4JException> validate() {
-    if(validationErrors != null) {
-      logger.info("Signature has " + validationErrors.size() + " validation errors");
+    if (validationErrors == null) {
+      if (container == null) {
+        logger.error("Signature " + getId() + " has not been validated and does not belong to a container");
+        throw new DigiDoc4JException("Signature " + getId() + " has not been validated");
+      }
+      logger.debug("Signature " + getId() + " was loaded without validation, validating the container");
+      validationErrors = container.validateSignature(getId());
     }
+    logger.info("Signature has " + validationErrors.size() + " validation errors");
     return validationErrors;
   }
 
@@ -271,4 +284,11 @@ public class BDocSignature implements Signature {
   void setValidationErrors(List<DigiDoc4JException> validationErrors) {
     this.validationErrors = validationErrors;
   }
+
+  /**
+   * @param container container validating the signature when it was loaded without validation
+   */
+  void setContainer(AsicFacade container) {
+    this.container = container;
+  }
 }
@@ -0,0 +1,78 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.InputStream;
+
+import org.apache.commons.codec.binary.Base64;
+import org.digidoc4j.DataFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.CommonDocument;
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.MimeType;
+
+/**
+ * Attachment of a data file being signed. The contents are read from the data file when requested.
+ * <p/>
+ * Digests are asked from the data file, which keeps them between signings, so digests the data file has already
+ * calculated or finds in the file digest cache are not calculated again.
+ */
+public class DataFileAttachmentDocument extends CommonDocument {
+  private static final Logger logger = LoggerFactory.getLogger(DataFileAttachmentDocument.class);
+
+  private final DataFile dataFile;
+
+  /**
+   * @param dataFile data file
+   * @param name     attachment name
+   * @param mimeType mime type
+   */
+  public DataFileAttachmentDocument(DataFile dataFile, String name, MimeType mimeType) {
+    this.dataFile = dataFile;
+    setName(name);
+    setMimeType(mimeType);
+  }
+
+  @Override
+  public InputStream openStream() throws DSSException {
+    return dataFile.getStream();
+  }
+
+  @Override
+  public byte[] getBytes() throws DSSException {
+    return dataFile.getBytes();
+  }
+
+  @Override
+  public void save(String filePath) {
+    dataFile.saveAs(filePath);
+  }
+
+  @Override
+  public String getBase64Encoded() {
+    return Base64.encodeBase64String(getBytes());
+  }
+
+  @Override
+  public String getDigest(DigestAlgorithm digestAlgorithm) {
+    logger.debug("Digest algorithm: " + digestAlgorithm);
+    for (org.digidoc4j.DigestAlgorithm digestType : org.digidoc4j.DigestAlgorithm.values()) {
+      if (digestType.getDssDigestAlgorithm() == digestAlgorithm) {
+        return Base64.encodeBase64String(dataFile.calculateDigest(digestType));
+      }
+    }
+    return Base64.encodeBase64String(DSSUtils.digest(digestAlgorithm, getBytes()));
+  }
+}
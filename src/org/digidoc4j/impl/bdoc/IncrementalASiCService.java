@@ -0,0 +1,193 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.digidoc4j.exceptions.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSXMLUtils;
+import eu.europa.esig.dss.InMemoryDocument;
+import eu.europa.esig.dss.MimeType;
+import eu.europa.esig.dss.SignatureValue;
+import eu.europa.esig.dss.asic.ASiCSignatureParameters;
+import eu.europa.esig.dss.asic.signature.ASiCService;
+import eu.europa.esig.dss.validation.CertificateVerifier;
+import eu.europa.esig.dss.x509.tsp.TSPSource;
+
+/**
+ * ASiC signature service that can add and extend signatures of a signed container without rebuilding the container.
+ * <p/>
+ * A new signature file is appended after the existing entries, which are copied byte for byte, and only the central
+ * directory is rewritten. Signatures are extended one signature file at a time without reading the data files
+ * into memory.
+ *
+ * @see AsicContainerRewriter
+ */
+public class IncrementalASiCService extends ASiCService {
+
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalASiCService.class);
+
+  private final SignatureFileService signatureFileService;
+
+  public IncrementalASiCService(CertificateVerifier certificateVerifier) {
+    super(certificateVerifier);
+    signatureFileService = new SignatureFileService(certificateVerifier);
+  }
+
+  @Override
+  public void setTspSource(TSPSource tspSource) {
+    super.setTspSource(tspSource);
+    signatureFileService.setTspSource(tspSource);
+  }
+
+  /**
+   * Signs the detached contents and appends the signature to the container. The container must contain the same
+   * data files and manifest as the detached contents.
+   *
+   * @param container       signed container to add the signature to
+   * @param detachedContent data files of the container
+   * @param parameters      signature parameters, the signature file name must be set
+   * @param signatureValue  signature value
+   * @return container with the new signature, spool file backed containers are owned by the caller
+   */
+  public DSSDocument appendSignature(DSSDocument container, DSSDocument detachedContent,
+                                     ASiCSignatureParameters parameters, SignatureValue signatureValue) {
+    String signatureEntryName = "META-INF/" + parameters.aSiC().getSignatureFileName();
+    logger.debug("Appending " + signatureEntryName + " to the container");
+    DSSDocument signatureContainer = signatureFileService.signDocument(detachedContent, parameters, signatureValue);
+    byte[] signatureBytes = readEntry(signatureContainer, signatureEntryName);
+
+    final AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(container);
+    final AsicContainerIndex.NewEntry signatureEntry = AsicContainerIndex.deflateEntry(signatureEntryName, signatureBytes);
+    DSSDocument appendedContainer = AsicContainerRewriter.rewrite(container, new AsicContainerRewriter.Content() {
+      @Override
+      public long getLength() {
+        return containerIndex.getLengthWithAppendedEntry(signatureEntry);
+      }
+
+      @Override
+      public void writeTo(OutputStream out) {
+        containerIndex.writeWithAppendedEntry(signatureEntry, out);
+      }
+    });
+    logger.debug("Appended " + signatureEntryName + " of " + signatureBytes.length + " bytes");
+    return appendedContainer;
+  }
+
+  /**
+   * Extends the signatures of one signature file of a container. DSS is given a container with only the mimetype,
+   * the manifest and the signature file, the data files are taken from the detached content of the parameters.
+   *
+   * @param mimeType          mimetype of the container
+   * @param manifest          manifest of the container or null if the container has no manifest
+   * @param signatureFileName name of the signature file in the container
+   * @param signatureFile     contents of the signature file
+   * @param parameters        signature parameters with the detached content and the signature level to extend to
+   * @return contents of the extended signature file
+   */
+  public byte[] extendSignatureFile(byte[] mimeType, byte[] manifest, String signatureFileName, byte[] signatureFile,
+                                    ASiCSignatureParameters parameters) {
+    logger.debug("Extending signatures of " + signatureFileName + " to " + parameters.getSignatureLevel());
+    byte[] container = createContainer(mimeType, manifest, signatureFileName, signatureFile);
+    DSSDocument extendedContainer = extendDocument(new InMemoryDocument(container, null, MimeType.ASICE), parameters);
+    return readEntry(extendedContainer, signatureFileName);
+  }
+
+  private static byte[] readEntry(DSSDocument container, String entryName) {
+    AsicContainerIndex containerIndex = AsicContainerIndex.fromDocument(container);
+    AsicContainerIndex.Entry entry = containerIndex.getEntry(entryName);
+    if (entry == null) {
+      logger.error("Signed container does not contain " + entryName);
+      throw new TechnicalException("Signed container does not contain " + entryName, null);
+    }
+    return containerIndex.readEntry(entry);
+  }
+
+  /**
+   * Creates a container with the mimetype, the manifest and one signature file.
+   */
+  private static byte[] createContainer(byte[] mimeType, byte[] manifest, String signatureFileName,
+                                        byte[] signatureFile) {
+    ByteArrayOutputStream container = new ByteArrayOutputStream();
+    ZipOutputStream zip = new ZipOutputStream(container);
+    try {
+      ZipEntry mimeTypeEntry = new ZipEntry("mimetype");
+      mimeTypeEntry.setMethod(ZipEntry.STORED);
+      mimeTypeEntry.setSize(mimeType.length);
+      CRC32 crc = new CRC32();
+      crc.update(mimeType);
+      mimeTypeEntry.setCrc(crc.getValue());
+      writeEntry(zip, mimeTypeEntry, mimeType);
+      if (manifest != null) {
+        writeEntry(zip, new ZipEntry("META-INF/manifest.xml"), manifest);
+      }
+      writeEntry(zip, new ZipEntry(signatureFileName), signatureFile);
+      zip.close();
+    } catch (IOException e) {
+      logger.error("Error creating container of " + signatureFileName + ": " + e.getMessage());
+      throw new TechnicalException("Error creating container of " + signatureFileName + ": " + e.getMessage(), e);
+    }
+    return container.toByteArray();
+  }
+
+  private static void writeEntry(ZipOutputStream zip, ZipEntry entry, byte[] content) throws IOException {
+    zip.putNextEntry(entry);
+    zip.write(content);
+    zip.closeEntry();
+  }
+
+  private static byte[] serializeSignature(DSSDocument signature) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      DSSXMLUtils.getSecureTransformerFactory().newTransformer()
+          .transform(new DOMSource(DSSXMLUtils.buildDOM(signature)), new StreamResult(out));
+      return out.toByteArray();
+    } catch (TransformerException | DSSException e) {
+      logger.error("Error serializing signature: " + e.getMessage());
+      throw new TechnicalException("Error serializing signature: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Signs like {@link ASiCService} but the signed container holds only the mimetype and the new signature file,
+   * so the data files are not copied into memory.
+   */
+  private static class SignatureFileService extends ASiCService {
+
+    SignatureFileService(CertificateVerifier certificateVerifier) {
+      super(certificateVerifier);
+    }
+
+    @Override
+    public InMemoryDocument buildASiCContainer(DSSDocument detachedContent, DSSDocument existingContainer,
+                                               ASiCSignatureParameters parameters, DSSDocument signature) {
+      byte[] mimeType = MimeType.ASICE.getMimeTypeString().getBytes(StandardCharsets.US_ASCII);
+      String signatureEntryName = "META-INF/" + parameters.aSiC().getSignatureFileName();
+      byte[] container = createContainer(mimeType, null, signatureEntryName, serializeSignature(signature));
+      return new InMemoryDocument(container, null, MimeType.ASICE);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.MimeType;
+
+/**
+ * @see eu.europa.esig.dss.DSSDocument implementation that reads a container file through a read only memory mapping.
+ */
+public class MappedContainerDocument implements DSSDocument {
+  private static final Logger logger = LoggerFactory.getLogger(MappedContainerDocument.class);
+
+  private final MappedFile mappedFile;
+  private String name;
+  private MimeType mimeType;
+  private DSSDocument nextDocument;
+
+  public MappedContainerDocument(String path) {
+    logger.debug("Path: " + path);
+    File file = new File(path);
+    if (!file.isFile()) {
+      logger.error("File not found: " + path);
+      throw new DSSException("File Not Found: " + file.getAbsolutePath());
+    }
+    this.mappedFile = new MappedFile(path);
+    this.name = file.getName();
+  }
+
+  MappedFile getMappedFile() {
+    return mappedFile;
+  }
+
+  @Override
+  public InputStream openStream() throws DSSException {
+    logger.debug("");
+    try {
+      return mappedFile.openStream(0, mappedFile.length());
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      throw new DSSException(e);
+    }
+  }
+
+  @Override
+  public byte[] getBytes() throws DSSException {
+    logger.debug("");
+    if (mappedFile.length() > Integer.MAX_VALUE) {
+      throw new DSSException("File " + mappedFile.getPath() + " is too large to be read into memory");
+    }
+    byte[] bytes = new byte[(int) mappedFile.length()];
+    try {
+      mappedFile.read(0, bytes, 0, bytes.length);
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      throw new DSSException(e);
+    }
+    return bytes;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String getAbsolutePath() {
+    return new File(mappedFile.getPath()).getAbsolutePath();
+  }
+
+  @Override
+  public MimeType getMimeType() {
+    return mimeType;
+  }
+
+  @Override
+  public void setMimeType(MimeType mimeType) {
+    this.mimeType = mimeType;
+  }
+
+  @Override
+  public void save(String filePath) throws IOException {
+    logger.debug("File Path: " + filePath);
+    InputStream stream = openStream();
+    try {
+      OutputStream out = new FileOutputStream(filePath);
+      try {
+        IOUtils.copyLarge(stream, out);
+      } finally {
+        out.close();
+      }
+    } finally {
+      IOUtils.closeQuietly(stream);
+    }
+  }
+
+  @Override
+  public String getDigest(DigestAlgorithm digestAlgorithm) {
+    logger.debug("Digest algorithm: " + digestAlgorithm);
+    try {
+      MessageDigest messageDigest = DSSUtils.getMessageDigest(digestAlgorithm);
+      mappedFile.digest(messageDigest, 0, mappedFile.length());
+      return Base64.encodeBase64String(messageDigest.digest());
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      throw new DSSException(e);
+    }
+  }
+
+  @Override
+  public String getBase64Encoded() {
+    return Base64.encodeBase64String(getBytes());
+  }
+
+  @Override
+  public DSSDocument getNextDocument() {
+    return nextDocument;
+  }
+
+  @Override
+  public void setNextDocument(DSSDocument nextDocument) {
+    this.nextDocument = nextDocument;
+  }
+}
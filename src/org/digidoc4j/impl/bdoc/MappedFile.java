@@ -0,0 +1,264 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.digidoc4j.utils.FileTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read only memory mapping of a file. Files larger than a single mapping are mapped in consecutive regions.
+ * <p/>
+ * Reads are served from the mapping without copying the file contents to the heap.
+ */
+class MappedFile implements Serializable {
+
+  private static final Logger logger = LoggerFactory.getLogger(MappedFile.class);
+  private static final long REGION_SIZE = 1L << 30;
+
+  private final String path;
+  private final long length;
+  private final long lastModified;
+  private transient List<ByteBuffer> regions;
+
+  MappedFile(String path) {
+    File file = new File(path);
+    this.path = path;
+    this.length = file.length();
+    this.lastModified = file.lastModified();
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  long length() {
+    return length;
+  }
+
+  /**
+   * Reads bytes from the mapping into the buffer.
+   */
+  void read(long position, byte[] buffer, int offset, int count) throws IOException {
+    checkRange(position, count);
+    ByteBuffer slice;
+    long current = position;
+    int remaining = count;
+    while (remaining > 0) {
+      slice = sliceOfRegion(current, remaining);
+      int sliceLength = slice.remaining();
+      slice.get(buffer, offset + (count - remaining), sliceLength);
+      current += sliceLength;
+      remaining -= sliceLength;
+    }
+  }
+
+  /**
+   * Opens a stream that reads the given range directly from the mapping.
+   */
+  InputStream openStream(long position, long count) throws IOException {
+    checkRange(position, count);
+    return new MappedInputStream(position, count);
+  }
+
+  /**
+   * Updates the digest with the given range of the mapping.
+   */
+  void digest(MessageDigest messageDigest, long position, long count) throws IOException {
+    checkRange(position, count);
+    long current = position;
+    long remaining = count;
+    while (remaining > 0) {
+      ByteBuffer slice = sliceOfRegion(current, remaining);
+      int sliceLength = slice.remaining();
+      messageDigest.update(slice);
+      current += sliceLength;
+      remaining -= sliceLength;
+    }
+  }
+
+  /**
+   * Writes the given range to the output stream. File outputs are written by a file channel transfer,
+   * other outputs are written from the mapping.
+   */
+  void write(long position, long count, OutputStream out) throws IOException {
+    checkRange(position, count);
+    if (out instanceof FileOutputStream) {
+      FileTransfer.copy(new File(path), position, count, out);
+      return;
+    }
+    WritableByteChannel channel = Channels.newChannel(out);
+    long current = position;
+    long remaining = count;
+    while (remaining > 0) {
+      ByteBuffer slice = sliceOfRegion(current, remaining);
+      int sliceLength = slice.remaining();
+      while (slice.hasRemaining()) {
+        channel.write(slice);
+      }
+      current += sliceLength;
+      remaining -= sliceLength;
+    }
+  }
+
+  /**
+   * Returns a slice of the mapping starting at the position. The slice ends at the end of the range
+   * or at the end of the mapped region containing the position, whichever comes first.
+   */
+  private ByteBuffer sliceOfRegion(long position, long count) throws IOException {
+    List<ByteBuffer> mappedRegions = getRegions();
+    int regionIndex = (int) (position / REGION_SIZE);
+    int regionOffset = (int) (position % REGION_SIZE);
+    ByteBuffer slice = mappedRegions.get(regionIndex).duplicate();
+    Buffer buffer = slice;
+    buffer.position(regionOffset);
+    buffer.limit((int) Math.min(slice.capacity(), regionOffset + count));
+    return slice.slice();
+  }
+
+  private void checkRange(long position, long count) throws IOException {
+    checkFileIsUnchanged(path, length, lastModified);
+    if (position < 0 || count < 0 || position + count > length) {
+      throw new EOFException("Read of " + count + " bytes at " + position + " is outside of " + path);
+    }
+  }
+
+  /**
+   * Checks that the container file still has the length and modification time it had when it was opened.
+   * The attributes are read with one call to the file system.
+   */
+  static void checkFileIsUnchanged(String path, long length, long lastModified) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException("Container file " + path + " does not exist");
+    }
+    if (!attributes.isRegularFile()) {
+      throw new FileNotFoundException("Container file " + path + " does not exist");
+    }
+    if (attributes.size() != length || attributes.lastModifiedTime().toMillis() != lastModified) {
+      throw new IOException("Container file " + path + " has been modified after it was opened");
+    }
+  }
+
+  private synchronized List<ByteBuffer> getRegions() throws IOException {
+    if (regions == null) {
+      logger.debug("Mapping file " + path + ", size " + length);
+      List<ByteBuffer> mappedRegions = new ArrayList<>();
+      RandomAccessFile file = new RandomAccessFile(path, "r");
+      try {
+        FileChannel channel = file.getChannel();
+        for (long regionStart = 0; regionStart < length; regionStart += REGION_SIZE) {
+          long regionLength = Math.min(REGION_SIZE, length - regionStart);
+          mappedRegions.add(channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionLength));
+        }
+      } finally {
+        file.close();
+      }
+      regions = mappedRegions;
+    }
+    return regions;
+  }
+
+  private class MappedInputStream extends InputStream {
+    private long position;
+    private long remaining;
+    private long mark;
+    private long markRemaining;
+
+    MappedInputStream(long position, long count) {
+      this.position = position;
+      this.remaining = count;
+      this.mark = position;
+      this.markRemaining = count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      ByteBuffer slice = sliceOfRegion(position, 1);
+      position++;
+      remaining--;
+      return slice.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+      if (count == 0) {
+        return 0;
+      }
+      if (remaining <= 0) {
+        return -1;
+      }
+      ByteBuffer slice = sliceOfRegion(position, Math.min(count, remaining));
+      int sliceLength = slice.remaining();
+      slice.get(buffer, offset, sliceLength);
+      position += sliceLength;
+      remaining -= sliceLength;
+      return sliceLength;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, remaining));
+      position += skipped;
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+      mark = position;
+      markRemaining = remaining;
+    }
+
+    @Override
+    public synchronized void reset() {
+      position = mark;
+      remaining = markRemaining;
+    }
+  }
+}
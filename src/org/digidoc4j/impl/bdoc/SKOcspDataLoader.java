@@ -16,11 +16,14 @@ import java.net.URI;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.util.EntityUtils;
+import org.digidoc4j.utils.EndpointHealth;
 import org.digidoc4j.utils.Helper;
+import org.digidoc4j.utils.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,10 +39,34 @@ public class SKOcspDataLoader extends OCSPDataLoader {
     userAgent = Helper.createBDocUserAgent();
   }
 
+  /**
+   * Requests are not sent while the circuit breaker of the responder is open, and their read timeout adapts to
+   * the recent response times of the responder.
+   *
+   * @see EndpointHealth
+   */
   @Override
   public byte[] post(final String url, final byte[] content) throws DSSException {
     logger.info("Getting OCSP response from " + url);
+    EndpointHealth endpointHealth = EndpointHealth.getInstance();
+    endpointHealth.beforeRequest(url);
+    int timeout = endpointHealth.getTimeout(url, getTimeoutSocket());
+    long requestTime = System.currentTimeMillis();
+    boolean succeeded = false;
+    try {
+      byte[] response = sendRequest(url, content, timeout);
+      succeeded = true;
+      return response;
+    } finally {
+      if (succeeded) {
+        endpointHealth.recordSuccess(url, System.currentTimeMillis() - requestTime);
+      } else {
+        endpointHealth.recordFailure(url);
+      }
+    }
+  }
 
+  private byte[] sendRequest(String url, byte[] content, int timeout) {
     HttpPost httpRequest = null;
     HttpResponse httpResponse = null;
 
@@ -47,6 +74,7 @@ public class SKOcspDataLoader extends OCSPDataLoader {
       final URI uri = URI.create(url.trim());
       httpRequest = new HttpPost(uri);
       httpRequest.setHeader("User-Agent", userAgent);
+      httpRequest.setConfig(HttpTransport.createRequestConfig(getTimeoutConnection(), timeout));
 
       // The length for the InputStreamEntity is needed, because some receivers (on the other side) need this information.
       // To determine the length, we cannot read the content-stream up to the end and re-use it afterwards.
@@ -76,4 +104,12 @@ public class SKOcspDataLoader extends OCSPDataLoader {
       }
     }
   }
+
+  /**
+   * OCSP requests are sent with the HTTP client shared by the whole JVM, so connections to the responder are reused.
+   */
+  @Override
+  protected HttpClient getHttpClient(String url) {
+    return HttpTransport.getInstance().getHttpClient();
+  }
 }
@@ -0,0 +1,52 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.util.Date;
+
+import org.bouncycastle.tsp.TimeStampToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.client.tsp.OnlineTSPSource;
+
+/**
+ * Time-stamp source that remembers the generation time of the latest time-stamp. OCSP responses requested after
+ * the time-stamp must not be produced before it.
+ */
+public class SKOnlineTSPSource extends OnlineTSPSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(SKOnlineTSPSource.class);
+  private volatile Date latestGenerationTime;
+
+  public SKOnlineTSPSource(String tspServer) {
+    super(tspServer);
+  }
+
+  @Override
+  public TimeStampToken getTimeStampResponse(DigestAlgorithm digestAlgorithm, byte[] digest) throws DSSException {
+    TimeStampToken timeStampToken = super.getTimeStampResponse(digestAlgorithm, digest);
+    if (timeStampToken != null) {
+      latestGenerationTime = timeStampToken.getTimeStampInfo().getGenTime();
+      logger.debug("Time-stamp generation time: " + latestGenerationTime);
+    }
+    return timeStampToken;
+  }
+
+  /**
+   * @return generation time of the latest time-stamp or null if no time-stamp has been received
+   */
+  public Date getLatestGenerationTime() {
+    return latestGenerationTime;
+  }
+}
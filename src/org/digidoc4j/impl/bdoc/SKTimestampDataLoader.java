@@ -11,55 +11,149 @@
 package org.digidoc4j.impl.bdoc;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URL;
-import java.net.URLConnection;
+import java.util.List;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.digidoc4j.utils.EndpointHealth;
 import org.digidoc4j.utils.Helper;
+import org.digidoc4j.utils.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.europa.esig.dss.DSSException;
-import eu.europa.esig.dss.client.http.NativeHTTPDataLoader;
+import eu.europa.esig.dss.client.http.DataLoader;
+import eu.europa.esig.dss.client.http.commons.CommonsDataLoader;
 
-public class SKTimestampDataLoader extends NativeHTTPDataLoader {
+/**
+ * Data loader of the timestamping service. Requests are sent with the HTTP client shared by the whole JVM,
+ * so connections to the timestamping service are reused.
+ */
+public class SKTimestampDataLoader implements DataLoader {
 
   private static final Logger logger = LoggerFactory.getLogger(SKTimestampDataLoader.class);
+  private static final String TIMESTAMP_QUERY_CONTENT_TYPE = "application/timestamp-query";
   private String userAgent;
+  private String contentType = TIMESTAMP_QUERY_CONTENT_TYPE;
+  private int timeoutConnection = CommonsDataLoader.TIMEOUT_CONNECTION;
+  private int timeoutSocket = CommonsDataLoader.TIMEOUT_SOCKET;
 
   public SKTimestampDataLoader() {
     userAgent = Helper.createBDocUserAgent();
   }
 
+  /**
+   * Requests are not sent while the circuit breaker of the service is open, and their read timeout adapts to
+   * the recent response times of the service.
+   *
+   * @see EndpointHealth
+   */
   @Override
   public byte[] post(String url, byte[] content) {
     logger.info("Getting timestamp from " + url);
-    OutputStream out = null;
-    InputStream inputStream = null;
-    byte[] result = null;
+    EndpointHealth endpointHealth = EndpointHealth.getInstance();
+    endpointHealth.beforeRequest(url);
+    int timeout = endpointHealth.getTimeout(url, timeoutSocket);
+    long requestTime = System.currentTimeMillis();
+    boolean succeeded = false;
     try {
-      URLConnection connection = new URL(url).openConnection();
+      HttpPost httpRequest = new HttpPost(url.trim());
+      httpRequest.setHeader("Content-Type", contentType);
+      httpRequest.setHeader("Content-Transfer-Encoding", "binary");
+      httpRequest.setEntity(new ByteArrayEntity(content));
+      byte[] response = execute(url, httpRequest, timeout);
+      succeeded = true;
+      return response;
+    } finally {
+      if (succeeded) {
+        endpointHealth.recordSuccess(url, System.currentTimeMillis() - requestTime);
+      } else {
+        endpointHealth.recordFailure(url);
+      }
+    }
+  }
 
-      connection.setDoInput(true);
-      connection.setDoOutput(true);
-      connection.setUseCaches(false);
+  @Override
+  public byte[] get(String url) {
+    logger.debug("Getting " + url);
+    return execute(url, new HttpGet(url.trim()), timeoutSocket);
+  }
+
+  @Override
+  public byte[] get(String url, boolean refresh) {
+    return get(url);
+  }
+
+  @Override
+  public DataAndUrl get(List<String> urls) {
+    DSSException error = null;
+    for (String url : urls) {
+      try {
+        return new DataAndUrl(get(url), url);
+      } catch (DSSException e) {
+        logger.warn("Failed to get " + url + ": " + e.getMessage());
+        error = e;
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+    return null;
+  }
 
-      connection.setRequestProperty("Content-Type", "application/timestamp-query");
-      connection.setRequestProperty("Content-Transfer-Encoding", "binary");
-      connection.setRequestProperty("User-Agent", userAgent);
+  @Override
+  public void setContentType(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public int getTimeoutConnection() {
+    return timeoutConnection;
+  }
+
+  /**
+   * @param timeoutConnection connect timeout in milliseconds
+   */
+  public void setTimeoutConnection(int timeoutConnection) {
+    this.timeoutConnection = timeoutConnection;
+  }
+
+  public int getTimeoutSocket() {
+    return timeoutSocket;
+  }
+
+  /**
+   * @param timeoutSocket read timeout in milliseconds
+   */
+  public void setTimeoutSocket(int timeoutSocket) {
+    this.timeoutSocket = timeoutSocket;
+  }
+
+  private byte[] execute(String url, HttpRequestBase httpRequest, int timeout) {
+    HttpResponse httpResponse = null;
+    try {
+      httpRequest.setHeader("User-Agent", userAgent);
+      httpRequest.setConfig(HttpTransport.createRequestConfig(timeoutConnection, timeout));
 
-      out = connection.getOutputStream();
-      IOUtils.write(content, out);
-      inputStream = connection.getInputStream();
-      result = IOUtils.toByteArray(inputStream);
+      httpResponse = HttpTransport.getInstance().getHttpClient().execute(httpRequest);
+      int statusCode = httpResponse.getStatusLine().getStatusCode();
+      if (statusCode != HttpStatus.SC_OK) {
+        throw new DSSException("An error occured while HTTP " + httpRequest.getMethod() + " for url '" + url + "' : " +
+            httpResponse.getStatusLine());
+      }
+      return EntityUtils.toByteArray(httpResponse.getEntity());
     } catch (IOException e) {
-      throw new DSSException("An error occured while HTTP POST for url '" + url + "' : " + e.getMessage(), e);
+      throw new DSSException("An error occured while HTTP " + httpRequest.getMethod() + " for url '" + url + "' : " +
+          e.getMessage(), e);
     } finally {
-      IOUtils.closeQuietly(out);
-      IOUtils.closeQuietly(inputStream);
+      if (httpResponse != null) {
+        EntityUtils.consumeQuietly(httpResponse.getEntity());
+      }
+      httpRequest.releaseConnection();
     }
-    return result;
   }
 }
@@ -0,0 +1,84 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.ec.markt.dss.signature.StreamDocument;
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.InMemoryDocument;
+import eu.europa.esig.dss.MimeType;
+
+/**
+ * Reads a document from a stream into memory as long as the document is not larger than the given threshold.
+ * Larger documents are spilled to a temporary file.
+ */
+public class SpillingDocumentReader {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpillingDocumentReader.class);
+  private static final int BUFFER_SIZE = 8192;
+
+  private final long thresholdInBytes;
+
+  /**
+   * @param thresholdInBytes maximum size of a document kept in memory
+   */
+  public SpillingDocumentReader(long thresholdInBytes) {
+    this.thresholdInBytes = thresholdInBytes;
+  }
+
+  /**
+   * Reads the stream to the end. The stream is not closed.
+   *
+   * @param stream       stream to read the document from
+   * @param documentName document name
+   * @param mimeType     mime type
+   * @return {@link InMemoryDocument} if the document is not larger than the threshold,
+   * {@link StreamDocument} otherwise
+   */
+  public DSSDocument read(InputStream stream, String documentName, MimeType mimeType) {
+    logger.debug("Reading document with spill to disk threshold of " + thresholdInBytes + " bytes");
+    ByteArrayOutputStream head = new ByteArrayOutputStream((int) Math.min(thresholdInBytes + 1, BUFFER_SIZE));
+    try {
+      if (readHead(stream, head)) {
+        logger.debug("Document is larger than " + thresholdInBytes + " bytes, spilling it to disk");
+        InputStream wholeDocument = new SequenceInputStream(new ByteArrayInputStream(head.toByteArray()), stream);
+        return new StreamDocument(wholeDocument, documentName, mimeType);
+      }
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      throw new DSSException(e);
+    }
+    logger.debug("Keeping document of " + head.size() + " bytes in memory");
+    return new InMemoryDocument(head.toByteArray(), documentName, mimeType);
+  }
+
+  private boolean readHead(InputStream stream, ByteArrayOutputStream head) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    while (head.size() <= thresholdInBytes) {
+      int maxCount = (int) Math.min(buffer.length, thresholdInBytes + 1 - head.size());
+      int count = stream.read(buffer, 0, maxCount);
+      if (count < 0) {
+        return false;
+      }
+      head.write(buffer, 0, count);
+    }
+    return true;
+  }
+}
@@ -14,9 +14,14 @@ import java.io.File;
 import java.io.Serializable;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.digidoc4j.TSLCertificateSource;
 import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.exceptions.TslCertificateSourceInitializationException;
+import org.digidoc4j.utils.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,7 +99,21 @@ public class TslLoader implements Serializable {
 
   private DataLoader createDataLoader() {
     if (Protocol.isHttpUrl(tslLocation)) {
-      FileCacheDataLoader dataLoader = new FileCacheDataLoader();
+      FileCacheDataLoader dataLoader = new FileCacheDataLoader() {
+        @Override
+        protected HttpClient getHttpClient(String url) {
+          return HttpTransport.getInstance().getHttpClient();
+        }
+
+        @Override
+        protected HttpResponse getHttpResponse(HttpUriRequest httpRequest, String url) {
+          if (httpRequest instanceof HttpRequestBase) {
+            ((HttpRequestBase) httpRequest).setConfig(
+                HttpTransport.createRequestConfig(getTimeoutConnection(), getTimeoutSocket()));
+          }
+          return super.getHttpResponse(httpRequest, url);
+        }
+      };
       if(connectionTimeout != null) {
         dataLoader.setTimeoutConnection(connectionTimeout);
       }
@@ -109,6 +109,12 @@ public class DDocContainer implements Container {
     jDigiDocFacade.extendTo(profile);
   }
 
+  @Override
+  public void extendSignature(Signature signature, SignatureProfile profile) {
+    DDocSignature dDocSignature = (DDocSignature) signature;
+    jDigiDocFacade.extendSignature(dDocSignature.getIndexInArray(), profile);
+  }
+
   @Override
   public File saveAsFile(String fileName) {
     jDigiDocFacade.save(fileName);
@@ -127,6 +133,11 @@ public class DDocContainer implements Container {
     return jDigiDocFacade.validate();
   }
 
+  @Override
+  public void close() {
+    jDigiDocFacade.close();
+  }
+
   /**
    * Prepare signature.
    * After preparing the signature the container will have to be signed as well
@@ -85,6 +85,15 @@ public class DDocFacade implements SignatureFinalizer, Serializable {
     this.ddoc = ddoc;
   }
 
+  /**
+   * DDoc data files are kept in the JDigiDoc document and the container holds no spool files. Temporary files
+   * JDigiDoc creates in the spool directory are managed by JDigiDoc, they are not counted in the spool quota and are
+   * not deleted when the container is closed.
+   */
+  public void close() {
+    logger.debug("Closing container");
+  }
+
   public SignedInfo prepareSigning(X509Certificate signerCert) {
     logger.info("Preparing signing");
 
@@ -424,12 +433,16 @@ public class DDocFacade implements SignatureFinalizer, Serializable {
   private void addConfirmation() {
     logger.debug("");
     for (Object signature : ddoc.getSignatures()) {
-      try {
-        ((ee.sk.digidoc.Signature) signature).getConfirmation();
-      } catch (DigiDocException e) {
-        logger.error(e.getMessage());
-        throw new DigiDoc4JException(e.getNestedException());
-      }
+      addConfirmation((ee.sk.digidoc.Signature) signature);
+    }
+  }
+
+  private void addConfirmation(ee.sk.digidoc.Signature signature) {
+    try {
+      signature.getConfirmation();
+    } catch (DigiDocException e) {
+      logger.error(e.getMessage());
+      throw new DigiDoc4JException(e.getNestedException());
     }
   }
 
@@ -449,6 +462,22 @@ public class DDocFacade implements SignatureFinalizer, Serializable {
     addConfirmation();
   }
 
+  /**
+   * Extends the profile of one signature
+   *
+   * @param index   index of the signature
+   * @param profile signature profile
+   */
+  public void extendSignature(int index, SignatureProfile profile) {
+    logger.info("Extending signature " + index + " profile to " + profile.name());
+    if (profile != SignatureProfile.LT_TM) {
+      String errorMessage = profile + " profile is not supported for DDOC extension";
+      logger.error(errorMessage);
+      throw new NotSupportedException(errorMessage);
+    }
+    addConfirmation(ddoc.getSignature(index));
+  }
+
   public void setSignatureProfile(SignatureProfile profile) {
     logger.debug("Adding signature profile " + profile);
     if (profile != SignatureProfile.LT_TM && profile != SignatureProfile.B_BES) {
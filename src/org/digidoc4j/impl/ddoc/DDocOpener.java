@@ -18,6 +18,7 @@ import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.digidoc4j.Configuration;
 import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.utils.SpoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,9 +89,13 @@ public class DDocOpener implements Serializable {
 
   private DigiDocFactory createDigiDocFactory() {
     DigiDocFactory digFac = new SAXDigiDocFactory();
-    if(StringUtils.isNotBlank(temporaryDirectoryPath)) {
-      logger.debug("Using temporary directory " + temporaryDirectoryPath);
-      digFac.setTempDir(temporaryDirectoryPath);
+    String temporaryDirectory = temporaryDirectoryPath;
+    if (StringUtils.isBlank(temporaryDirectory)) {
+      temporaryDirectory = SpoolManager.getInstance().getDirectory();
+    }
+    if(StringUtils.isNotBlank(temporaryDirectory)) {
+      logger.debug("Using temporary directory " + temporaryDirectory);
+      digFac.setTempDir(temporaryDirectory);
     }
     return digFac;
   }
@@ -0,0 +1,64 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.DigestAlgorithm;
+
+/**
+ * Calculates the digests of several algorithms with one read of the stream.
+ */
+public final class DigestCalculator {
+  private static final Logger logger = LoggerFactory.getLogger(DigestCalculator.class);
+  private static final int BUFFER_SIZE = 8192;
+
+  private DigestCalculator() {
+  }
+
+  /**
+   * Reads the stream to the end and calculates the digests. The stream is not closed.
+   *
+   * @param stream           stream to digest
+   * @param digestAlgorithms algorithms of the digests
+   * @return digest values by algorithm
+   * @throws IOException on read error
+   */
+  public static Map<DigestAlgorithm, byte[]> digest(InputStream stream, Collection<DigestAlgorithm> digestAlgorithms)
+      throws IOException {
+    logger.debug("Calculating digests: " + digestAlgorithms);
+    Map<DigestAlgorithm, MessageDigest> messageDigests = new EnumMap<>(DigestAlgorithm.class);
+    for (DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+      messageDigests.put(digestAlgorithm, DSSUtils.getMessageDigest(digestAlgorithm));
+    }
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int count;
+    while ((count = stream.read(buffer)) != -1) {
+      for (MessageDigest messageDigest : messageDigests.values()) {
+        messageDigest.update(buffer, 0, count);
+      }
+    }
+    Map<DigestAlgorithm, byte[]> digests = new EnumMap<>(DigestAlgorithm.class);
+    for (Map.Entry<DigestAlgorithm, MessageDigest> messageDigest : messageDigests.entrySet()) {
+      digests.put(messageDigest.getKey(), messageDigest.getValue().digest());
+    }
+    return digests;
+  }
+}
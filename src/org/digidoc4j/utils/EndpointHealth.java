@@ -0,0 +1,312 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.digidoc4j.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DSSException;
+
+/**
+ * Health of the OCSP responders and timestamping services for the whole JVM.
+ * <p/>
+ * The latest {@value #SAMPLE_COUNT} response times of each endpoint are kept. Percentiles are not given before
+ * {@value #MINIMUM_SAMPLE_COUNT} responses have been received from the endpoint.
+ * <p/>
+ * With adaptive timeouts the read timeout of a request is {@value #TIMEOUT_FACTOR} times the 99th percentile of
+ * the response times of the endpoint, but never less than {@value #MINIMUM_TIMEOUT} ms nor more than the read
+ * timeout of the data loader.
+ * <p/>
+ * When the circuit breaker is enabled and an endpoint has failed the given number of times in a row, the circuit of
+ * the endpoint is opened and requests to it fail immediately. After the open time one request is let through: the
+ * circuit is closed when it succeeds and opened again when it fails.
+ *
+ * @see Configuration#setAdaptiveTimeouts(boolean)
+ * @see Configuration#setCircuitBreakerFailureThreshold(int)
+ * @see Configuration#setCircuitBreakerOpenTimeInSeconds(long)
+ */
+public final class EndpointHealth {
+  static final int SAMPLE_COUNT = 100;
+  static final int MINIMUM_SAMPLE_COUNT = 20;
+  static final int TIMEOUT_FACTOR = 2;
+  static final int MINIMUM_TIMEOUT = 1000;
+  private static final Logger logger = LoggerFactory.getLogger(EndpointHealth.class);
+  private static final EndpointHealth instance = new EndpointHealth();
+
+  private final Map<String, Endpoint> endpoints = new HashMap<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private boolean adaptiveTimeouts;
+  private int failureThreshold = Configuration.CIRCUIT_BREAKER_DISABLED;
+  private long openTimeInMillis = Configuration.DEFAULT_CIRCUIT_BREAKER_OPEN_TIME * 1000;
+
+  private EndpointHealth() {
+  }
+
+  public static EndpointHealth getInstance() {
+    return instance;
+  }
+
+  /**
+   * Listener of the circuit breaker state changes.
+   */
+  public interface Listener {
+
+    /**
+     * @param url endpoint whose requests fail immediately from now on
+     */
+    void circuitOpened(String url);
+
+    /**
+     * @param url endpoint whose requests are sent again
+     */
+    void circuitClosed(String url);
+  }
+
+  /**
+   * Applies the adaptive timeouts and circuit breaker settings given in the configuration. Settings that are not
+   * given are not changed.
+   *
+   * @param configuration configuration settings
+   * @see Configuration#configureSharedResources()
+   */
+  public void configure(Configuration configuration) {
+    if (configuration.hasSetting("ADAPTIVE_TIMEOUTS")) {
+      setAdaptiveTimeouts(configuration.isAdaptiveTimeouts());
+    }
+    if (configuration.hasSetting("CIRCUIT_BREAKER_FAILURE_THRESHOLD")) {
+      setFailureThreshold(configuration.getCircuitBreakerFailureThreshold());
+    }
+    if (configuration.hasSetting("CIRCUIT_BREAKER_OPEN_TIME")) {
+      setOpenTimeInSeconds(configuration.getCircuitBreakerOpenTimeInSeconds());
+    }
+  }
+
+  public synchronized void setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+    logger.debug("Adaptive timeouts: " + adaptiveTimeouts);
+    this.adaptiveTimeouts = adaptiveTimeouts;
+  }
+
+  public synchronized boolean isAdaptiveTimeouts() {
+    return adaptiveTimeouts;
+  }
+
+  /**
+   * @param failureThreshold consecutive failures opening the circuit or {@link Configuration#CIRCUIT_BREAKER_DISABLED}
+   */
+  public void setFailureThreshold(int failureThreshold) {
+    logger.debug("Circuit breaker failure threshold: " + failureThreshold);
+    List<String> closedUrls;
+    synchronized (this) {
+      this.failureThreshold = failureThreshold;
+      closedUrls = failureThreshold == Configuration.CIRCUIT_BREAKER_DISABLED ? closeAll() : null;
+    }
+    fireCircuitClosed(closedUrls);
+  }
+
+  public synchronized int getFailureThreshold() {
+    return failureThreshold;
+  }
+
+  /**
+   * @param openTimeInSeconds time in seconds requests to a failing endpoint fail immediately
+   */
+  public synchronized void setOpenTimeInSeconds(long openTimeInSeconds) {
+    logger.debug("Circuit breaker open time: " + openTimeInSeconds + " s");
+    openTimeInMillis = openTimeInSeconds * 1000;
+  }
+
+  public synchronized long getOpenTimeInSeconds() {
+    return openTimeInMillis / 1000;
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Must be called before sending a request to the endpoint and followed by
+   * {@link #recordSuccess(String, long)} or {@link #recordFailure(String)}.
+   *
+   * @param url endpoint location
+   * @throws DSSException when the circuit of the endpoint is open
+   */
+  public synchronized void beforeRequest(String url) {
+    Endpoint endpoint = getEndpoint(url);
+    if (endpoint.openedAt < 0) {
+      return;
+    }
+    if (endpoint.trialRequestSent || System.currentTimeMillis() - endpoint.openedAt < openTimeInMillis) {
+      logger.debug("Circuit of " + url + " is open, not sending the request");
+      throw new DSSException("Request to " + url + " was not sent, the service has failed " + endpoint.failures +
+          " times in a row");
+    }
+    logger.debug("Circuit of " + url + " is half-open, sending a trial request");
+    endpoint.trialRequestSent = true;
+  }
+
+  /**
+   * @param url endpoint location
+   * @return false when requests to the endpoint fail immediately
+   */
+  public synchronized boolean isAvailable(String url) {
+    Endpoint endpoint = endpoints.get(url);
+    return endpoint == null || endpoint.openedAt < 0 ||
+        !endpoint.trialRequestSent && System.currentTimeMillis() - endpoint.openedAt >= openTimeInMillis;
+  }
+
+  /**
+   * @param url                  endpoint location
+   * @param responseTimeInMillis time from sending the request to receiving the response
+   */
+  public void recordSuccess(String url, long responseTimeInMillis) {
+    boolean closed;
+    synchronized (this) {
+      Endpoint endpoint = getEndpoint(url);
+      endpoint.addResponseTime(responseTimeInMillis);
+      endpoint.failures = 0;
+      closed = endpoint.openedAt >= 0;
+      endpoint.close();
+    }
+    if (closed) {
+      fireCircuitClosed(Arrays.asList(url));
+    }
+  }
+
+  /**
+   * @param url endpoint location
+   */
+  public void recordFailure(String url) {
+    boolean opened = false;
+    synchronized (this) {
+      Endpoint endpoint = getEndpoint(url);
+      endpoint.failures++;
+      if (endpoint.trialRequestSent ||
+          failureThreshold != Configuration.CIRCUIT_BREAKER_DISABLED && endpoint.failures >= failureThreshold) {
+        opened = endpoint.openedAt < 0;
+        endpoint.openedAt = System.currentTimeMillis();
+        endpoint.trialRequestSent = false;
+      }
+    }
+    if (opened) {
+      logger.warn("Opening circuit of " + url + " after failed requests");
+      for (Listener listener : listeners) {
+        listener.circuitOpened(url);
+      }
+    }
+  }
+
+  /**
+   * @param url        endpoint location
+   * @param percentile percentile between 1 and 99
+   * @return response time in milliseconds or -1 if too few responses have been received
+   */
+  public synchronized long getPercentile(String url, int percentile) {
+    Endpoint endpoint = endpoints.get(url);
+    if (endpoint == null || endpoint.count < MINIMUM_SAMPLE_COUNT) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(endpoint.responseTimes, endpoint.count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+
+  /**
+   * @param url            endpoint location
+   * @param defaultTimeout configured read timeout in milliseconds
+   * @return read timeout in milliseconds for the next request to the endpoint
+   */
+  public synchronized int getTimeout(String url, int defaultTimeout) {
+    long p99 = adaptiveTimeouts ? getPercentile(url, 99) : -1;
+    if (p99 < 0) {
+      return defaultTimeout;
+    }
+    long timeout = Math.max(MINIMUM_TIMEOUT, p99 * TIMEOUT_FACTOR);
+    return defaultTimeout > 0 ? (int) Math.min(timeout, defaultTimeout) : (int) timeout;
+  }
+
+  /**
+   * Forgets the response times and closes all circuits.
+   */
+  public void clear() {
+    List<String> closedUrls;
+    synchronized (this) {
+      closedUrls = closeAll();
+      endpoints.clear();
+    }
+    fireCircuitClosed(closedUrls);
+  }
+
+  private List<String> closeAll() {
+    List<String> closedUrls = new ArrayList<>();
+    for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+      if (entry.getValue().openedAt >= 0) {
+        closedUrls.add(entry.getKey());
+      }
+      entry.getValue().failures = 0;
+      entry.getValue().close();
+    }
+    return closedUrls;
+  }
+
+  private void fireCircuitClosed(List<String> urls) {
+    if (urls == null) {
+      return;
+    }
+    for (String url : urls) {
+      logger.info("Closing circuit of " + url);
+      for (Listener listener : listeners) {
+        listener.circuitClosed(url);
+      }
+    }
+  }
+
+  private Endpoint getEndpoint(String url) {
+    Endpoint endpoint = endpoints.get(url);
+    if (endpoint == null) {
+      endpoint = new Endpoint();
+      endpoints.put(url, endpoint);
+    }
+    return endpoint;
+  }
+
+  private static final class Endpoint {
+    private final long[] responseTimes = new long[SAMPLE_COUNT];
+    private int count;
+    private int next;
+    private int failures;
+    private long openedAt = -1;
+    private boolean trialRequestSent;
+
+    void addResponseTime(long responseTime) {
+      responseTimes[next] = responseTime;
+      next = (next + 1) % SAMPLE_COUNT;
+      count = Math.min(count + 1, SAMPLE_COUNT);
+    }
+
+    void close() {
+      openedAt = -1;
+      trialRequestSent = false;
+    }
+  }
+}
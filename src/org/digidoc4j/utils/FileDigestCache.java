@@ -0,0 +1,232 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.digidoc4j.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.esig.dss.DigestAlgorithm;
+
+/**
+ * Least recently used cache of data file digests for the whole JVM, for files that are added to many containers.
+ * <p/>
+ * Entries are keyed by the file path, size, modification time and file key (inode where available), so a changed
+ * file is digested again. Digests of a file that changes while it is digested are not cached. The cache is disabled
+ * until a maximum size is set.
+ *
+ * @see Configuration#setFileDigestCacheSize(int)
+ */
+public final class FileDigestCache {
+  private static final Logger logger = LoggerFactory.getLogger(FileDigestCache.class);
+  private static final FileDigestCache instance = new FileDigestCache();
+
+  private final LinkedHashMap<Key, Map<DigestAlgorithm, byte[]>> entries =
+      new LinkedHashMap<Key, Map<DigestAlgorithm, byte[]>>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Map<DigestAlgorithm, byte[]>> eldest) {
+      if (size() > maximumSize) {
+        evictions++;
+        return true;
+      }
+      return false;
+    }
+  };
+  private int maximumSize = Configuration.FILE_DIGEST_CACHE_DISABLED;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  private FileDigestCache() {
+  }
+
+  public static FileDigestCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Applies the cache size given in the configuration, which can also disable the cache. Nothing is changed when
+   * the size is not given.
+   *
+   * @param configuration configuration settings
+   * @see Configuration#configureSharedResources()
+   */
+  public void configure(Configuration configuration) {
+    if (configuration.hasSetting("FILE_DIGEST_CACHE_SIZE")) {
+      setMaximumSize(configuration.getFileDigestCacheSize());
+    }
+  }
+
+  /**
+   * @param maximumSize maximum number of cached files or {@link Configuration#FILE_DIGEST_CACHE_DISABLED}
+   */
+  public synchronized void setMaximumSize(int maximumSize) {
+    logger.debug("File digest cache size: " + maximumSize);
+    this.maximumSize = maximumSize;
+    while (entries.size() > maximumSize) {
+      entries.remove(entries.keySet().iterator().next());
+      evictions++;
+    }
+  }
+
+  public synchronized int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public synchronized boolean isEnabled() {
+    return maximumSize > 0;
+  }
+
+  /**
+   * Creates the cache key of the file's current state.
+   *
+   * @param file data file
+   * @return cache key or null if the file attributes can not be read
+   */
+  public Key keyOf(File file) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      return new Key(file.getCanonicalPath(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+          attributes.fileKey());
+    } catch (IOException e) {
+      logger.warn("Can not read attributes of " + file + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Returns the cached digests of the requested algorithms. A lookup is a hit when all the requested digests
+   * are cached.
+   *
+   * @param key              cache key
+   * @param digestAlgorithms requested algorithms
+   * @return cached digests, possibly only some of the requested ones
+   */
+  public synchronized Map<DigestAlgorithm, byte[]> get(Key key, Set<DigestAlgorithm> digestAlgorithms) {
+    Map<DigestAlgorithm, byte[]> result = new EnumMap<>(DigestAlgorithm.class);
+    Map<DigestAlgorithm, byte[]> cachedDigests = entries.get(key);
+    if (cachedDigests != null) {
+      for (DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+        byte[] digest = cachedDigests.get(digestAlgorithm);
+        if (digest != null) {
+          result.put(digestAlgorithm, digest.clone());
+        }
+      }
+    }
+    if (result.size() == digestAlgorithms.size()) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return result;
+  }
+
+  /**
+   * Adds the digests of the file, unless the file has changed since the key was created, in which case the digests
+   * may have been calculated from the changed content.
+   *
+   * @param key     cache key created before the digests were calculated
+   * @param digests digests to add to the cached digests of the file
+   */
+  public void put(Key key, Map<DigestAlgorithm, byte[]> digests) {
+    if (!isEnabled() || digests.isEmpty()) {
+      return;
+    }
+    if (!key.equals(keyOf(new File(key.path)))) {
+      logger.debug("File " + key.path + " has changed, not caching its digests");
+      return;
+    }
+    synchronized (this) {
+      if (maximumSize <= 0) {
+        return;
+      }
+      Map<DigestAlgorithm, byte[]> cachedDigests = entries.get(key);
+      if (cachedDigests == null) {
+        cachedDigests = new EnumMap<>(DigestAlgorithm.class);
+        entries.put(key, cachedDigests);
+      }
+      for (Map.Entry<DigestAlgorithm, byte[]> digest : digests.entrySet()) {
+        cachedDigests.put(digest.getKey(), digest.getValue().clone());
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * @return share of the lookups that found all the requested digests, 0 if there have been no lookups
+   */
+  public synchronized double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * Identifies a state of a file.
+   */
+  public static final class Key {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final Object fileKey;
+
+    Key(String path, long size, long lastModified, Object fileKey) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.fileKey = fileKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return size == key.size && lastModified == key.lastModified && path.equals(key.path)
+          && (fileKey == null ? key.fileKey == null : fileKey.equals(key.fileKey));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = path.hashCode();
+      result = 31 * result + (int) (size ^ (size >>> 32));
+      result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+      return result;
+    }
+  }
+}
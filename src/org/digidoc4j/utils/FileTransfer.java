@@ -0,0 +1,116 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies file contents without reading them into memory. When both ends are files the contents are transferred
+ * by the file channels, otherwise they are copied through a fixed size buffer.
+ */
+public final class FileTransfer {
+  private static final Logger logger = LoggerFactory.getLogger(FileTransfer.class);
+  private static final int BUFFER_SIZE = 8192;
+
+  private FileTransfer() {
+  }
+
+  /**
+   * Copies a region of a file to the output stream. The output stream is not closed.
+   *
+   * @param source   file to copy from
+   * @param position position of the region in the file
+   * @param count    length of the region
+   * @param out      stream to copy to
+   * @throws IOException on read or write error
+   */
+  public static void copy(File source, long position, long count, OutputStream out) throws IOException {
+    logger.debug("Copying " + count + " bytes from " + source.getPath());
+    RandomAccessFile file = new RandomAccessFile(source, "r");
+    try {
+      if (out instanceof FileOutputStream) {
+        transfer(file.getChannel(), position, count, ((FileOutputStream) out).getChannel());
+      } else {
+        file.seek(position);
+        copy(file, count, out);
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Copies a file to the output stream. The output stream is not closed.
+   *
+   * @param source file to copy
+   * @param out    stream to copy to
+   * @throws IOException on read or write error
+   */
+  public static void copy(File source, OutputStream out) throws IOException {
+    copy(source, 0, source.length(), out);
+  }
+
+  /**
+   * Copies the input stream to the output stream. Streams are not closed.
+   *
+   * @param in  stream to copy from
+   * @param out stream to copy to
+   * @return number of bytes copied
+   * @throws IOException on read or write error
+   */
+  public static long copy(InputStream in, OutputStream out) throws IOException {
+    if (in instanceof FileInputStream && out instanceof FileOutputStream) {
+      FileChannel inChannel = ((FileInputStream) in).getChannel();
+      long position = inChannel.position();
+      long count = inChannel.size() - position;
+      transfer(inChannel, position, count, ((FileOutputStream) out).getChannel());
+      inChannel.position(position + count);
+      return count;
+    }
+    return IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+  }
+
+  private static void transfer(FileChannel source, long position, long count, FileChannel target) throws IOException {
+    long transferred = 0;
+    while (transferred < count) {
+      long result = source.transferTo(position + transferred, count - transferred, target);
+      if (result <= 0 && position + transferred >= source.size()) {
+        throw new EOFException("Unexpected end of file after " + transferred + " of " + count + " bytes");
+      }
+      transferred += result;
+    }
+  }
+
+  private static void copy(RandomAccessFile file, long count, OutputStream out) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long remaining = count;
+    while (remaining > 0) {
+      int result = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (result < 0) {
+        throw new EOFException("Unexpected end of file after " + (count - remaining) + " of " + count + " bytes");
+      }
+      out.write(buffer, 0, result);
+      remaining -= result;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.digidoc4j.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP client for the whole JVM, shared by the OCSP, timestamp and TSL data loaders.
+ * <p/>
+ * Connections are pooled and kept alive between requests, so consecutive requests to the OCSP responder and
+ * the timestamping service do not open a new TCP connection and TLS session each time. The client has no timeouts of
+ * its own, each request is sent with the timeouts of its data loader.
+ *
+ * @see Configuration#configureSharedResources()
+ * @see Configuration#setHttpConnectionsMaxTotal(int)
+ * @see Configuration#setHttpConnectionsMaxPerRoute(int)
+ */
+public final class HttpTransport {
+  private static final Logger logger = LoggerFactory.getLogger(HttpTransport.class);
+  private static final HttpTransport instance = new HttpTransport();
+
+  private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+  private final HttpClient httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+
+  private HttpTransport() {
+    connectionManager.setMaxTotal(Configuration.DEFAULT_HTTP_CONNECTIONS_MAX_TOTAL);
+    connectionManager.setDefaultMaxPerRoute(Configuration.DEFAULT_HTTP_CONNECTIONS_MAX_PER_ROUTE);
+  }
+
+  public static HttpTransport getInstance() {
+    return instance;
+  }
+
+  /**
+   * Applies the connection limits given in the configuration. Limits that are not given are not changed.
+   *
+   * @param configuration configuration settings
+   * @see Configuration#configureSharedResources()
+   */
+  public void configure(Configuration configuration) {
+    if (configuration.hasSetting("HTTP_CONNECTIONS_MAX_TOTAL")) {
+      setConnectionsMaxTotal(configuration.getHttpConnectionsMaxTotal());
+    }
+    if (configuration.hasSetting("HTTP_CONNECTIONS_MAX_PER_ROUTE")) {
+      setConnectionsMaxPerRoute(configuration.getHttpConnectionsMaxPerRoute());
+    }
+  }
+
+  /**
+   * @param connectionsMaxTotal maximum number of open connections
+   */
+  public void setConnectionsMaxTotal(int connectionsMaxTotal) {
+    logger.debug("HTTP connections max total: " + connectionsMaxTotal);
+    connectionManager.setMaxTotal(connectionsMaxTotal);
+  }
+
+  public int getConnectionsMaxTotal() {
+    return connectionManager.getMaxTotal();
+  }
+
+  /**
+   * @param connectionsMaxPerRoute maximum number of open connections to one host
+   */
+  public void setConnectionsMaxPerRoute(int connectionsMaxPerRoute) {
+    logger.debug("HTTP connections max per route: " + connectionsMaxPerRoute);
+    connectionManager.setDefaultMaxPerRoute(connectionsMaxPerRoute);
+  }
+
+  public int getConnectionsMaxPerRoute() {
+    return connectionManager.getDefaultMaxPerRoute();
+  }
+
+  /**
+   * The returned client must not be closed. Responses must be consumed or requests released to return
+   * the connections to the pool. Requests should be sent with the settings of {@link #createRequestConfig(int, int)}.
+   *
+   * @return HTTP client using the pooled connections
+   */
+  public HttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  /**
+   * @param connectTimeout connect timeout in milliseconds
+   * @param socketTimeout  read timeout in milliseconds
+   * @return request settings with the given timeouts
+   */
+  public static RequestConfig createRequestConfig(int connectTimeout, int socketTimeout) {
+    return RequestConfig.custom().
+        setConnectTimeout(connectTimeout).
+        setConnectionRequestTimeout(connectTimeout).
+        setSocketTimeout(socketTimeout).
+        build();
+  }
+}
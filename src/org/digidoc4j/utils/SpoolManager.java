@@ -0,0 +1,224 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.exceptions.SpoolQuotaExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the temporary files of streamed data files and containers for the whole JVM.
+ * <p/>
+ * Temporary files are created in the spool directory and their total size is limited by the spool quota.
+ * Each file is deleted when the last reference to it is released, usually when the data files and containers
+ * using it are closed.
+ *
+ * @see Configuration#setSpoolDirectory(String)
+ * @see Configuration#setSpoolQuotaInBytes(long)
+ */
+public final class SpoolManager {
+  private static final Logger logger = LoggerFactory.getLogger(SpoolManager.class);
+  private static final SpoolManager instance = new SpoolManager();
+
+  private final Set<SpoolFile> liveFiles = new HashSet<>();
+  private File directory;
+  private long quotaInBytes = Configuration.UNLIMITED_SPOOL_QUOTA;
+  private long liveBytes;
+  private long peakBytes;
+
+  private SpoolManager() {
+  }
+
+  public static SpoolManager getInstance() {
+    return instance;
+  }
+
+  /**
+   * Applies the spool directory and quota given in the configuration. Settings that are not given are not changed.
+   *
+   * @param configuration configuration settings
+   * @see Configuration#configureSharedResources()
+   */
+  public synchronized void configure(Configuration configuration) {
+    if (configuration.hasSetting("SPOOL_DIRECTORY")) {
+      setDirectory(configuration.getSpoolDirectory());
+    }
+    if (configuration.hasSetting("SPOOL_QUOTA")) {
+      setQuotaInBytes(configuration.getSpoolQuotaInBytes());
+    }
+  }
+
+  /**
+   * @param directory spool directory path or null to use the system temporary directory
+   */
+  public synchronized void setDirectory(String directory) {
+    logger.debug("Spool directory: " + directory);
+    this.directory = directory == null ? null : new File(directory);
+  }
+
+  /**
+   * @return spool directory path or null if the system temporary directory is used
+   */
+  public synchronized String getDirectory() {
+    return directory == null ? null : directory.getPath();
+  }
+
+  /**
+   * @param quotaInBytes maximum size of all the live spool files or {@link Configuration#UNLIMITED_SPOOL_QUOTA}
+   */
+  public synchronized void setQuotaInBytes(long quotaInBytes) {
+    logger.debug("Spool quota: " + quotaInBytes + " bytes");
+    this.quotaInBytes = quotaInBytes;
+  }
+
+  public synchronized long getQuotaInBytes() {
+    return quotaInBytes;
+  }
+
+  /**
+   * @return total size of the spool files not yet deleted
+   */
+  public synchronized long getLiveBytes() {
+    return liveBytes;
+  }
+
+  /**
+   * @return largest total size of the spool files since the JVM was started
+   */
+  public synchronized long getPeakBytes() {
+    return peakBytes;
+  }
+
+  /**
+   * @return number of the spool files not yet deleted
+   */
+  public synchronized int getLiveFileCount() {
+    return liveFiles.size();
+  }
+
+  /**
+   * Creates an empty spool file. The caller holds the only reference to the file.
+   *
+   * @return spool file
+   * @throws IOException if the file can not be created
+   */
+  public SpoolFile createFile() throws IOException {
+    File spoolDirectory;
+    synchronized (this) {
+      spoolDirectory = directory;
+    }
+    if (spoolDirectory != null && !spoolDirectory.isDirectory() && !spoolDirectory.mkdirs()) {
+      throw new IOException("Can not create spool directory " + spoolDirectory);
+    }
+    SpoolFile spoolFile = new SpoolFile(this, File.createTempFile("digidoc4j", ".tmp", spoolDirectory));
+    synchronized (this) {
+      liveFiles.add(spoolFile);
+    }
+    logger.debug("Created spool file " + spoolFile.getFile());
+    return spoolFile;
+  }
+
+  private synchronized void allocate(SpoolFile spoolFile, long count) {
+    if (quotaInBytes != Configuration.UNLIMITED_SPOOL_QUOTA && liveBytes + count > quotaInBytes) {
+      String errorMessage = "Spool quota of " + quotaInBytes + " bytes exceeded";
+      logger.error(errorMessage);
+      throw new SpoolQuotaExceededException(errorMessage);
+    }
+    spoolFile.size += count;
+    liveBytes += count;
+    peakBytes = Math.max(peakBytes, liveBytes);
+  }
+
+  private synchronized void retain(SpoolFile spoolFile) {
+    if (spoolFile.references == 0) {
+      throw new IllegalStateException("Spool file " + spoolFile.getFile() + " is already deleted");
+    }
+    spoolFile.references++;
+  }
+
+  private synchronized void release(SpoolFile spoolFile) {
+    if (spoolFile.references == 0) {
+      return;
+    }
+    spoolFile.references--;
+    if (spoolFile.references > 0) {
+      return;
+    }
+    liveFiles.remove(spoolFile);
+    liveBytes -= spoolFile.size;
+    File file = spoolFile.getFile();
+    if (file.delete() || !file.exists()) {
+      logger.debug("Deleted spool file " + file);
+    } else {
+      logger.warn("Failed to delete spool file " + file + ", deleting it on exit");
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Reference counted temporary file of the spool.
+   * <p/>
+   * A deserialized spool file refers to the same file but is not managed: releasing it does not delete the file.
+   */
+  public static final class SpoolFile implements Serializable {
+    private final File file;
+    private transient SpoolManager manager;
+    private transient int references;
+    private transient long size;
+
+    private SpoolFile(SpoolManager manager, File file) {
+      this.manager = manager;
+      this.file = file;
+      this.references = 1;
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Reserves space from the spool quota before writing to the file.
+     *
+     * @param count number of bytes to be written
+     * @throws SpoolQuotaExceededException if the quota would be exceeded
+     */
+    public void allocate(long count) {
+      if (manager != null) {
+        manager.allocate(this, count);
+      }
+    }
+
+    /**
+     * Adds a reference to the file.
+     */
+    public void retain() {
+      if (manager != null) {
+        manager.retain(this);
+      }
+    }
+
+    /**
+     * Removes a reference to the file. The file is deleted when no references are left.
+     */
+    public void release() {
+      if (manager != null) {
+        manager.release(this);
+      }
+    }
+  }
+}
@@ -10,6 +10,7 @@
 
 package eu.europa.ec.markt.dss.signature;
 
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.digidoc4j.DataFile;
 import org.digidoc4j.utils.Helper;
@@ -24,6 +25,7 @@ import java.nio.file.Paths;
 import static org.junit.Assert.*;
 
 import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSUtils;
 import eu.europa.esig.dss.DigestAlgorithm;
 import eu.europa.esig.dss.MimeType;
 
@@ -109,6 +111,37 @@ public class StreamDocumentTest {
     assertEquals("VZrq0IJk1XldOQlxjN0Fq9SVcuhP5VWQ7vMaiKCP3/0=", document.getDigest(DigestAlgorithm.SHA256));
   }
 
+  @Test
+  public void getDigestCalculatedWhileReadingStream_shouldNotReadTemporaryFile() throws Exception {
+    StreamDocument mockDocument = new MockStreamDocument(DigestAlgorithm.SHA256);
+    assertEquals("VZrq0IJk1XldOQlxjN0Fq9SVcuhP5VWQ7vMaiKCP3/0=", mockDocument.getDigest(DigestAlgorithm.SHA256));
+  }
+
+  @Test(expected = DSSException.class)
+  public void getDigest_shouldNotBeCalculatedWhileReadingStreamByDefault() throws Exception {
+    StreamDocument mockDocument = new MockStreamDocument();
+    mockDocument.getDigest(DigestAlgorithm.SHA256);
+  }
+
+  @Test
+  public void getDigestsOfSeveralAlgorithmsCalculatedWhileReadingStream() throws Exception {
+    byte[] content = new byte[]{0x041};
+    StreamDocument streamDocument = new StreamDocument(new ByteArrayInputStream(content), "suur_a.txt", MimeType.TEXT,
+        DigestAlgorithm.SHA256, DigestAlgorithm.SHA384, DigestAlgorithm.SHA512);
+    Files.delete(Paths.get(streamDocument.getAbsolutePath()));
+
+    assertEquals(Base64.encodeBase64String(DSSUtils.digest(DigestAlgorithm.SHA384, content)),
+        streamDocument.getDigest(DigestAlgorithm.SHA384));
+    assertEquals(Base64.encodeBase64String(DSSUtils.digest(DigestAlgorithm.SHA512, content)),
+        streamDocument.getDigest(DigestAlgorithm.SHA512));
+  }
+
+  @Test
+  public void getDigestOfOtherAlgorithm_shouldBeCalculatedFromTemporaryFile() throws Exception {
+    assertEquals(Base64.encodeBase64String(DSSUtils.digest(DigestAlgorithm.SHA1, new byte[]{0x041})),
+        document.getDigest(DigestAlgorithm.SHA1));
+  }
+
   @Test(expected = DSSException.class)
   public void saveWhenNoAccessRights() throws Exception {
     document.save("/bin/no_access.txt");
@@ -149,8 +182,8 @@ public class StreamDocumentTest {
   }
 
   private class MockStreamDocument extends StreamDocument {
-    public MockStreamDocument() {
-      super(new ByteArrayInputStream(new byte[]{0x041}), "fileName.txt", MimeType.TEXT);
+    public MockStreamDocument(DigestAlgorithm... digestAlgorithms) {
+      super(new ByteArrayInputStream(new byte[]{0x041}), "fileName.txt", MimeType.TEXT, digestAlgorithms);
     }
 
     @Override
@@ -0,0 +1,76 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package eu.europa.ec.markt.dss.validation102853.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.operator.ContentSigner;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OcspRequestorKeyTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    OcspRequestorKey.clear();
+  }
+
+  @Test
+  public void loadingSameFile_shouldReturnLoadedKey() throws Exception {
+    OcspRequestorKey key = OcspRequestorKey.load("testFiles/signout.p12", "test".toCharArray());
+    assertSame(key, OcspRequestorKey.load("testFiles/signout.p12", "test".toCharArray()));
+    assertEquals(1, key.getCertificateChain().length);
+    assertEquals(key.getCertificateChain()[0].getSubject(), key.getRequestorName().getName());
+  }
+
+  @Test
+  public void changedFile_shouldBeLoadedAgain() throws Exception {
+    File file = testFolder.newFile("ocsp.p12");
+    FileUtils.copyFile(new File("testFiles/signout.p12"), file);
+    OcspRequestorKey key = OcspRequestorKey.load(file.getPath(), "test".toCharArray());
+    assertTrue(file.setLastModified(file.lastModified() - 60000));
+    assertNotSame(key, OcspRequestorKey.load(file.getPath(), "test".toCharArray()));
+  }
+
+  @Test
+  public void leastRecentlyUsedKey_shouldBeForgotten() throws Exception {
+    OcspRequestorKey firstKey = OcspRequestorKey.load("testFiles/signout.p12", "test".toCharArray());
+    for (int i = 0; i < OcspRequestorKey.MAXIMUM_LOADED_KEYS; i++) {
+      File file = testFolder.newFile("ocsp" + i + ".p12");
+      FileUtils.copyFile(new File("testFiles/signout.p12"), file);
+      OcspRequestorKey.load(file.getPath(), "test".toCharArray());
+    }
+    assertNotSame(firstKey, OcspRequestorKey.load("testFiles/signout.p12", "test".toCharArray()));
+  }
+
+  @Test
+  public void contentSigners_shouldBeCreatedForEachRequest() throws Exception {
+    OcspRequestorKey key = OcspRequestorKey.load("testFiles/signout.p12", "test".toCharArray());
+    ContentSigner contentSigner = key.createContentSigner();
+    assertNotSame(contentSigner, key.createContentSigner());
+    OutputStream out = contentSigner.getOutputStream();
+    out.write(new byte[]{1, 2, 3});
+    out.close();
+    assertTrue(contentSigner.getSignature().length > 0);
+  }
+}
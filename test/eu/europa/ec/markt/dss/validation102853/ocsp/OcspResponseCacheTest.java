@@ -0,0 +1,87 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package eu.europa.ec.markt.dss.validation102853.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.digidoc4j.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OcspResponseCacheTest {
+
+  private static final String OCSP_URL = "http://demo.sk.ee/ocsp";
+  private final OcspResponseCache cache = OcspResponseCache.getInstance();
+  private CertificateID certificateId;
+  private BasicOCSPResp response;
+  private Date producedAt = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+  @Before
+  public void setUp() throws Exception {
+    cache.setMaxAgeInSeconds(60);
+    cache.clear();
+    OcspRequestorKey key = OcspRequestorKey.load("testFiles/signout.p12", "test".toCharArray());
+    X509CertificateHolder certificate = key.getCertificateChain()[0];
+    certificateId = new CertificateID(new BcDigestCalculatorProvider().get(CertificateID.HASH_SHA1), certificate,
+        BigInteger.ONE);
+    BasicOCSPRespBuilder responseBuilder = new BasicOCSPRespBuilder(new RespID(certificate.getSubject()));
+    responseBuilder.addResponse(certificateId, CertificateStatus.GOOD);
+    response = responseBuilder.build(key.createContentSigner(), key.getCertificateChain(), producedAt);
+  }
+
+  @After
+  public void disableCache() {
+    cache.setMaxAgeInSeconds(Configuration.OCSP_RESPONSE_CACHE_DISABLED);
+    OcspRequestorKey.clear();
+  }
+
+  @Test
+  public void responseProducedAfterTimestamp_shouldBeReused() throws Exception {
+    cache.put(OCSP_URL, certificateId, response, response.getResponses()[0]);
+    OcspResponseCache.CachedResponse entry = cache.get(OCSP_URL, certificateId, new Date(producedAt.getTime() - 1000));
+    assertSame(response, entry.getResponse());
+    assertSame(response, cache.get(OCSP_URL, certificateId, producedAt).getResponse());
+  }
+
+  @Test
+  public void responseProducedBeforeTimestamp_shouldNotBeReused() throws Exception {
+    cache.put(OCSP_URL, certificateId, response, response.getResponses()[0]);
+    long misses = cache.getMissCount();
+    assertNull(cache.get(OCSP_URL, certificateId, new Date(producedAt.getTime() + 1000)));
+    assertEquals(misses + 1, cache.getMissCount());
+  }
+
+  @Test
+  public void responsesOfOtherResponder_shouldNotBeReused() throws Exception {
+    cache.put(OCSP_URL, certificateId, response, response.getResponses()[0]);
+    assertNull(cache.get("http://ocsp.sk.ee/", certificateId, producedAt));
+  }
+
+  @Test
+  public void disabledCache_shouldNotStoreResponses() throws Exception {
+    cache.setMaxAgeInSeconds(Configuration.OCSP_RESPONSE_CACHE_DISABLED);
+    cache.put(OCSP_URL, certificateId, response, response.getResponses()[0]);
+    assertEquals(0, cache.size());
+  }
+}
@@ -1,19 +1,32 @@
 package eu.europa.ec.markt.dss.validation102853.ocsp;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
 import org.digidoc4j.Configuration;
 import org.digidoc4j.utils.CertificatesForTests;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DSSUtils;
 import eu.europa.esig.dss.client.http.DataLoader;
 import eu.europa.esig.dss.x509.CertificateToken;
 import eu.europa.esig.dss.x509.OCSPToken;
@@ -42,6 +55,48 @@ public class SKOnlineOCSPSourceTest {
     assertNull(ocspToken);
   }
 
+  @Test
+  public void gettingOCSPToken_shouldTryNextResponder_whenResponderFails() throws Exception {
+    SKOnlineOCSPSource ocspSource = createRoutedOcspSource();
+    List<String> ocspUris = ocspSource.getAccessLocations(issuerCertificate.getCertificate());
+    assertEquals(2, ocspUris.size());
+    mockDataLoader();
+    when(dataLoader.post(eq(ocspUris.get(0)), any(byte[].class))).thenThrow(new DSSException("Connection refused"));
+    try {
+      ocspSource.getOCSPToken(new CertificateToken(CertificatesForTests.SIGN_CERT), issuerCertificate);
+      fail("No responder gave a response");
+    } catch (DSSException expected) {
+      assertEquals("Connection refused", expected.getMessage());
+    }
+    InOrder requests = inOrder(dataLoader);
+    requests.verify(dataLoader).post(eq(ocspUris.get(0)), any(byte[].class));
+    requests.verify(dataLoader).post(eq(ocspUris.get(1)), any(byte[].class));
+  }
+
+  @Test
+  public void gettingOCSPToken_shouldTryNextResponder_whenResponseIsEmpty() throws Exception {
+    SKOnlineOCSPSource ocspSource = createRoutedOcspSource();
+    mockDataLoader();
+    CertificateToken certificateToken = new CertificateToken(CertificatesForTests.SIGN_CERT);
+    assertNull(ocspSource.getOCSPToken(certificateToken, issuerCertificate));
+    verify(dataLoader, times(2)).post(anyString(), any(byte[].class));
+  }
+
+  private SKOnlineOCSPSource createRoutedOcspSource() throws Exception {
+    configuration.setRouteOcspByIssuer(true);
+    configuration.setOcspSource("http://ocsp.example.com");
+    when(issuerCertificate.getCertificate()).thenReturn(loadTestCertificate("certs/TEST ESTEID-SK 2011.crt"));
+    SKOnlineOCSPSource ocspSource = new BDocTSOcspSource(configuration);
+    ocspSource.setDataLoader(dataLoader);
+    return ocspSource;
+  }
+
+  private X509Certificate loadTestCertificate(String path) throws Exception {
+    try (InputStream stream = getClass().getClassLoader().getResourceAsStream(path)) {
+      return DSSUtils.loadCertificate(stream).getCertificate();
+    }
+  }
+
   private void mockDataLoader() {
     byte[] emptyOcspResponse = {48, 3, 10, 1, 6};
     when(dataLoader.post(anyString(), any(byte[].class))).thenReturn(emptyOcspResponse);
@@ -32,6 +32,7 @@ import java.nio.file.attribute.FileTime;
 import java.security.KeyStore;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -892,6 +893,159 @@ public class ConfigurationTest {
     assertEquals(1337, configuration.getRevocationAndTimestampDeltaInMinutes());
   }
 
+  @Test
+  public void validateContainerOnOpen_shouldBeEnabledByDefault() throws Exception {
+    assertTrue(configuration.isValidateContainerOnOpen());
+  }
+
+  @Test
+  public void disableValidateContainerOnOpenFromCode() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    assertFalse(configuration.isValidateContainerOnOpen());
+  }
+
+  @Test
+  public void loadValidateContainerOnOpenFromConfFile() throws Exception {
+    File confFile = createConfFileWithParameter("VALIDATE_CONTAINER_ON_OPEN: false");
+    configuration.loadConfiguration(confFile.getPath());
+    assertFalse(configuration.isValidateContainerOnOpen());
+  }
+
+  @Test
+  public void memoryMappedContainers_shouldBeDisabledByDefault() throws Exception {
+    assertFalse(configuration.isMemoryMappedContainersEnabled());
+  }
+
+  @Test
+  public void loadMemoryMappedContainersFromConfFile() throws Exception {
+    File confFile = createConfFileWithParameter("MEMORY_MAPPED_CONTAINERS: true");
+    configuration.loadConfiguration(confFile.getPath());
+    assertTrue(configuration.isMemoryMappedContainersEnabled());
+  }
+
+  @Test
+  public void lazyDataFiles_shouldBeDisabledByDefault() throws Exception {
+    assertFalse(configuration.isLazyDataFilesEnabled());
+  }
+
+  @Test
+  public void loadLazyDataFilesFromConfFile() throws Exception {
+    File confFile = createConfFileWithParameter("LAZY_DATA_FILES: true");
+    configuration.loadConfiguration(confFile.getPath());
+    assertTrue(configuration.isLazyDataFilesEnabled());
+  }
+
+  @Test
+  public void containerSpillToDiskThreshold_shouldBeDisabledByDefault() throws Exception {
+    assertEquals(Configuration.SPILL_TO_DISK_DISABLED, configuration.getContainerSpillToDiskThresholdInBytes());
+  }
+
+  @Test
+  public void setContainerSpillToDiskThresholdFromCode() throws Exception {
+    configuration.setContainerSpillToDiskThresholdInBytes(65536);
+    assertEquals(65536, configuration.getContainerSpillToDiskThresholdInBytes());
+  }
+
+  @Test
+  public void loadContainerSpillToDiskThresholdFromConfFile() throws Exception {
+    File confFile = createConfFileWithParameter("CONTAINER_SPILL_TO_DISK_THRESHOLD: 1048576");
+    configuration.loadConfiguration(confFile.getPath());
+    assertEquals(1048576, configuration.getContainerSpillToDiskThresholdInBytes());
+  }
+
+  @Test
+  public void spoolQuota_shouldBeUnlimitedByDefault() throws Exception {
+    assertNull(configuration.getSpoolDirectory());
+    assertEquals(Configuration.UNLIMITED_SPOOL_QUOTA, configuration.getSpoolQuotaInBytes());
+  }
+
+  @Test
+  public void loadSpoolSettingsFromConfFile() throws Exception {
+    File confFile = createConfFileWithParameter("SPOOL_DIRECTORY: /dev/shm/digidoc4j\nSPOOL_QUOTA: 1073741824");
+    configuration.loadConfiguration(confFile.getPath());
+    assertEquals("/dev/shm/digidoc4j", configuration.getSpoolDirectory());
+    assertEquals(1073741824, configuration.getSpoolQuotaInBytes());
+  }
+
+  @Test
+  public void loadFileDigestCacheSizeFromConfFile() throws Exception {
+    assertEquals(Configuration.FILE_DIGEST_CACHE_DISABLED, configuration.getFileDigestCacheSize());
+    File confFile = createConfFileWithParameter("FILE_DIGEST_CACHE_SIZE: 500");
+    configuration.loadConfiguration(confFile.getPath());
+    assertEquals(500, configuration.getFileDigestCacheSize());
+  }
+
+  @Test
+  public void loadHttpConnectionLimitsFromConfFile() throws Exception {
+    assertEquals(Configuration.DEFAULT_HTTP_CONNECTIONS_MAX_TOTAL, configuration.getHttpConnectionsMaxTotal());
+    assertEquals(Configuration.DEFAULT_HTTP_CONNECTIONS_MAX_PER_ROUTE, configuration.getHttpConnectionsMaxPerRoute());
+    File confFile = createConfFileWithParameter("HTTP_CONNECTIONS_MAX_TOTAL: 100\nHTTP_CONNECTIONS_MAX_PER_ROUTE: 40");
+    configuration.loadConfiguration(confFile.getPath());
+    assertEquals(100, configuration.getHttpConnectionsMaxTotal());
+    assertEquals(40, configuration.getHttpConnectionsMaxPerRoute());
+  }
+
+  @Test
+  public void loadOcspResponseCacheMaxAgeFromConfFile() throws Exception {
+    assertEquals(Configuration.OCSP_RESPONSE_CACHE_DISABLED, configuration.getOcspResponseCacheMaxAgeInSeconds());
+    File confFile = createConfFileWithParameter("OCSP_RESPONSE_CACHE_MAX_AGE: 60");
+    configuration.loadConfiguration(confFile.getPath());
+    assertEquals(60, configuration.getOcspResponseCacheMaxAgeInSeconds());
+  }
+
+  @Test
+  public void getOcspResponderUrlsOfIssuer() throws Exception {
+    configuration.loadConfiguration("testFiles/digidoc_test_conf.yaml");
+    assertEquals(Arrays.asList("http://demo.sk.ee/ocsp"), configuration.getOcspResponderUrls("TEST of ESTEID-SK 2011"));
+    assertEquals(Arrays.asList("http://ocsp.sk.ee"), configuration.getOcspResponderUrls("ESTEID-SK"));
+    assertTrue(configuration.getOcspResponderUrls("Unknown CA").isEmpty());
+  }
+
+  @Test
+  public void loadOcspRoutingAndHedgingFromConfFile() throws Exception {
+    assertFalse(configuration.isRouteOcspByIssuer());
+    assertEquals(Configuration.OCSP_HEDGING_DISABLED, configuration.getOcspHedgingPercentile());
+    File confFile = createConfFileWithParameter("ROUTE_OCSP_BY_ISSUER: true\n" +
+        "OCSP_HEDGING_PERCENTILE: 95");
+    configuration.loadConfiguration(confFile.getPath());
+    assertTrue(configuration.isRouteOcspByIssuer());
+    assertEquals(95, configuration.getOcspHedgingPercentile());
+  }
+
+  @Test
+  public void loadCircuitBreakerSettingsFromConfFile() throws Exception {
+    assertFalse(configuration.isAdaptiveTimeouts());
+    assertEquals(Configuration.CIRCUIT_BREAKER_DISABLED, configuration.getCircuitBreakerFailureThreshold());
+    assertEquals(Configuration.DEFAULT_CIRCUIT_BREAKER_OPEN_TIME, configuration.getCircuitBreakerOpenTimeInSeconds());
+    File confFile = createConfFileWithParameter("ADAPTIVE_TIMEOUTS: true\n" +
+        "CIRCUIT_BREAKER_FAILURE_THRESHOLD: 5\n" +
+        "CIRCUIT_BREAKER_OPEN_TIME: 60");
+    configuration.loadConfiguration(confFile.getPath());
+    assertTrue(configuration.isAdaptiveTimeouts());
+    assertEquals(5, configuration.getCircuitBreakerFailureThreshold());
+    assertEquals(60, configuration.getCircuitBreakerOpenTimeInSeconds());
+  }
+
+  @Test
+  public void copiedConfiguration_shouldNotShareLoadedTSL() throws Exception {
+    TSLCertificateSource tsl = new TSLCertificateSource();
+    configuration.setTSL(tsl);
+    Configuration copy = configuration.copy();
+    assertNotSame(tsl, copy.getTSL());
+    assertSame(tsl, configuration.getTSL());
+  }
+
+  @Test
+  public void copiesOfBulkConfiguration_shouldShareLoadedTSL() throws Exception {
+    TSLCertificateSource tsl = new TSLCertificateSource();
+    configuration.setTSL(tsl);
+    configuration.shareTslWithCopies();
+    Configuration copy = configuration.copy();
+    assertSame(tsl, copy.getTSL());
+    assertSame(tsl, configuration.getTSL());
+    assertNotSame(tsl, copy.copy().getTSL());
+  }
+
   private File createConfFileWithParameter(String parameter) throws IOException {
     File confFile = testFolder.newFile();
     FileUtils.writeStringToFile(confFile, parameter);
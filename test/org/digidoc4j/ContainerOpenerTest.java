@@ -12,12 +12,23 @@ package org.digidoc4j;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
+import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.digidoc4j.impl.DigiDoc4JTestHelper;
+import org.digidoc4j.utils.SpoolManager;
 import org.junit.Test;
 
 public class ContainerOpenerTest extends DigiDoc4JTestHelper {
@@ -60,6 +71,150 @@ public class ContainerOpenerTest extends DigiDoc4JTestHelper {
     assertContainerOpened(container, "BDOC");
   }
 
+  @Test
+  public void openBDocContainerWithoutValidation() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    Container container = ContainerOpener.open(BDOC_TEST_FILE, configuration);
+    assertContainerOpened(container, "BDOC");
+    assertEquals("test.txt", container.getDataFiles().get(0).getName());
+    assertNotNull(container.getSignatures().get(0).getSigningCertificate());
+    assertEquals(SignatureProfile.B_BES, container.getSignatures().get(0).getProfile());
+  }
+
+  @Test
+  public void openBDocContainerAsStreamWithoutValidation() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    FileInputStream stream = FileUtils.openInputStream(new File(BDOC_TEST_FILE));
+    Container container = ContainerOpener.open(stream, configuration);
+    assertContainerOpened(container, "BDOC");
+  }
+
+  @Test
+  public void signatureOpenedWithoutValidation_shouldReportValidationErrors() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setValidationPolicy("conf/test_constraint.xml");
+    configuration.setTSL(new TSLCertificateSource());
+    Container container = ContainerOpener.open("testFiles/SP-03_bdoc21-bad-nonce-policy-oidasuri.bdoc", configuration);
+    List<String> errors = new ArrayList<>();
+    for (DigiDoc4JException error : container.getSignatures().get(0).validate()) {
+      errors.add(error.getMessage());
+    }
+    assertTrue(errors.contains("Wrong policy identifier qualifier: OIDAsURI"));
+  }
+
+  @Test
+  public void peekBDocContainer() throws Exception {
+    ContainerSummary summary = ContainerOpener.peek("testFiles/DigiDocService_spec_est.pdf-TM-j.bdoc");
+    assertEquals("BDOC", summary.getType());
+    assertEquals(2, summary.getDataFiles().size());
+    assertEquals("DigiDocService_spec_est.pdf", summary.getDataFiles().get(0).getName());
+    assertEquals(886554, summary.getDataFiles().get(0).getSize());
+    assertEquals("text/plain", summary.getDataFiles().get(0).getMediaType());
+    assertEquals("application/pdf", summary.getDataFiles().get(1).getMediaType());
+    assertEquals(1, summary.getSignatures().size());
+    ContainerSummary.SignatureSummary signature = summary.getSignatures().get(0);
+    assertNotNull(signature.getId());
+    assertNotNull(signature.getClaimedSigningTime());
+    assertTrue(signature.getSignerSubjectName().contains("CN="));
+    assertEquals(SignatureProfile.LT, signature.getProfile());
+  }
+
+  @Test
+  public void peekingLargeContainerStream_shouldDeleteTemporaryFile() throws Exception {
+    String path = "testFiles/22902_data_files_with_same_names.bdoc";
+    assertTrue(new File(path).length() > ContainerOpener.PEEK_IN_MEMORY_THRESHOLD);
+    int liveFileCount = SpoolManager.getInstance().getLiveFileCount();
+    FileInputStream stream = FileUtils.openInputStream(new File(path));
+    ContainerSummary summary = ContainerOpener.peek(stream);
+    assertEquals(ContainerOpener.peek(path).getDataFiles().size(), summary.getDataFiles().size());
+    assertEquals(liveFileCount, SpoolManager.getInstance().getLiveFileCount());
+  }
+
+  @Test
+  public void peekedSignatureProfiles_shouldMatchOpenedContainer() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    for (String path : Arrays.asList("testFiles/DigiDocService_spec_est.pdf-TM-j.bdoc", BDOC_TEST_FILE,
+        "testFiles/two_signatures.bdoc", "testFiles/ocsp_cert_is_not_in_tsl.bdoc")) {
+      List<Signature> signatures = ContainerOpener.open(path, configuration).getSignatures();
+      List<ContainerSummary.SignatureSummary> summaries = ContainerOpener.peek(path).getSignatures();
+      assertEquals(signatures.size(), summaries.size());
+      for (int i = 0; i < signatures.size(); i++) {
+        assertEquals(path, signatures.get(i).getProfile(), summaries.get(i).getProfile());
+      }
+    }
+  }
+
+  @Test
+  public void peekBDocContainer_shouldMatchOpenedContainer() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    Container container = ContainerOpener.open(BDOC_TEST_FILE, configuration);
+    ContainerSummary summary = ContainerOpener.peek(BDOC_TEST_FILE);
+    assertEquals(container.getDataFiles().size(), summary.getDataFiles().size());
+    assertEquals(container.getDataFiles().get(0).getName(), summary.getDataFiles().get(0).getName());
+    assertEquals(container.getDataFiles().get(0).getFileSize(), summary.getDataFiles().get(0).getSize());
+    assertEquals(container.getSignatures().size(), summary.getSignatures().size());
+    Signature signature = container.getSignatures().get(0);
+    assertEquals(signature.getId(), summary.getSignatures().get(0).getId());
+    assertEquals(signature.getClaimedSigningTime(), summary.getSignatures().get(0).getClaimedSigningTime());
+    assertEquals(signature.getSigningCertificate().getSubjectName(),
+        summary.getSignatures().get(0).getSignerSubjectName());
+  }
+
+  @Test
+  public void peekBDocContainerAsStream() throws Exception {
+    FileInputStream stream = FileUtils.openInputStream(new File(BDOC_TEST_FILE));
+    ContainerSummary summary = ContainerOpener.peek(stream);
+    assertEquals("BDOC", summary.getType());
+    assertEquals("test.txt", summary.getDataFiles().get(0).getName());
+  }
+
+  @Test
+  public void peekDDocContainer() throws Exception {
+    ContainerSummary summary = ContainerOpener.peek(DDOC_TEST_FILE);
+    assertEquals("DDOC", summary.getType());
+    assertFalse(summary.getDataFiles().isEmpty());
+    assertFalse(summary.getSignatures().isEmpty());
+  }
+
+  @Test
+  public void openAllContainers() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    List<String> paths = Arrays.asList(BDOC_TEST_FILE, DDOC_TEST_FILE, "testFiles/two_signatures.bdoc",
+        "testFiles/not_existing.bdoc");
+    Iterator<BulkContainerOpener.Result> results = ContainerOpener.openAll(paths, configuration, 2);
+    Set<String> openedPaths = new HashSet<>();
+    while (results.hasNext()) {
+      BulkContainerOpener.Result result = results.next();
+      openedPaths.add(result.getPath());
+      if (result.getPath().equals("testFiles/not_existing.bdoc")) {
+        assertFalse(result.isOpened());
+        assertNotNull(result.getException());
+      } else {
+        assertTrue(result.isOpened());
+        assertFalse(result.getContainer().getDataFiles().isEmpty());
+      }
+    }
+    assertEquals(new HashSet<>(paths), openedPaths);
+  }
+
+  @Test
+  public void closingResults_shouldStopOpeningContainers() throws Exception {
+    configuration.setValidateContainerOnOpen(false);
+    List<String> paths = Collections.nCopies(10, BDOC_TEST_FILE);
+    BulkContainerOpener.Results results = ContainerOpener.openAll(paths, configuration, 1);
+    try {
+      assertTrue(results.next().isOpened());
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+        if (thread.getName().equals("container-opener")) {
+          assertTrue(thread.isDaemon());
+        }
+      }
+    } finally {
+      results.close();
+    }
+    assertFalse(results.hasNext());
+  }
+
   private void assertContainerOpened(Container container, String containerType) {
     assertEquals(containerType, container.getType());
     assertFalse(container.getDataFiles().isEmpty());
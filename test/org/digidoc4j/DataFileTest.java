@@ -11,6 +11,7 @@
 package org.digidoc4j;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.digidoc4j.exceptions.DigiDoc4JException;
 import org.junit.Before;
@@ -20,14 +21,17 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Map;
 
 import static org.digidoc4j.utils.Helper.deleteFile;
 import static org.junit.Assert.*;
 
 import eu.europa.esig.dss.InMemoryDocument;
+import eu.europa.esig.dss.MimeType;
 
 public class DataFileTest {
   private static DataFile dataFile;
@@ -98,6 +102,15 @@ public class DataFileTest {
     out.close();
   }
 
+  @Test
+  public void testSaveStreamDocumentToOutputStream() throws IOException {
+    DataFile streamDataFile = new DataFile(new ByteArrayInputStream("see on testfail".getBytes()), "test.txt", "text/plain");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    streamDataFile.saveAs(out);
+
+    assertEquals("see on testfail", out.toString());
+  }
+
   @Test(expected = DigiDoc4JException.class)
   public void incorrectMimeType() {
     dataFile = new DataFile("testFiles/test.txt", "incorrect");
@@ -171,7 +184,33 @@ public class DataFileTest {
   @Test
   public void testDigestIsCalculatedOnlyOnce() throws Exception {
     byte[] digest = dataFile.calculateDigest();
-    assertEquals(digest, dataFile.calculateDigest(new URL("http://NonExisting.test")));
+    assertSame(digest, dataFile.calculateDigest(DigestAlgorithm.SHA256));
+  }
+
+  @Test
+  public void testDigestsAreCachedPerAlgorithm() throws Exception {
+    assertEquals("RqDqtqi3rTsWj07rrWc5kATAZIw7T1XHP/NPLCF05RU=",
+        Base64.encodeBase64String(dataFile.calculateDigest(DigestAlgorithm.SHA256)));
+    assertEquals("OQj17m9Rt2vPXYrry+v/KHpf98Q=", Base64.encodeBase64String(dataFile.calculateDigest(DigestAlgorithm.SHA1)));
+  }
+
+  @Test
+  public void testCalculateSeveralDigestsWithOneRead() throws Exception {
+    byte[] content = FileUtils.readFileToByteArray(new File("testFiles/test.txt"));
+    StreamCountingDocument document = new StreamCountingDocument(content);
+    DataFile countingDataFile = new DataFile(document);
+
+    Map<DigestAlgorithm, byte[]> digests = countingDataFile.calculateDigests(DigestAlgorithm.SHA1,
+        DigestAlgorithm.SHA256, DigestAlgorithm.SHA512);
+
+    assertEquals(1, document.openedStreams);
+    assertEquals(3, digests.size());
+    assertEquals("OQj17m9Rt2vPXYrry+v/KHpf98Q=", Base64.encodeBase64String(digests.get(DigestAlgorithm.SHA1)));
+    assertEquals("RqDqtqi3rTsWj07rrWc5kATAZIw7T1XHP/NPLCF05RU=",
+        Base64.encodeBase64String(digests.get(DigestAlgorithm.SHA256)));
+    assertArrayEquals(DigestUtils.sha512(content), digests.get(DigestAlgorithm.SHA512));
+    assertSame(digests.get(DigestAlgorithm.SHA1), countingDataFile.calculateDigest(DigestAlgorithm.SHA1));
+    assertEquals(1, document.openedStreams);
   }
 
   private class MockDataFile extends DataFile {
@@ -180,4 +219,18 @@ public class DataFileTest {
       document = new InMemoryDocument(data, mimeType);
     }
   }
+
+  private static class StreamCountingDocument extends InMemoryDocument {
+    int openedStreams;
+
+    StreamCountingDocument(byte[] content) {
+      super(content, "test.txt", MimeType.TEXT);
+    }
+
+    @Override
+    public InputStream openStream() {
+      openedStreams++;
+      return super.openStream();
+    }
+  }
 }
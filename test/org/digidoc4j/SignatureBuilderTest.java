@@ -18,6 +18,9 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.security.cert.X509Certificate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.digidoc4j.exceptions.NotSupportedException;
 import org.digidoc4j.exceptions.SignatureTokenMissingException;
@@ -191,6 +194,22 @@ public class SignatureBuilderTest extends DigiDoc4JTestHelper {
     assertNotNull(signature);
   }
 
+  @Test
+  public void finalizeSignatureAsynchronously() throws Exception {
+    ContainerBuilder.setContainerImplementation("TEST-FORMAT", TestContainer.class);
+    SignatureBuilder.setSignatureBuilderForContainerType("TEST-FORMAT", TestSignatureBuilder.class);
+    Container container = TestDataBuilder.createContainerWithFile(testFolder, "TEST-FORMAT");
+    DataToSign dataToSign = TestDataBuilder.buildDataToSign(container);
+    byte[] signatureValue = TestSigningHelper.sign(dataToSign.getDigestToSign(), dataToSign.getDigestAlgorithm());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Signature> signature = dataToSign.finalizeAsync(signatureValue, executor);
+      assertNotNull(signature.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void invokeSigningForCustomContainer() throws Exception {
     ContainerBuilder.setContainerImplementation("TEST-FORMAT", TestContainer.class);
@@ -0,0 +1,293 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.exceptions.TechnicalException;
+import org.junit.Test;
+
+import eu.europa.esig.dss.DSSUtils;
+import eu.europa.esig.dss.DigestAlgorithm;
+
+public class AsicContainerIndexTest {
+
+  private static final String BDOC_TEST_FILE = "testFiles/asics_for_testing.bdoc";
+
+  @Test
+  public void indexContainsAllEntries() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    List<AsicContainerIndex.Entry> entries = index.getEntries();
+    assertEquals(3, entries.size());
+    assertEquals("mimetype", entries.get(0).getName());
+    assertEquals("META-INF/signatures.xml", entries.get(1).getName());
+    assertEquals("test.txt", entries.get(2).getName());
+    assertTrue(index.containsEntry("test.txt"));
+    assertNull(index.getEntry("missing.txt"));
+  }
+
+  @Test
+  public void entrySizesMatchZipFile() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    ZipFile zipFile = new ZipFile(BDOC_TEST_FILE);
+    try {
+      for (AsicContainerIndex.Entry entry : index.getEntries()) {
+        ZipEntry zipEntry = zipFile.getEntry(entry.getName());
+        assertEquals(zipEntry.getSize(), entry.getSize());
+        assertEquals(zipEntry.getCompressedSize(), entry.getCompressedSize());
+        assertEquals(zipEntry.getMethod(), entry.getMethod());
+        assertEquals(zipEntry.getCrc(), entry.getCrc());
+      }
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  @Test
+  public void readingEntries_shouldReturnSameContentAsZipFile() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile("testFiles/asics_testing_two_signatures.bdoc");
+    ZipFile zipFile = new ZipFile("testFiles/asics_testing_two_signatures.bdoc");
+    try {
+      for (AsicContainerIndex.Entry entry : index.getEntries()) {
+        InputStream stream = zipFile.getInputStream(zipFile.getEntry(entry.getName()));
+        assertArrayEquals(IOUtils.toByteArray(stream), index.readEntry(entry));
+        stream.close();
+      }
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  @Test
+  public void indexFromBytes_shouldMatchIndexFromFile() throws Exception {
+    AsicContainerIndex fileIndex = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    AsicContainerIndex bytesIndex = AsicContainerIndex.fromBytes(FileUtils.readFileToByteArray(new File(BDOC_TEST_FILE)));
+    assertEquals(fileIndex.getEntries().size(), bytesIndex.getEntries().size());
+    for (AsicContainerIndex.Entry entry : fileIndex.getEntries()) {
+      assertArrayEquals(fileIndex.readEntry(entry), bytesIndex.readEntry(bytesIndex.getEntry(entry.getName())));
+    }
+  }
+
+  @Test
+  public void mappedIndex_shouldMatchIndexFromFile() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    AsicContainerIndex fileIndex = AsicContainerIndex.fromFile(containerPath);
+    AsicContainerIndex mappedIndex = AsicContainerIndex.fromDocument(new MappedContainerDocument(containerPath));
+    assertEquals(fileIndex.getEntries().size(), mappedIndex.getEntries().size());
+    for (AsicContainerIndex.Entry entry : fileIndex.getEntries()) {
+      AsicContainerIndex.Entry mappedEntry = mappedIndex.getEntry(entry.getName());
+      assertArrayEquals(fileIndex.readEntry(entry), mappedIndex.readEntry(mappedEntry));
+      assertArrayEquals(fileIndex.digestEntry(entry, DigestAlgorithm.SHA256), mappedIndex.digestEntry(mappedEntry, DigestAlgorithm.SHA256));
+    }
+  }
+
+  @Test
+  public void digestingEntry_shouldMatchDigestOfContent() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    for (AsicContainerIndex.Entry entry : index.getEntries()) {
+      byte[] expectedDigest = DSSUtils.digest(DigestAlgorithm.SHA256, index.readEntry(entry));
+      assertArrayEquals(expectedDigest, index.digestEntry(entry, DigestAlgorithm.SHA256));
+    }
+  }
+
+  @Test
+  public void copyingEntries_shouldMatchReadEntries() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    AsicContainerIndex fileIndex = AsicContainerIndex.fromFile(containerPath);
+    AsicContainerIndex bytesIndex = AsicContainerIndex.fromBytes(FileUtils.readFileToByteArray(new File(containerPath)));
+    AsicContainerIndex mappedIndex = AsicContainerIndex.fromDocument(new MappedContainerDocument(containerPath));
+    for (AsicContainerIndex.Entry entry : fileIndex.getEntries()) {
+      byte[] expected = fileIndex.readEntry(entry);
+      assertArrayEquals(expected, copyEntry(fileIndex, entry));
+      assertArrayEquals(expected, copyEntry(bytesIndex, bytesIndex.getEntry(entry.getName())));
+      assertArrayEquals(expected, copyEntry(mappedIndex, mappedIndex.getEntry(entry.getName())));
+    }
+  }
+
+  @Test
+  public void copyingEntryToFile_shouldMatchReadEntry() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    AsicContainerIndex.Entry entry = index.getEntry("test.txt");
+    File file = File.createTempFile("digidoc4j", ".tmp");
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+        index.copyEntry(entry, out);
+      } finally {
+        out.close();
+      }
+      assertArrayEquals(index.readEntry(entry), FileUtils.readFileToByteArray(file));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void readingMimeType() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    String mimeType = new String(index.readEntry(index.getEntry("mimetype")));
+    assertEquals("application/vnd.etsi.asic-e+zip", mimeType.trim());
+    assertFalse(index.getEntry("mimetype").isDirectory());
+  }
+
+  @Test
+  public void appendingEntry_shouldKeepExistingEntriesUnchanged() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    byte[] container = FileUtils.readFileToByteArray(new File(containerPath));
+    AsicContainerIndex index = AsicContainerIndex.fromFile(containerPath);
+    byte[] content = "<signatures/>".getBytes("UTF-8");
+    AsicContainerIndex.NewEntry newEntry = AsicContainerIndex.deflateEntry("META-INF/signatures2.xml", content);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.writeWithAppendedEntry(newEntry, out);
+    byte[] appendedContainer = out.toByteArray();
+    assertEquals(index.getLengthWithAppendedEntry(newEntry), appendedContainer.length);
+
+    AsicContainerIndex appendedIndex = AsicContainerIndex.fromBytes(appendedContainer);
+    assertEquals(index.getEntries().size() + 1, appendedIndex.getEntries().size());
+    for (AsicContainerIndex.Entry entry : index.getEntries()) {
+      AsicContainerIndex.Entry appendedEntry = appendedIndex.getEntry(entry.getName());
+      assertEquals(entry.getLocalHeaderOffset(), appendedEntry.getLocalHeaderOffset());
+      assertEquals(entry.getCompressedSize(), appendedEntry.getCompressedSize());
+      assertArrayEquals(index.readEntry(entry), appendedIndex.readEntry(appendedEntry));
+    }
+    assertArrayEquals(content, appendedIndex.readEntry(appendedIndex.getEntry("META-INF/signatures2.xml")));
+    for (int i = 0; i < appendedIndex.getEntry("META-INF/signatures2.xml").getLocalHeaderOffset(); i++) {
+      assertEquals(container[i], appendedContainer[i]);
+    }
+  }
+
+  @Test
+  public void appendedContainer_shouldBeReadableAsZipFile() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    byte[] content = "<signatures/>".getBytes("UTF-8");
+    File appendedContainer = File.createTempFile("appended", ".bdoc");
+    appendedContainer.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(appendedContainer);
+    index.writeWithAppendedEntry(AsicContainerIndex.deflateEntry("META-INF/signatures1.xml", content), out);
+    out.close();
+
+    ZipFile zipFile = new ZipFile(appendedContainer);
+    try {
+      assertEquals(4, zipFile.size());
+      InputStream stream = zipFile.getInputStream(zipFile.getEntry("META-INF/signatures1.xml"));
+      assertArrayEquals(content, IOUtils.toByteArray(stream));
+      stream.close();
+      stream = zipFile.getInputStream(zipFile.getEntry("test.txt"));
+      assertArrayEquals(index.readEntry(index.getEntry("test.txt")), IOUtils.toByteArray(stream));
+      stream.close();
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  @Test
+  public void removingEntry_shouldKeepOtherEntriesReadable() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    AsicContainerIndex index = AsicContainerIndex.fromFile(containerPath);
+    AsicContainerIndex.Entry removedEntry = index.getEntry("META-INF/signatures0.xml");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.writeWithoutEntry(removedEntry, out);
+    byte[] container = out.toByteArray();
+    assertEquals(index.getLengthWithoutEntry(removedEntry), container.length);
+
+    File containerFile = File.createTempFile("removed", ".bdoc");
+    containerFile.deleteOnExit();
+    FileUtils.writeByteArrayToFile(containerFile, container);
+    ZipFile zipFile = new ZipFile(containerFile);
+    try {
+      assertEquals(index.getEntries().size() - 1, zipFile.size());
+      assertNull(zipFile.getEntry("META-INF/signatures0.xml"));
+      for (AsicContainerIndex.Entry entry : index.getEntries()) {
+        if (entry != removedEntry) {
+          InputStream stream = zipFile.getInputStream(zipFile.getEntry(entry.getName()));
+          assertArrayEquals(index.readEntry(entry), IOUtils.toByteArray(stream));
+          stream.close();
+        }
+      }
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  @Test
+  public void removingAppendedEntry_shouldRestoreOriginalContainer() throws Exception {
+    byte[] original = FileUtils.readFileToByteArray(new File(BDOC_TEST_FILE));
+    AsicContainerIndex index = AsicContainerIndex.fromBytes(original);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.writeWithAppendedEntry(AsicContainerIndex.deflateEntry("META-INF/signatures1.xml", new byte[]{1, 2, 3}), out);
+
+    AsicContainerIndex appendedIndex = AsicContainerIndex.fromBytes(out.toByteArray());
+    out = new ByteArrayOutputStream();
+    appendedIndex.writeWithoutEntry(appendedIndex.getEntry("META-INF/signatures1.xml"), out);
+    assertArrayEquals(original, out.toByteArray());
+  }
+
+  @Test
+  public void replacingEntries_shouldOnlyChangeReplacedEntries() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile("testFiles/asics_testing_two_signatures.bdoc");
+    List<AsicContainerIndex.Entry> replacedEntries = Arrays.asList(index.getEntry("META-INF/signatures0.xml"),
+        index.getEntry("META-INF/signatures1.xml"));
+    List<AsicContainerIndex.NewEntry> newEntries = Arrays.asList(
+        AsicContainerIndex.deflateEntry("META-INF/signatures0.xml", new byte[]{0}),
+        AsicContainerIndex.deflateEntry("META-INF/signatures1.xml", new byte[]{1}));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.writeWithChanges(replacedEntries, newEntries, out);
+    assertEquals(index.getLengthWithChanges(replacedEntries, newEntries), out.size());
+
+    AsicContainerIndex changedIndex = AsicContainerIndex.fromBytes(out.toByteArray());
+    assertEquals(index.getEntries().size(), changedIndex.getEntries().size());
+    assertArrayEquals(new byte[]{0}, changedIndex.readEntry(changedIndex.getEntry("META-INF/signatures0.xml")));
+    assertArrayEquals(new byte[]{1}, changedIndex.readEntry(changedIndex.getEntry("META-INF/signatures1.xml")));
+    for (AsicContainerIndex.Entry entry : index.getEntries()) {
+      if (!replacedEntries.contains(entry)) {
+        AsicContainerIndex.Entry changedEntry = changedIndex.getEntry(entry.getName());
+        assertEquals(entry.getCompressedSize(), changedEntry.getCompressedSize());
+        assertArrayEquals(index.readEntry(entry), changedIndex.readEntry(changedEntry));
+      }
+    }
+  }
+
+  @Test(expected = TechnicalException.class)
+  public void appendingExistingEntry_shouldThrowException() throws Exception {
+    AsicContainerIndex index = AsicContainerIndex.fromFile(BDOC_TEST_FILE);
+    AsicContainerIndex.NewEntry newEntry = AsicContainerIndex.deflateEntry("test.txt", new byte[]{1, 2, 3});
+    index.writeWithAppendedEntry(newEntry, new ByteArrayOutputStream());
+  }
+
+  @Test(expected = TechnicalException.class)
+  public void indexingNonZipFile_shouldThrowException() throws Exception {
+    AsicContainerIndex.fromFile("testFiles/test.txt");
+  }
+
+  private static byte[] copyEntry(AsicContainerIndex index, AsicContainerIndex.Entry entry) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.copyEntry(entry, out);
+    return out.toByteArray();
+  }
+}
@@ -13,16 +13,20 @@ package org.digidoc4j.impl.bdoc;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import org.digidoc4j.Configuration;
 import org.digidoc4j.exceptions.ContainerWithoutSignaturesException;
 import org.digidoc4j.exceptions.InvalidTimestampException;
+import org.digidoc4j.exceptions.SignatureNotFoundException;
 import org.digidoc4j.testutils.TestDataBuilder;
 import org.junit.Test;
 
 import eu.europa.esig.dss.DSSDocument;
 import eu.europa.esig.dss.DigestAlgorithm;
 import eu.europa.esig.dss.tsl.TrustedListsCertificateSource;
+import eu.europa.esig.dss.validation.report.Reports;
+import eu.europa.esig.dss.xades.validation.XAdESSignature;
 
 public class AsicContainerValidatorTest {
 
@@ -66,6 +70,39 @@ public class AsicContainerValidatorTest {
     assertEquals(result.getbDocValidationResult().getErrors().get(0).getMessage(), InvalidTimestampException.MESSAGE);
   }
 
+  @Test
+  public void validatingContainer_withExistingValidationReport_shouldReuseReport() throws Exception {
+    String containerPath = "testFiles/asics_with_one_signature.bdoc";
+    Reports validationReport = createAsicContainerValidator(containerPath).loadContainerDetails().getValidationReport();
+    AsicContainerValidator validator = createAsicContainerValidator(containerPath);
+    validator.setValidationReport(validationReport);
+    AsicContainerValidationResult result = validator.validate();
+    assertSame(validationReport, result.getValidationReport());
+    assertEquals(1, result.getSignatures().size());
+  }
+
+  @Test
+  public void findingSignatureWithoutValidation_shouldReturnSignatureFromExpectedFile() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    AsicContainerValidator validator = createAsicContainerValidatorWithoutTsl(containerPath);
+    XAdESSignature signature = validator.findXadesSignatureWithoutValidation("S1", "signatures1.xml");
+    assertEquals("S1", signature.getId());
+  }
+
+  @Test
+  public void findingSignatureWithoutValidation_withWrongFileName_shouldSearchOtherFiles() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    AsicContainerValidator validator = createAsicContainerValidatorWithoutTsl(containerPath);
+    XAdESSignature signature = validator.findXadesSignatureWithoutValidation("S0", "signatures1.xml");
+    assertEquals("S0", signature.getId());
+  }
+
+  @Test(expected = SignatureNotFoundException.class)
+  public void findingMissingSignatureWithoutValidation_shouldThrowException() throws Exception {
+    String containerPath = "testFiles/asics_testing_two_signatures.bdoc";
+    createAsicContainerValidatorWithoutTsl(containerPath).findXadesSignatureWithoutValidation("S5", null);
+  }
+
   private AsicContainerValidator createAsicContainerValidator(String containerPath) {
     Configuration configuration = new Configuration(Configuration.Mode.TEST);
     return createAsicContainerValidator(containerPath, configuration);
@@ -80,4 +117,12 @@ public class AsicContainerValidatorTest {
     commonCertificateVerifier.setTrustedCertSource(trustedCertSource);
     return new AsicContainerValidator(container, commonCertificateVerifier, configuration);
   }
+
+  private AsicContainerValidator createAsicContainerValidatorWithoutTsl(String containerPath) {
+    DSSDocument container = TestDataBuilder.createAsicContainer(containerPath);
+    SKCommonCertificateVerifier commonCertificateVerifier = new SKCommonCertificateVerifier();
+    commonCertificateVerifier.setCrlSource(null);
+    commonCertificateVerifier.setOcspSource(null);
+    return new AsicContainerValidator(container, commonCertificateVerifier, new Configuration(Configuration.Mode.TEST));
+  }
 }
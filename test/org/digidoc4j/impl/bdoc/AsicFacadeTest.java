@@ -11,6 +11,13 @@
 package org.digidoc4j.impl.bdoc;
 
 import org.apache.commons.io.IOUtils;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.digidoc4j.*;
@@ -33,17 +40,24 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.io.*;
+import java.math.BigInteger;
 import java.net.URI;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import static java.util.Arrays.asList;
@@ -65,10 +79,16 @@ import javax.xml.transform.stream.StreamResult;
 
 import eu.europa.esig.dss.DSSDocument;
 import eu.europa.esig.dss.DSSXMLUtils;
+import eu.europa.esig.dss.InMemoryDocument;
+import eu.europa.esig.dss.SignatureLevel;
 import eu.europa.esig.dss.XPathQueryHolder;
 import eu.europa.esig.dss.asic.ASiCSignatureParameters;
+import eu.europa.esig.dss.validation.AdvancedSignature;
+import eu.europa.esig.dss.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.validation.SignatureCryptographicVerification;
 import eu.europa.esig.dss.validation.policy.rules.MessageTag;
 import eu.europa.esig.dss.xades.validation.XAdESSignature;
+import eu.europa.esig.dss.xades.validation.XMLDocumentValidator;
 import prototype.samples.AsyncSigning;
 
 public class AsicFacadeTest extends DigiDoc4JTestHelper {
@@ -876,6 +896,188 @@ public class AsicFacadeTest extends DigiDoc4JTestHelper {
     assertNotNull(container.getSignature(1).getOCSPCertificate());
   }
 
+  @Test
+  public void extendSignatureWithMultipleSignatures_shouldExtendOnlyGivenSignature() throws Exception {
+    AsicFacade container = new AsicFacade();
+    container.addDataFile("testFiles/test.txt", "text/plain");
+    container.setSignatureProfile(B_BES);
+    container.sign(PKCS12_SIGNER);
+    container.sign(PKCS12_SIGNER);
+    container.save("testExtendTo.bdoc");
+
+    container = new AsicFacade("testExtendTo.bdoc");
+    container.extendSignature(container.getSignature(1), LT);
+    container.save("testExtendToContainsIt.bdoc");
+
+    container = new AsicFacade("testExtendToContainsIt.bdoc");
+    assertEquals(2, container.getSignatures().size());
+    assertNull(container.getSignature(0).getOCSPCertificate());
+    assertNotNull(container.getSignature(1).getOCSPCertificate());
+    assertEquals(B_BES, container.getSignature(0).getProfile());
+    assertEquals(LT, container.getSignature(1).getProfile());
+  }
+
+  @Test(expected = DigiDoc4JException.class)
+  public void extendSignatureToSameLevelThrowsException() throws Exception {
+    AsicFacade container = new AsicFacade("testFiles/asics_for_testing.bdoc");
+    container.extendSignature(container.getSignature(0), B_BES);
+  }
+
+  @Test(expected = DigiDoc4JException.class)
+  public void extendSignatureToLT_TMThrowsException() throws Exception {
+    AsicFacade container = new AsicFacade("testFiles/asics_for_testing.bdoc");
+    container.extendSignature(container.getSignature(0), SignatureProfile.LT_TM);
+  }
+
+  @Test
+  public void extensionLevel_shouldBeGivenForHigherProfile() throws Exception {
+    assertEquals(SignatureLevel.ASiC_E_BASELINE_LT, AsicFacade.getExtensionLevel(B_BES, LT));
+    assertEquals(SignatureLevel.ASiC_E_BASELINE_LTA, AsicFacade.getExtensionLevel(B_BES, LTA));
+    assertEquals(SignatureLevel.ASiC_E_BASELINE_LTA, AsicFacade.getExtensionLevel(LT, LTA));
+    assertEquals(SignatureLevel.ASiC_E_BASELINE_LTA, AsicFacade.getExtensionLevel(LT_TM, LTA));
+  }
+
+  @Test
+  public void extensionLevel_shouldNotBeGivenForSameOrLowerProfileOrLT_TM() throws Exception {
+    SignatureProfile[][] rejectedExtensions = {{B_BES, B_BES}, {B_BES, LT_TM}, {LT, B_BES}, {LT, LT}, {LT, LT_TM},
+        {LT_TM, LT}, {LTA, B_BES}, {LTA, LT}, {LTA, LT_TM}, {LTA, LTA}};
+    for (SignatureProfile[] extension : rejectedExtensions) {
+      try {
+        AsicFacade.getExtensionLevel(extension[0], extension[1]);
+        fail("Extending from " + extension[0] + " to " + extension[1] + " must not be possible");
+      } catch (DigiDoc4JException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void signingOpenedContainer_shouldAppendSignatureWithoutChangingOtherEntries() throws Exception {
+    Configuration configuration = createOfflineConfiguration();
+    AsicFacade container = openOffline("testFiles/asics_testing_two_signatures.bdoc", configuration);
+    container.setSignatureProfile(B_BES);
+    container.sign(createSelfSignedSigner());
+    container.save("testAppendedSignature.bdoc");
+
+    assertEntriesCopied("testFiles/asics_testing_two_signatures.bdoc", "testAppendedSignature.bdoc");
+    try (ZipFile zip = new ZipFile("testAppendedSignature.bdoc")) {
+      assertEquals(6, zip.size());
+      assertNotNull(zip.getEntry("META-INF/signatures2.xml"));
+    }
+    assertSignaturesIntact("testAppendedSignature.bdoc", 3);
+    container = openOffline("testAppendedSignature.bdoc", configuration);
+    assertEquals(3, container.getSignatures().size());
+    assertEquals(B_BES, container.getSignatures().get(2).getProfile());
+  }
+
+  @Test
+  public void removingSignatureOfOpenedContainer_shouldRemoveOnlyItsSignatureFile() throws Exception {
+    Configuration configuration = createOfflineConfiguration();
+    AsicFacade container = openOffline("testFiles/asics_testing_two_signatures.bdoc", configuration);
+    Signature signature = container.getSignatures().get(0);
+    String remainingSignatureId = container.getSignatures().get(1).getId();
+    container.removeSignature(signature);
+    container.save("testRemovedSignature.bdoc");
+
+    assertEntriesCopied("testRemovedSignature.bdoc", "testFiles/asics_testing_two_signatures.bdoc");
+    try (ZipFile zip = new ZipFile("testRemovedSignature.bdoc")) {
+      assertEquals(4, zip.size());
+      assertNull(zip.getEntry("META-INF/signatures0.xml"));
+    }
+    container = openOffline("testRemovedSignature.bdoc", configuration);
+    assertEquals(1, container.getSignatures().size());
+    assertEquals(remainingSignatureId, container.getSignatures().get(0).getId());
+  }
+
+  private static Configuration createOfflineConfiguration() {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setTSL(new TSLCertificateSource());
+    return configuration;
+  }
+
+  private static AsicFacade openOffline(String path, Configuration configuration) throws IOException {
+    try (InputStream stream = new FileInputStream(path)) {
+      return new AsicFacade(stream, false, configuration);
+    }
+  }
+
+  /**
+   * Signer with a certificate that is valid now, for B_BES signatures that need no trusted certificates.
+   */
+  private static SignatureToken createSelfSignedSigner() throws Exception {
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+    keyPairGenerator.initialize(2048);
+    final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+    X500Name name = new X500Name("CN=Test signer");
+    long now = System.currentTimeMillis();
+    JcaX509v3CertificateBuilder certificateBuilder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+        new Date(now - 60000), new Date(now + 3600000), name, keyPair.getPublic());
+    certificateBuilder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.nonRepudiation));
+    ContentSigner contentSigner = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+    final X509Certificate certificate = new JcaX509CertificateConverter()
+        .getCertificate(certificateBuilder.build(contentSigner));
+    return new SignatureToken() {
+      @Override
+      public X509Certificate getCertificate() {
+        return certificate;
+      }
+
+      @Override
+      public byte[] sign(DigestAlgorithm digestAlgorithm, byte[] dataToSign) {
+        try {
+          java.security.Signature signature = java.security.Signature.getInstance(digestAlgorithm.name() + "withRSA");
+          signature.initSign(keyPair.getPrivate());
+          signature.update(dataToSign);
+          return signature.sign();
+        } catch (GeneralSecurityException e) {
+          throw new DigiDoc4JException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Checks that every entry of the first container is in the second container with the same contents.
+   */
+  private static void assertSignaturesIntact(String path, int expectedSignatureCount) throws IOException {
+    try (ZipFile zip = new ZipFile(path)) {
+      List<DSSDocument> dataFiles = new ArrayList<>();
+      List<DSSDocument> signatureFiles = new ArrayList<>();
+      for (ZipEntry entry : Collections.list(zip.entries())) {
+        byte[] bytes = IOUtils.toByteArray(zip.getInputStream(entry));
+        InMemoryDocument document = new InMemoryDocument(bytes, entry.getName());
+        if (entry.getName().matches("META-INF/signatures\\d+\\.xml")) {
+          signatureFiles.add(document);
+        } else if (!entry.getName().equals("mimetype") && !entry.getName().startsWith("META-INF/")) {
+          dataFiles.add(document);
+        }
+      }
+      assertEquals(expectedSignatureCount, signatureFiles.size());
+      for (DSSDocument signatureFile : signatureFiles) {
+        XMLDocumentValidator validator = new XMLDocumentValidator(signatureFile);
+        validator.setCertificateVerifier(new CommonCertificateVerifier());
+        validator.setDetachedContents(dataFiles);
+        for (AdvancedSignature signature : validator.getSignatures()) {
+          SignatureCryptographicVerification verification = signature.checkSignatureIntegrity();
+          assertTrue(signatureFile.getName(), verification.isReferenceDataFound());
+          assertTrue(signatureFile.getName(), verification.isReferenceDataIntact());
+          assertTrue(signatureFile.getName(), verification.isSignatureIntact());
+        }
+      }
+    }
+  }
+
+  private static void assertEntriesCopied(String fromPath, String toPath) throws IOException {
+    try (ZipFile from = new ZipFile(fromPath); ZipFile to = new ZipFile(toPath)) {
+      for (ZipEntry entry : Collections.list(from.entries())) {
+        ZipEntry copiedEntry = to.getEntry(entry.getName());
+        assertNotNull(entry.getName(), copiedEntry);
+        assertArrayEquals(entry.getName(), IOUtils.toByteArray(from.getInputStream(entry)),
+            IOUtils.toByteArray(to.getInputStream(copiedEntry)));
+      }
+    }
+  }
+
   @Test(expected = UnsupportedFormatException.class)
   public void notBDocThrowsException() {
     new AsicFacade("testFiles/notABDoc.bdoc");
@@ -1846,6 +2048,85 @@ public class AsicFacadeTest extends DigiDoc4JTestHelper {
     assertFalse("Expected '" + errorMsg + "' was not found", true);
   }
 
+  @Test
+  public void openedContainerDataFiles_areReadFromContainerEntries() throws Exception {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setLazyDataFilesEnabled(true);
+    AsicFacade container = new AsicFacade("testFiles/two_signatures.bdoc", configuration);
+    DataFile dataFile = container.getDataFiles().get(0);
+    assertEquals("test.txt", dataFile.getName());
+    assertEquals("text/plain", dataFile.getMediaType());
+    assertEquals(15, dataFile.getFileSize());
+    ZipFile zipFile = new ZipFile("testFiles/two_signatures.bdoc");
+    byte[] expectedContent = IOUtils.toByteArray(zipFile.getInputStream(zipFile.getEntry("test.txt")));
+    zipFile.close();
+    assertArrayEquals(expectedContent, dataFile.getBytes());
+    assertArrayEquals(expectedContent, IOUtils.toByteArray(dataFile.getStream()));
+  }
+
+  @Test
+  public void overwritingOpenedContainerFile_afterRemovingSignature_keepsDataFilesReadable() throws Exception {
+    File containerFile = testFolder.newFile("two_signatures.bdoc");
+    OutputStream out = new FileOutputStream(containerFile);
+    try {
+      Files.copy(Paths.get("testFiles/two_signatures.bdoc"), out);
+    } finally {
+      out.close();
+    }
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setLazyDataFilesEnabled(true);
+    AsicFacade container = new AsicFacade(containerFile.getPath(), configuration);
+    byte[] dataFileContent = container.getDataFiles().get(0).getBytes();
+    container.removeSignature(container.getSignatures().get(1));
+    container.save(containerFile.getPath());
+    assertArrayEquals(dataFileContent, container.getDataFiles().get(0).getBytes());
+  }
+
+  @Test
+  public void savingOverOpenedContainerFile_keepsDataFilesReadable() throws Exception {
+    File containerFile = testFolder.newFile("two_signatures_saved_over.bdoc");
+    OutputStream out = new FileOutputStream(containerFile);
+    try {
+      Files.copy(Paths.get("testFiles/two_signatures.bdoc"), out);
+    } finally {
+      out.close();
+    }
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    AsicFacade container = new AsicFacade(containerFile.getPath(), configuration);
+    byte[] dataFileContent = new AsicFacade("testFiles/two_signatures.bdoc", configuration).getDataFiles().get(0).getBytes();
+    new AsicFacade("testFiles/asics_for_testing.bdoc", configuration).save(containerFile.getPath());
+    DataFile dataFile = container.getDataFiles().get(0);
+    assertArrayEquals(dataFileContent, dataFile.getBytes());
+    assertEquals(dataFileContent.length, dataFile.getFileSize());
+  }
+
+  @Test
+  public void removingSignature_shouldCopyOtherEntriesUnchanged() throws Exception {
+    File containerFile = testFolder.newFile("two_signatures_removed.bdoc");
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    AsicFacade container = new AsicFacade("testFiles/asics_testing_two_signatures.bdoc", configuration);
+    container.removeSignature(container.getSignatures().get(0));
+    container.save(containerFile.getPath());
+
+    AsicContainerIndex originalIndex = AsicContainerIndex.fromFile("testFiles/asics_testing_two_signatures.bdoc");
+    AsicContainerIndex savedIndex = AsicContainerIndex.fromFile(containerFile.getPath());
+    assertFalse(savedIndex.containsEntry("META-INF/signatures0.xml"));
+    assertEquals(originalIndex.getEntries().size() - 1, savedIndex.getEntries().size());
+    for (AsicContainerIndex.Entry entry : savedIndex.getEntries()) {
+      AsicContainerIndex.Entry originalEntry = originalIndex.getEntry(entry.getName());
+      assertEquals(originalEntry.getCompressedSize(), entry.getCompressedSize());
+      assertEquals(originalEntry.getCrc(), entry.getCrc());
+    }
+
+    AsicFacade savedContainer = new AsicFacade(containerFile.getPath(), configuration);
+    assertEquals(1, savedContainer.getSignatures().size());
+    assertEquals("S1", savedContainer.getSignatures().get(0).getId());
+  }
+
   private AsicFacade open(String path) {
     BDocContainer container = (BDocContainer)ContainerOpener.open(path);
     return container.getAsicFacade();
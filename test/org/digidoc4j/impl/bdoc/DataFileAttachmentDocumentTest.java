@@ -0,0 +1,59 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.DataFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.MimeType;
+
+public class DataFileAttachmentDocumentTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void attachmentReadsDataFileContents() throws Exception {
+    DataFile dataFile = new DataFile("testFiles/test.txt", "text/plain");
+    DataFileAttachmentDocument attachment = createAttachment(dataFile);
+
+    assertEquals("test.txt", attachment.getName());
+    assertEquals(MimeType.TEXT, attachment.getMimeType());
+    assertArrayEquals(dataFile.getBytes(), attachment.getBytes());
+    assertArrayEquals(dataFile.getBytes(), IOUtils.toByteArray(attachment.openStream()));
+  }
+
+  @Test
+  public void attachmentsOfLaterSignings_shouldReuseDigestsOfDataFile() throws Exception {
+    File file = testFolder.newFile("test.txt");
+    FileUtils.writeStringToFile(file, "test");
+    DataFile dataFile = new DataFile(file.getPath(), "text/plain");
+    String digest = createAttachment(dataFile).getDigest(DigestAlgorithm.SHA256);
+    assertEquals("n4bQgYhMfWWaL+qgxVrQFaO/TxsrC4Is0V1sFbDwCgg=", digest);
+
+    FileUtils.writeStringToFile(file, "changed");
+    assertEquals(digest, createAttachment(dataFile).getDigest(DigestAlgorithm.SHA256));
+  }
+
+  private static DataFileAttachmentDocument createAttachment(DataFile dataFile) {
+    return new DataFileAttachmentDocument(dataFile, "test.txt", MimeType.TEXT);
+  }
+}
@@ -0,0 +1,86 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.impl.DigiDoc4JTestHelper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.europa.esig.dss.DSSException;
+import eu.europa.esig.dss.DigestAlgorithm;
+import eu.europa.esig.dss.FileDocument;
+
+public class MappedContainerDocumentTest extends DigiDoc4JTestHelper {
+
+  private static final String BDOC_TEST_FILE = "testFiles/two_signatures.bdoc";
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void mappedDocument_shouldHaveFileContent() throws Exception {
+    MappedContainerDocument document = new MappedContainerDocument(BDOC_TEST_FILE);
+    byte[] fileContent = FileUtils.readFileToByteArray(new File(BDOC_TEST_FILE));
+    assertArrayEquals(fileContent, document.getBytes());
+    InputStream stream = document.openStream();
+    assertArrayEquals(fileContent, IOUtils.toByteArray(stream));
+    stream.close();
+    assertEquals("two_signatures.bdoc", document.getName());
+  }
+
+  @Test
+  public void mappedDocumentDigest_shouldMatchFileDocumentDigest() throws Exception {
+    MappedContainerDocument document = new MappedContainerDocument(BDOC_TEST_FILE);
+    FileDocument fileDocument = new FileDocument(BDOC_TEST_FILE);
+    assertEquals(fileDocument.getDigest(DigestAlgorithm.SHA256), document.getDigest(DigestAlgorithm.SHA256));
+  }
+
+  @Test
+  public void savingMappedDocument() throws Exception {
+    MappedContainerDocument document = new MappedContainerDocument(BDOC_TEST_FILE);
+    File savedFile = new File(testFolder.getRoot(), "saved.bdoc");
+    document.save(savedFile.getPath());
+    assertArrayEquals(FileUtils.readFileToByteArray(new File(BDOC_TEST_FILE)), FileUtils.readFileToByteArray(savedFile));
+  }
+
+  @Test(expected = DSSException.class)
+  public void readingModifiedFile_shouldThrowException() throws Exception {
+    File containerFile = testFolder.newFile("container.bdoc");
+    Files.copy(Paths.get(BDOC_TEST_FILE), new FileOutputStream(containerFile));
+    MappedContainerDocument document = new MappedContainerDocument(containerFile.getPath());
+    FileUtils.writeStringToFile(containerFile, "modified");
+    document.getBytes();
+  }
+
+  @Test
+  public void openingContainerWithMemoryMapping() throws Exception {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setMemoryMappedContainersEnabled(true);
+    AsicFacade container = new AsicFacade(BDOC_TEST_FILE, configuration);
+    assertEquals(2, container.getSignatures().size());
+    assertEquals("test.txt", container.getDataFiles().get(0).getName());
+    assertEquals(15, container.getDataFiles().get(0).getBytes().length);
+  }
+}
@@ -0,0 +1,71 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.impl.bdoc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.impl.DigiDoc4JTestHelper;
+import org.junit.Test;
+
+import eu.europa.ec.markt.dss.signature.StreamDocument;
+import eu.europa.esig.dss.DSSDocument;
+import eu.europa.esig.dss.InMemoryDocument;
+import eu.europa.esig.dss.MimeType;
+
+public class SpillingDocumentReaderTest extends DigiDoc4JTestHelper {
+
+  private static final String BDOC_TEST_FILE = "testFiles/two_signatures.bdoc";
+
+  @Test
+  public void documentNotLargerThanThreshold_shouldBeKeptInMemory() throws Exception {
+    byte[] content = new byte[100];
+    DSSDocument document = new SpillingDocumentReader(100).read(new ByteArrayInputStream(content), "test.bdoc", MimeType.ASICE);
+    assertTrue(document instanceof InMemoryDocument);
+    assertArrayEquals(content, document.getBytes());
+  }
+
+  @Test
+  public void documentLargerThanThreshold_shouldBeSpilledToDisk() throws Exception {
+    byte[] content = new byte[20000];
+    content[0] = 1;
+    content[19999] = 2;
+    DSSDocument document = new SpillingDocumentReader(10000).read(new ByteArrayInputStream(content), "test.bdoc", MimeType.ASICE);
+    assertTrue(document instanceof StreamDocument);
+    assertArrayEquals(content, document.getBytes());
+  }
+
+  @Test
+  public void emptyDocument_withZeroThreshold_shouldBeKeptInMemory() throws Exception {
+    DSSDocument document = new SpillingDocumentReader(0).read(new ByteArrayInputStream(new byte[0]), null, MimeType.ASICE);
+    assertTrue(document instanceof InMemoryDocument);
+    assertEquals(0, document.getBytes().length);
+  }
+
+  @Test
+  public void openingLargeContainerFromStream_withSpillToDiskThreshold() throws Exception {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setContainerSpillToDiskThresholdInBytes(1024);
+    AsicFacade container = new AsicFacade(new FileInputStream(BDOC_TEST_FILE), false, configuration);
+    assertEquals(2, container.getSignatures().size());
+    assertEquals("test.txt", container.getDataFiles().get(0).getName());
+    assertArrayEquals(FileUtils.readFileToByteArray(new File(BDOC_TEST_FILE)), IOUtils.toByteArray(container.saveAsStream()));
+  }
+}
@@ -132,6 +132,11 @@ public class TestContainer implements Container {
 
   }
 
+  @Override
+  public void extendSignature(Signature signature, SignatureProfile profile) {
+
+  }
+
   @Override
   public File saveAsFile(String filePath) {
     return null;
@@ -147,6 +152,11 @@ public class TestContainer implements Container {
     return null;
   }
 
+  @Override
+  public void close() {
+
+  }
+
   @Override
   public SignedInfo prepareSigning(X509Certificate signerCert) {
     return null;
@@ -0,0 +1,228 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.impl.bdoc.SKTimestampDataLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import eu.europa.esig.dss.DSSException;
+
+public class EndpointHealthTest {
+
+  private static final String OCSP_URL = "http://demo.sk.ee/ocsp";
+  private final EndpointHealth endpointHealth = EndpointHealth.getInstance();
+  private final List<String> events = new ArrayList<>();
+  private final EndpointHealth.Listener listener = new EndpointHealth.Listener() {
+    @Override
+    public void circuitOpened(String url) {
+      events.add("opened " + url);
+    }
+
+    @Override
+    public void circuitClosed(String url) {
+      events.add("closed " + url);
+    }
+  };
+
+  @Before
+  public void setUp() {
+    endpointHealth.addListener(listener);
+  }
+
+  @After
+  public void tearDown() {
+    endpointHealth.removeListener(listener);
+    endpointHealth.setAdaptiveTimeouts(false);
+    endpointHealth.setFailureThreshold(Configuration.CIRCUIT_BREAKER_DISABLED);
+    endpointHealth.setOpenTimeInSeconds(Configuration.DEFAULT_CIRCUIT_BREAKER_OPEN_TIME);
+    endpointHealth.clear();
+  }
+
+  @Test
+  public void percentileIsNotGivenBeforeEnoughResponses() throws Exception {
+    for (int i = 1; i < EndpointHealth.MINIMUM_SAMPLE_COUNT; i++) {
+      endpointHealth.recordSuccess(OCSP_URL, i);
+    }
+    assertEquals(-1, endpointHealth.getPercentile(OCSP_URL, 95));
+    endpointHealth.recordSuccess(OCSP_URL, EndpointHealth.MINIMUM_SAMPLE_COUNT);
+    assertEquals(19, endpointHealth.getPercentile(OCSP_URL, 95));
+    assertEquals(-1, endpointHealth.getPercentile("http://ocsp.sk.ee", 95));
+  }
+
+  @Test
+  public void onlyLatestResponsesAreUsed() throws Exception {
+    for (int i = 0; i < EndpointHealth.SAMPLE_COUNT; i++) {
+      endpointHealth.recordSuccess(OCSP_URL, 10000);
+    }
+    for (int i = 1; i <= EndpointHealth.SAMPLE_COUNT; i++) {
+      endpointHealth.recordSuccess(OCSP_URL, i);
+    }
+    assertEquals(50, endpointHealth.getPercentile(OCSP_URL, 50));
+    assertEquals(99, endpointHealth.getPercentile(OCSP_URL, 99));
+  }
+
+  @Test
+  public void adaptiveTimeout_shouldFollowResponseTimes() throws Exception {
+    for (int i = 0; i < EndpointHealth.MINIMUM_SAMPLE_COUNT; i++) {
+      endpointHealth.recordSuccess(OCSP_URL, 1500);
+    }
+    assertEquals(5000, endpointHealth.getTimeout(OCSP_URL, 5000));
+    endpointHealth.setAdaptiveTimeouts(true);
+    assertEquals(3000, endpointHealth.getTimeout(OCSP_URL, 5000));
+    assertEquals(2000, endpointHealth.getTimeout(OCSP_URL, 2000));
+    assertEquals(5000, endpointHealth.getTimeout("http://ocsp.sk.ee", 5000));
+  }
+
+  @Test
+  public void adaptiveTimeout_shouldNotBeShorterThanMinimum() throws Exception {
+    endpointHealth.setAdaptiveTimeouts(true);
+    for (int i = 0; i < EndpointHealth.MINIMUM_SAMPLE_COUNT; i++) {
+      endpointHealth.recordSuccess(OCSP_URL, 10);
+    }
+    assertEquals(EndpointHealth.MINIMUM_TIMEOUT, endpointHealth.getTimeout(OCSP_URL, 5000));
+  }
+
+  @Test
+  public void consecutiveFailures_shouldOpenCircuit() throws Exception {
+    endpointHealth.setFailureThreshold(2);
+    endpointHealth.recordFailure(OCSP_URL);
+    endpointHealth.recordSuccess(OCSP_URL, 100);
+    endpointHealth.recordFailure(OCSP_URL);
+    assertTrue(endpointHealth.isAvailable(OCSP_URL));
+    endpointHealth.recordFailure(OCSP_URL);
+    assertFalse(endpointHealth.isAvailable(OCSP_URL));
+    assertEquals(1, events.size());
+    assertEquals("opened " + OCSP_URL, events.get(0));
+    try {
+      endpointHealth.beforeRequest(OCSP_URL);
+      fail("Request to an open circuit must fail");
+    } catch (DSSException expected) {
+    }
+  }
+
+  @Test
+  public void trialRequestAfterOpenTime_shouldCloseCircuit() throws Exception {
+    endpointHealth.setFailureThreshold(1);
+    endpointHealth.setOpenTimeInSeconds(0);
+    endpointHealth.recordFailure(OCSP_URL);
+    endpointHealth.beforeRequest(OCSP_URL);
+    assertFalse(endpointHealth.isAvailable(OCSP_URL));
+    endpointHealth.recordSuccess(OCSP_URL, 100);
+    assertTrue(endpointHealth.isAvailable(OCSP_URL));
+    assertEquals(2, events.size());
+    assertEquals("closed " + OCSP_URL, events.get(1));
+  }
+
+  @Test
+  public void failedTrialRequest_shouldKeepCircuitOpen() throws Exception {
+    endpointHealth.setFailureThreshold(3);
+    endpointHealth.setOpenTimeInSeconds(0);
+    for (int i = 0; i < 3; i++) {
+      endpointHealth.recordFailure(OCSP_URL);
+    }
+    endpointHealth.beforeRequest(OCSP_URL);
+    endpointHealth.setOpenTimeInSeconds(60);
+    endpointHealth.recordFailure(OCSP_URL);
+    assertFalse(endpointHealth.isAvailable(OCSP_URL));
+    assertEquals(1, events.size());
+  }
+
+  @Test
+  public void failingTimestampService_shouldNotBeCalledWhileCircuitIsOpen() throws Exception {
+    final AtomicInteger requests = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.sendResponseHeaders(503, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/tsa";
+      endpointHealth.setFailureThreshold(2);
+      SKTimestampDataLoader dataLoader = new SKTimestampDataLoader();
+      for (int i = 0; i < 4; i++) {
+        try {
+          dataLoader.post(url, new byte[]{1, 2, 3});
+          fail("Timestamp request must fail");
+        } catch (DSSException expected) {
+        }
+      }
+      assertEquals(2, requests.get());
+      assertEquals("opened " + url, events.get(0));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void configure_shouldEnableCircuitBreaker() throws Exception {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    endpointHealth.configure(configuration);
+    assertEquals(Configuration.CIRCUIT_BREAKER_DISABLED, endpointHealth.getFailureThreshold());
+    assertFalse(endpointHealth.isAdaptiveTimeouts());
+    configuration.setCircuitBreakerFailureThreshold(5);
+    configuration.setCircuitBreakerOpenTimeInSeconds(10);
+    configuration.setAdaptiveTimeouts(true);
+    endpointHealth.configure(configuration);
+    assertEquals(5, endpointHealth.getFailureThreshold());
+    assertEquals(10, endpointHealth.getOpenTimeInSeconds());
+    assertTrue(endpointHealth.isAdaptiveTimeouts());
+  }
+
+  @Test
+  public void configure_shouldDisableCircuitBreaker() throws Exception {
+    endpointHealth.setAdaptiveTimeouts(true);
+    endpointHealth.setFailureThreshold(1);
+    endpointHealth.recordFailure(OCSP_URL);
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setCircuitBreakerFailureThreshold(Configuration.CIRCUIT_BREAKER_DISABLED);
+    configuration.setAdaptiveTimeouts(false);
+    endpointHealth.configure(configuration);
+    assertEquals(Configuration.CIRCUIT_BREAKER_DISABLED, endpointHealth.getFailureThreshold());
+    assertFalse(endpointHealth.isAdaptiveTimeouts());
+    assertTrue(endpointHealth.isAvailable(OCSP_URL));
+    assertEquals("closed " + OCSP_URL, events.get(1));
+  }
+
+  @Test
+  public void configure_shouldNotChangeSettingsThatAreNotGiven() throws Exception {
+    endpointHealth.setAdaptiveTimeouts(true);
+    endpointHealth.setFailureThreshold(3);
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setCircuitBreakerOpenTimeInSeconds(10);
+    endpointHealth.configure(configuration);
+    assertTrue(endpointHealth.isAdaptiveTimeouts());
+    assertEquals(3, endpointHealth.getFailureThreshold());
+    assertEquals(10, endpointHealth.getOpenTimeInSeconds());
+  }
+}
@@ -0,0 +1,147 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import static org.digidoc4j.DigestAlgorithm.SHA256;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.DataFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.europa.esig.dss.DigestAlgorithm;
+
+public class FileDigestCacheTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private final FileDigestCache cache = FileDigestCache.getInstance();
+
+  @Before
+  public void setUp() {
+    cache.setMaximumSize(2);
+    cache.clear();
+  }
+
+  @After
+  public void disableCache() {
+    cache.setMaximumSize(Configuration.FILE_DIGEST_CACHE_DISABLED);
+  }
+
+  @Test
+  public void dataFilesOfSameFile_shouldShareDigests() throws Exception {
+    long hits = cache.getHitCount();
+    long misses = cache.getMissCount();
+    byte[] digest = new DataFile("testFiles/test.txt", "text/plain").calculateDigest(SHA256);
+    byte[] cachedDigest = new DataFile("testFiles/test.txt", "text/plain").calculateDigest(SHA256);
+
+    assertEquals("RqDqtqi3rTsWj07rrWc5kATAZIw7T1XHP/NPLCF05RU=", Base64.encodeBase64String(cachedDigest));
+    assertArrayEquals(digest, cachedDigest);
+    assertEquals(misses + 1, cache.getMissCount());
+    assertEquals(hits + 1, cache.getHitCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void modifiedFile_shouldHaveNewKey() throws Exception {
+    File file = testFolder.newFile("test.txt");
+    FileUtils.writeStringToFile(file, "first");
+    FileDigestCache.Key key = cache.keyOf(file);
+    cache.put(key, singleDigest(new byte[]{1}));
+
+    FileUtils.writeStringToFile(file, "second version");
+
+    assertTrue(cache.get(cache.keyOf(file), EnumSet.of(DigestAlgorithm.SHA256)).isEmpty());
+    assertEquals(1, cache.get(key, EnumSet.of(DigestAlgorithm.SHA256)).size());
+  }
+
+  @Test
+  public void leastRecentlyUsedFile_shouldBeEvicted() throws Exception {
+    long evictions = cache.getEvictionCount();
+    FileDigestCache.Key first = cache.keyOf(createFile("first.txt"));
+    FileDigestCache.Key second = cache.keyOf(createFile("second.txt"));
+    FileDigestCache.Key third = cache.keyOf(createFile("third.txt"));
+    cache.put(first, singleDigest(new byte[]{1}));
+    cache.put(second, singleDigest(new byte[]{2}));
+    cache.get(first, EnumSet.of(DigestAlgorithm.SHA256));
+    cache.put(third, singleDigest(new byte[]{3}));
+
+    assertEquals(2, cache.size());
+    assertEquals(evictions + 1, cache.getEvictionCount());
+    assertEquals(1, cache.get(first, EnumSet.of(DigestAlgorithm.SHA256)).size());
+    assertTrue(cache.get(second, EnumSet.of(DigestAlgorithm.SHA256)).isEmpty());
+  }
+
+  @Test
+  public void fileChangedWhileDigesting_shouldNotBeCached() throws Exception {
+    File file = testFolder.newFile("test.txt");
+    FileUtils.writeStringToFile(file, "first");
+    FileDigestCache.Key key = cache.keyOf(file);
+
+    FileUtils.writeStringToFile(file, "second version");
+    cache.put(key, singleDigest(new byte[]{1}));
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void cachedDigests_shouldNotBeChangedByCallers() throws Exception {
+    FileDigestCache.Key key = cache.keyOf(createFile("test.txt"));
+    byte[] digest = {1, 2, 3};
+    cache.put(key, singleDigest(digest));
+    digest[0] = 9;
+    cache.get(key, EnumSet.of(DigestAlgorithm.SHA256)).get(DigestAlgorithm.SHA256)[1] = 9;
+
+    Map<DigestAlgorithm, byte[]> cachedDigests = cache.get(key, EnumSet.of(DigestAlgorithm.SHA256));
+    assertArrayEquals(new byte[]{1, 2, 3}, cachedDigests.get(DigestAlgorithm.SHA256));
+  }
+
+  @Test
+  public void configure_shouldDisableCache() throws Exception {
+    cache.put(cache.keyOf(createFile("test.txt")), singleDigest(new byte[]{1}));
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    cache.configure(configuration);
+    assertTrue(cache.isEnabled());
+
+    configuration.setFileDigestCacheSize(Configuration.FILE_DIGEST_CACHE_DISABLED);
+    cache.configure(configuration);
+
+    assertFalse(cache.isEnabled());
+    assertEquals(0, cache.size());
+  }
+
+  private File createFile(String name) throws Exception {
+    File file = testFolder.newFile(name);
+    FileUtils.writeStringToFile(file, name);
+    return file;
+  }
+
+  private static Map<DigestAlgorithm, byte[]> singleDigest(byte[] digest) {
+    Map<DigestAlgorithm, byte[]> digests = new EnumMap<>(DigestAlgorithm.class);
+    digests.put(DigestAlgorithm.SHA256, digest);
+    return digests;
+  }
+}
@@ -0,0 +1,115 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.impl.bdoc.SKTimestampDataLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import eu.europa.esig.dss.DSSException;
+
+public class HttpTransportTest {
+
+  private final HttpTransport transport = HttpTransport.getInstance();
+  private final Set<InetSocketAddress> clientAddresses = Collections.synchronizedSet(new HashSet<InetSocketAddress>());
+  private HttpServer server;
+  private String url;
+  private volatile long responseDelay;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          Thread.sleep(responseDelay);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        clientAddresses.add(exchange.getRemoteAddress());
+        byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+        exchange.sendResponseHeaders(200, request.length);
+        OutputStream response = exchange.getResponseBody();
+        response.write(request);
+        response.close();
+      }
+    });
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/tsa";
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    transport.setConnectionsMaxTotal(Configuration.DEFAULT_HTTP_CONNECTIONS_MAX_TOTAL);
+    transport.setConnectionsMaxPerRoute(Configuration.DEFAULT_HTTP_CONNECTIONS_MAX_PER_ROUTE);
+  }
+
+  @Test
+  public void consecutiveRequests_shouldReuseConnection() throws Exception {
+    SKTimestampDataLoader dataLoader = new SKTimestampDataLoader();
+    assertArrayEquals(new byte[]{1, 2, 3}, dataLoader.post(url, new byte[]{1, 2, 3}));
+    assertArrayEquals(new byte[]{4, 5}, new SKTimestampDataLoader().post(url, new byte[]{4, 5}));
+    assertEquals(1, clientAddresses.size());
+  }
+
+  @Test
+  public void configure_shouldApplyConnectionLimits() throws Exception {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setHttpConnectionsMaxTotal(50);
+    configuration.setHttpConnectionsMaxPerRoute(25);
+    transport.configure(configuration);
+    assertEquals(50, transport.getConnectionsMaxTotal());
+    assertEquals(25, transport.getConnectionsMaxPerRoute());
+  }
+
+  @Test
+  public void configure_shouldNotChangeLimitsThatAreNotGiven() throws Exception {
+    transport.setConnectionsMaxTotal(50);
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setHttpConnectionsMaxPerRoute(25);
+    transport.configure(configuration);
+    assertEquals(50, transport.getConnectionsMaxTotal());
+    assertEquals(25, transport.getConnectionsMaxPerRoute());
+  }
+
+  @Test
+  public void timeouts_shouldBeSetPerRequest() throws Exception {
+    responseDelay = 500;
+    SKTimestampDataLoader impatientLoader = new SKTimestampDataLoader();
+    impatientLoader.setTimeoutSocket(100);
+    try {
+      impatientLoader.post(url, new byte[]{1});
+      fail("Request should time out");
+    } catch (DSSException expected) {
+    }
+    assertArrayEquals(new byte[]{2}, new SKTimestampDataLoader().post(url, new byte[]{2}));
+  }
+}
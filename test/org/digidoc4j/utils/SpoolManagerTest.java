@@ -0,0 +1,136 @@
+/* DigiDoc4J library
+*
+* This software is released under either the GNU Library General Public
+* License (see LICENSE.LGPL).
+*
+* Note that the only valid version of the LGPL license as far as this
+* project is concerned is the original GNU Library General Public License
+* Version 2.1, February 1999
+*/
+
+package org.digidoc4j.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.DataFile;
+import org.digidoc4j.exceptions.SpoolQuotaExceededException;
+import org.digidoc4j.impl.bdoc.AsicFacade;
+import org.digidoc4j.impl.bdoc.BDocContainer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.europa.ec.markt.dss.signature.StreamDocument;
+import eu.europa.esig.dss.MimeType;
+
+public class SpoolManagerTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private final SpoolManager spoolManager = SpoolManager.getInstance();
+
+  @After
+  public void resetSpoolSettings() {
+    spoolManager.setDirectory(null);
+    spoolManager.setQuotaInBytes(Configuration.UNLIMITED_SPOOL_QUOTA);
+  }
+
+  @Test
+  public void closingStreamDocument_shouldDeleteTemporaryFile() throws Exception {
+    long liveBytes = spoolManager.getLiveBytes();
+    StreamDocument document = createStreamDocument(100);
+    File temporaryFile = new File(document.getAbsolutePath());
+    assertTrue(temporaryFile.exists());
+    assertEquals(liveBytes + 100, spoolManager.getLiveBytes());
+
+    document.close();
+    document.close();
+
+    assertFalse(temporaryFile.exists());
+    assertEquals(liveBytes, spoolManager.getLiveBytes());
+  }
+
+  @Test
+  public void temporaryFile_shouldBeKeptUntilLastReferenceIsReleased() throws Exception {
+    spoolManager.setDirectory(testFolder.getRoot().getPath());
+    DataFile dataFile = new DataFile(new ByteArrayInputStream(new byte[10]), "test.txt", "text/plain");
+    BDocContainer container = new BDocContainer();
+    container.addDataFile(dataFile);
+    assertEquals(1, testFolder.getRoot().list().length);
+
+    dataFile.close();
+    assertEquals(1, testFolder.getRoot().list().length);
+
+    container.close();
+    assertEquals(0, testFolder.getRoot().list().length);
+  }
+
+  @Test
+  public void temporaryFiles_shouldBeCreatedInSpoolDirectory() throws Exception {
+    File spoolDirectory = new File(testFolder.getRoot(), "spool");
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setSpoolDirectory(spoolDirectory.getPath());
+    spoolManager.configure(configuration);
+
+    StreamDocument document = createStreamDocument(10);
+    try {
+      assertEquals(spoolDirectory.getAbsoluteFile(), new File(document.getAbsolutePath()).getParentFile());
+    } finally {
+      document.close();
+    }
+  }
+
+  @Test
+  public void configure_shouldOnlyApplyGivenSettings() throws Exception {
+    spoolManager.setDirectory(testFolder.getRoot().getPath());
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setSpoolQuotaInBytes(1000);
+    configuration.configureSharedResources();
+    assertEquals(testFolder.getRoot().getPath(), spoolManager.getDirectory());
+    assertEquals(1000, spoolManager.getQuotaInBytes());
+  }
+
+  @Test
+  public void openingContainer_shouldNotChangeSpoolSettings() throws Exception {
+    Configuration configuration = new Configuration(Configuration.Mode.TEST);
+    configuration.setValidateContainerOnOpen(false);
+    configuration.setSpoolDirectory(testFolder.getRoot().getPath());
+    configuration.setSpoolQuotaInBytes(1000);
+    InputStream stream = new FileInputStream("testFiles/asics_for_testing.bdoc");
+    try {
+      new AsicFacade(stream, false, configuration).close();
+    } finally {
+      stream.close();
+    }
+    assertNull(spoolManager.getDirectory());
+    assertEquals(Configuration.UNLIMITED_SPOOL_QUOTA, spoolManager.getQuotaInBytes());
+  }
+
+  @Test
+  public void exceedingQuota_shouldThrowExceptionAndDeleteTemporaryFile() throws Exception {
+    spoolManager.setDirectory(testFolder.getRoot().getPath());
+    spoolManager.setQuotaInBytes(spoolManager.getLiveBytes() + 1000);
+    try {
+      createStreamDocument(1001);
+      fail("Spool quota should be exceeded");
+    } catch (SpoolQuotaExceededException e) {
+      assertEquals(0, testFolder.getRoot().list().length);
+    }
+  }
+
+  private StreamDocument createStreamDocument(int size) {
+    return new StreamDocument(new ByteArrayInputStream(new byte[size]), "test.txt", MimeType.TEXT);
+  }
+}